@@ -18,6 +18,8 @@ CREATE TABLE IF NOT EXISTS `conversation` (
   `user_id` VARCHAR(64) NOT NULL COMMENT '用户ID,标识会话所属用户',
   `title` VARCHAR(128) DEFAULT '新对话' COMMENT '会话标题',
   `status` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '会话状态: 0-正常, 1-归档',
+  `last_message` VARCHAR(128) DEFAULT NULL COMMENT '最后一条消息摘要',
+  `message_count` INT NOT NULL DEFAULT 0 COMMENT '消息数量',
   `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   `is_deleted` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '逻辑删除: 0-未删除, 1-已删除',
@@ -26,7 +28,8 @@ CREATE TABLE IF NOT EXISTS `conversation` (
   INDEX `idx_status` (`status`),
   INDEX `idx_created_at` (`created_at`),
   INDEX `idx_updated_at` (`updated_at`),
-  INDEX `idx_is_deleted` (`is_deleted`)
+  INDEX `idx_is_deleted` (`is_deleted`),
+  INDEX `idx_user_deleted_updated_id` (`user_id`, `is_deleted`, `updated_at`, `id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='会话表';
 
 -- ============================================
@@ -45,6 +48,7 @@ CREATE TABLE IF NOT EXISTS `conversation_message` (
   INDEX `idx_role` (`role`),
   INDEX `idx_created_at` (`created_at`),
   INDEX `idx_is_deleted` (`is_deleted`),
+  INDEX `idx_conv_deleted_created_id` (`conversation_id`, `is_deleted`, `created_at`, `id`),
   CONSTRAINT `fk_message_conversation` FOREIGN KEY (`conversation_id`) 
     REFERENCES `conversation` (`id`) ON DELETE CASCADE
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='消息表';
@@ -84,17 +88,42 @@ CREATE TABLE IF NOT EXISTS `schedule` (
   `location` VARCHAR(128) DEFAULT NULL COMMENT '地点',
   `date` DATE NOT NULL COMMENT '日期',
   `time` TIME DEFAULT NULL COMMENT '时间',
+  `duration_minutes` INT DEFAULT NULL COMMENT '持续时长(分钟),为空时按默认时长检测冲突',
   `description` TEXT COMMENT '备注',
   `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
   `is_deleted` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '逻辑删除: 0-未删除, 1-已删除',
   PRIMARY KEY (`id`),
   INDEX `idx_user_id` (`user_id`),
+  INDEX `idx_user_updated` (`user_id`, `updated_at`),
   INDEX `idx_date` (`date`),
   INDEX `idx_created_at` (`created_at`),
   INDEX `idx_is_deleted` (`is_deleted`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='日程表';
 
+-- ============================================
+-- 表5: schedule_series (重复日程表)
+-- 用途: 每个重复日程只存一行规则, 每次重复的实例在查询时展开
+-- ============================================
+CREATE TABLE IF NOT EXISTS `schedule_series` (
+  `id` VARCHAR(64) NOT NULL COMMENT '系列ID,使用UUID',
+  `user_id` VARCHAR(64) NOT NULL COMMENT '用户ID',
+  `title` VARCHAR(128) NOT NULL COMMENT '日程标题',
+  `location` VARCHAR(128) DEFAULT NULL COMMENT '地点',
+  `start_date` DATE NOT NULL COMMENT '开始日期',
+  `end_date` DATE DEFAULT NULL COMMENT '最后一次重复的日期,无限重复时为空',
+  `time` TIME DEFAULT NULL COMMENT '时间',
+  `duration_minutes` INT DEFAULT NULL COMMENT '每次的持续时长(分钟),为空时按默认时长计算',
+  `rrule` VARCHAR(255) NOT NULL COMMENT '重复规则(RRULE子集),如 FREQ=WEEKLY;BYDAY=MO,WE',
+  `exdates` TEXT COMMENT '被取消的日期,逗号分隔',
+  `description` TEXT COMMENT '备注',
+  `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  `is_deleted` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '逻辑删除: 0-未删除, 1-已删除',
+  PRIMARY KEY (`id`),
+  INDEX `idx_user_deleted_start` (`user_id`, `is_deleted`, `start_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='重复日程表';
+
 -- ============================================
 -- 示例数据(可选 - 用于测试)
 -- ============================================
@@ -145,3 +174,4 @@ VALUES
 -- DELETE FROM conversation_message WHERE is_deleted = 1 AND created_at < DATE_SUB(NOW(), INTERVAL 30 DAY);
 -- DELETE FROM ocr_reminder WHERE is_deleted = 1 AND updated_at < DATE_SUB(NOW(), INTERVAL 30 DAY);
 -- DELETE FROM schedule WHERE is_deleted = 1 AND updated_at < DATE_SUB(NOW(), INTERVAL 30 DAY);
+-- DELETE FROM schedule_series WHERE is_deleted = 1 AND updated_at < DATE_SUB(NOW(), INTERVAL 30 DAY);
@@ -64,6 +64,7 @@ CREATE TABLE IF NOT EXISTS `schedule` (
   `location` VARCHAR(128) DEFAULT NULL COMMENT '地点',
   `date` DATE NOT NULL COMMENT '日期',
   `time` TIME DEFAULT NULL COMMENT '时间',
+  `duration_minutes` INT DEFAULT NULL COMMENT '持续时长(分钟),为空时按默认时长检测冲突',
   `description` TEXT COMMENT '备注',
   `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
   `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
@@ -76,7 +77,89 @@ CREATE TABLE IF NOT EXISTS `schedule` (
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='日程表';
 
 -- ============================================
--- 5. 验证表结构
+-- 5. 消息表添加分页用的联合索引
+-- 历史消息按 (created_at, id) 游标分页, 翻页查询只扫描一页的数据
+-- ============================================
+
+ALTER TABLE conversation_message 
+ADD INDEX IF NOT EXISTS `idx_conv_deleted_created_id` (`conversation_id`, `is_deleted`, `created_at`, `id`);
+
+-- ============================================
+-- 6. 会话表添加列表展示用的摘要字段
+-- 最后一条消息和消息数量在写入消息时同步更新, 会话列表按 (updated_at, id) 游标分页
+-- ============================================
+
+ALTER TABLE conversation 
+ADD COLUMN IF NOT EXISTS `last_message` VARCHAR(128) DEFAULT NULL COMMENT '最后一条消息摘要' 
+AFTER `status`;
+
+ALTER TABLE conversation 
+ADD COLUMN IF NOT EXISTS `message_count` INT NOT NULL DEFAULT 0 COMMENT '消息数量' 
+AFTER `last_message`;
+
+ALTER TABLE conversation 
+ADD INDEX IF NOT EXISTS `idx_user_deleted_updated_id` (`user_id`, `is_deleted`, `updated_at`, `id`);
+
+-- 回填已有会话的摘要字段(显式保留 updated_at, 避免 ON UPDATE 把所有会话刷成当前时间)
+UPDATE conversation c SET
+  c.message_count = (SELECT COUNT(*) FROM conversation_message m
+                     WHERE m.conversation_id = c.id AND m.is_deleted = 0),
+  c.last_message = (SELECT LEFT(m.content, 60) FROM conversation_message m
+                    WHERE m.conversation_id = c.id AND m.is_deleted = 0
+                    ORDER BY m.created_at DESC, m.id DESC LIMIT 1),
+  c.updated_at = c.updated_at;
+
+-- ============================================
+-- 7. 创建重复日程表
+-- ============================================
+
+CREATE TABLE IF NOT EXISTS `schedule_series` (
+  `id` VARCHAR(64) NOT NULL COMMENT '系列ID,使用UUID',
+  `user_id` VARCHAR(64) NOT NULL COMMENT '用户ID',
+  `title` VARCHAR(128) NOT NULL COMMENT '日程标题',
+  `location` VARCHAR(128) DEFAULT NULL COMMENT '地点',
+  `start_date` DATE NOT NULL COMMENT '开始日期',
+  `end_date` DATE DEFAULT NULL COMMENT '最后一次重复的日期,无限重复时为空',
+  `time` TIME DEFAULT NULL COMMENT '时间',
+  `duration_minutes` INT DEFAULT NULL COMMENT '每次的持续时长(分钟),为空时按默认时长计算',
+  `rrule` VARCHAR(255) NOT NULL COMMENT '重复规则(RRULE子集),如 FREQ=WEEKLY;BYDAY=MO,WE',
+  `exdates` TEXT COMMENT '被取消的日期,逗号分隔',
+  `description` TEXT COMMENT '备注',
+  `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '创建时间',
+  `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '更新时间',
+  `is_deleted` TINYINT(1) NOT NULL DEFAULT 0 COMMENT '逻辑删除: 0-未删除, 1-已删除',
+  PRIMARY KEY (`id`),
+  INDEX `idx_user_deleted_start` (`user_id`, `is_deleted`, `start_date`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_unicode_ci COMMENT='重复日程表';
+
+-- ============================================
+-- 8. 日程表添加持续时长字段
+-- 日程占用 [日期+时间, 日期+时间+时长) 用于冲突检测, 已有日程为空, 按默认时长计算
+-- ============================================
+
+ALTER TABLE schedule 
+ADD COLUMN IF NOT EXISTS `duration_minutes` INT DEFAULT NULL COMMENT '持续时长(分钟),为空时按默认时长检测冲突' 
+AFTER `time`;
+
+-- ============================================
+-- 9. 日程表添加导出用的索引
+-- iCalendar 订阅轮询时按 (user_id, updated_at) 取最大更新时间判断日程是否变化
+-- ============================================
+
+ALTER TABLE schedule 
+ADD INDEX IF NOT EXISTS `idx_user_updated` (`user_id`, `updated_at`);
+
+-- ============================================
+-- 10. 重复日程表添加持续时长字段
+-- 展开的每次日程按该时长检测冲突、计算忙闲和导出, 已有系列为空, 按默认时长计算
+-- ============================================
+
+ALTER TABLE schedule_series 
+ADD COLUMN IF NOT EXISTS `duration_minutes` INT DEFAULT NULL COMMENT '每次的持续时长(分钟),为空时按默认时长计算' 
+AFTER `time`;
+
+-- ============================================
+-- 11. 验证表结构
 -- ============================================
 
 -- 查看所有表
@@ -87,9 +170,10 @@ DESC conversation;
 DESC conversation_message;
 DESC ocr_reminder;
 DESC schedule;
+DESC schedule_series;
 
 -- ============================================
--- 6. 插入测试数据(可选)
+-- 11. 插入测试数据(可选)
 -- ============================================
 
 -- 测试会话
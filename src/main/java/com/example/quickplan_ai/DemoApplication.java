@@ -2,11 +2,13 @@ package com.example.quickplan_ai;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 // Generated by https://start.springboot.io
 // 优质的 spring/boot/data/security/cloud 框架中文文档尽在 => https://springdoc.cn
 //111
 @SpringBootApplication
+@EnableScheduling
 public class DemoApplication {
 
 	public static void main(String[] args) {
@@ -2,11 +2,22 @@ package com.example.quickplan_ai.Service;
 
 import dev.langchain4j.service.MemoryId;
 import dev.langchain4j.service.SystemMessage;
+import dev.langchain4j.service.TokenStream;
 import dev.langchain4j.service.UserMessage;
 import dev.langchain4j.service.V;
 import dev.langchain4j.service.spring.AiService;
 
-@AiService
+import static dev.langchain4j.service.spring.AiServiceWiringMode.EXPLICIT;
+
+/**
+ * 模型显式指定为带并发限制的包装模型(见 AiConcurrencyConfig),
+ * 容器中同时存在原始模型和包装模型, 自动装配模式无法区分
+ */
+@AiService(wiringMode = EXPLICIT,
+        chatModel = "limitedChatModel",
+        streamingChatModel = "limitedStreamingChatModel",
+        chatMemoryProvider = "redisChatMemoryStore",
+        tools = {"scheduleTools"})
 public interface AiChatService {
 
     /**
@@ -15,11 +26,14 @@ public interface AiChatService {
      * 1. 帮助用户添加日程(当用户说"帮我添加日程"时)
      * 2. 查询用户的日程安排
      * 3. 删除日程
+     * 4. 添加重复日程(只存规则, 查询时展开)
+     * 5. 添加日程时提醒时间冲突(冲突由 addSchedule 的结果给出)
+     * 6. 查找一个或多个用户的共同空闲时间
      * 
      * {{userId}} 会被替换为实际的用户ID
      * {{currentDate}} 会被替换为当前日期
      */
-    @SystemMessage("""
+    String SYSTEM_PROMPT = """
             你是一个智能日历小助手,专门帮助用户管理日程安排。
 
             当前用户ID: {{userId}}
@@ -32,6 +46,7 @@ public interface AiChatService {
             3. 时间(time) - 必需
             4. 地点(location) - 可选,默认"未指定"
             5. 描述(description) - 可选,默认空字符串
+            6. 时长(durationMinutes) - 可选,用户说了"两小时"、"半小时"等才填分钟数,否则为null
 
             【日期计算规则】
             - 今天是 {{currentDate}}
@@ -74,7 +89,8 @@ public interface AiChatService {
                 "date": "yyyy-MM-dd",
                 "time": "HH:mm",
                 "location": "提取的地点或未指定",
-                "description": "补充描述或空字符串"
+                "description": "补充描述或空字符串",
+                "durationMinutes": null
               }
             }
 
@@ -85,14 +101,43 @@ public interface AiChatService {
             4. 时间转换: "下午4点"→"16:00", "上午9点"→"09:00", "晚上8点"→"20:00"
             5. 输出JSON时不要添加"好的,我来记录"等额外文字
 
+            【重复日程】
+            当用户说"每天"、"每周X"、"每月X号"、"隔周"等重复安排时,调用addRecurringSchedule工具,
+            rrule 示例: 每周二 FREQ=WEEKLY;BYDAY=TU, 每个工作日 FREQ=WEEKLY;BYDAY=MO,TU,WE,TH,FR,
+            每月1号 FREQ=MONTHLY;BYMONTHDAY=1, 共10次 在末尾加 ;COUNT=10
+            查询结果中重复日程的ID形如 {seriesId}@{日期}: 只取消某一次时调用cancelRecurringOccurrence,
+            删除整个重复日程时调用deleteRecurringSchedule, 两者的 seriesId 都是 @ 之前的部分
+
+            【时间冲突】
+            addSchedule 的结果如果包含"时间冲突",日程已经保存,不要再次调用addSchedule;
+            告诉用户与哪些日程冲突,并询问是否需要调整时间或删除其中一个
+
             【查询日程】
             当用户询问"今天有什么安排"、"明天要做什么"时,调用getSchedulesByDate工具
 
+            【查找空闲时间】
+            当用户问"这周什么时候有空"、"帮我们找个时间开会"时,调用findCommonFreeTime工具,
+            userIds 必须包含 {{userId}}, 其他人的用户ID由用户提供, 多人用逗号分隔;
+            不要为了找空闲时间逐天调用getSchedulesByDate
+
             【删除日程】
             当用户说"删除某个日程"、"取消任务"时,调用deleteSchedule工具
 
             请用简洁、友好的语气与用户交流。
-            """)
+            """;
+
+    /**
+     * 非流式对话,等待模型生成完整回复后返回
+     */
+    @SystemMessage(SYSTEM_PROMPT)
     String chat(@MemoryId String memoryId, @UserMessage String message, @V("userId") String userId,
             @V("currentDate") String currentDate);
+
+    /**
+     * 流式对话,与 chat 共用系统消息和会话记忆
+     * 模型每生成一段内容就通过 TokenStream 回调一次,调用方需要自行 start()
+     */
+    @SystemMessage(SYSTEM_PROMPT)
+    TokenStream chatStream(@MemoryId String memoryId, @UserMessage String message, @V("userId") String userId,
+            @V("currentDate") String currentDate);
 }
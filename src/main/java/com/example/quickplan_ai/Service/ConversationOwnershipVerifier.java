@@ -0,0 +1,80 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.entity.Conversation;
+import com.example.quickplan_ai.mapper.ConversationMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 会话归属校验
+ * 会话的所属用户创建后不会改变, 这里缓存 conversationId -> userId, 同一会话的后续请求不再查库
+ *
+ * 缓存规则:
+ * - 只缓存存在的会话, 不存在的会话每次都查库
+ * - 本节点删除会话时立即移除; 其他节点删除的会话最多在 ttl 内仍被视为存在,
+ *   期间请求只会读到空的消息列表, 不会越权
+ */
+@Component
+public class ConversationOwnershipVerifier {
+
+    /**
+     * 校验结果
+     */
+    public enum Result {
+        OK,
+        NOT_FOUND,
+        DENIED
+    }
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Value("${quickplan.conversation.owner-cache.max-size:10000}")
+    private long maxSize;
+
+    @Value("${quickplan.conversation.owner-cache.ttl:10m}")
+    private Duration ttl;
+
+    private Cache<String, String> owners;
+
+    @PostConstruct
+    public void init() {
+        owners = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    public Result verify(String conversationId, String userId) {
+        String ownerId = owners.getIfPresent(conversationId);
+        if (ownerId == null) {
+            Conversation conversation = conversationMapper.selectById(conversationId);
+            if (conversation == null) {
+                return Result.NOT_FOUND;
+            }
+            ownerId = conversation.getUserId();
+            owners.put(conversationId, ownerId);
+        }
+        return ownerId.equals(userId) ? Result.OK : Result.DENIED;
+    }
+
+    /**
+     * 已知会话归属时直接写入缓存(如刚创建的会话)
+     */
+    public void remember(String conversationId, String userId) {
+        owners.put(conversationId, userId);
+    }
+
+    /**
+     * 会话删除后移除缓存
+     */
+    public void invalidate(String conversationId) {
+        owners.invalidate(conversationId);
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.quickplan_ai.Service;
 
+import com.example.quickplan_ai.common.CursorPage;
 import com.example.quickplan_ai.entity.Conversation;
+import com.example.quickplan_ai.util.PageCursor;
 
 import java.util.List;
 
@@ -24,6 +26,13 @@ public interface ConversationService {
      */
     List<Conversation> getUserConversations(String userId);
 
+    /**
+     * 游标分页获取用户的会话列表(按更新时间倒序), 每个会话带最后一条消息摘要和消息数量
+     *
+     * @param cursor 上一页返回的游标, 第一页传 null
+     */
+    CursorPage<Conversation> getConversationPage(String userId, PageCursor cursor, int size);
+
     /**
      * 获取用户最近的N个会话
      */
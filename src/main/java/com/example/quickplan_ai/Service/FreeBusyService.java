@@ -0,0 +1,259 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.dto.FreeSlot;
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.event.ScheduleChangedEvent;
+import com.example.quickplan_ai.util.SlotBitmap;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * 空闲/忙碌查询
+ * 每个用户每天的占用时间表示为 15 分钟粒度的位图({@link SlotBitmap}), 按 (用户, 日期) 缓存;
+ * 查询多人共同空闲时, 先用当天的时间窗口去掉各自的占用时间, 再逐字 AND(所有人都空闲) 或 OR(至少一人空闲)
+ *
+ * 规则:
+ * - 位图由 {@link ScheduleService#getSchedulesByDateRange} 的结果构建, 含重复日程的实例, 缺失的日期按用户批量加载
+ * - 日程按 [开始时间, 开始时间 + 时长) 占用, 没有时长时按默认时长; 跨天的日程同时占用第二天; 全天日程不占用时间
+ * - 日程变更后按事件中的日期(及其后一天)失效, 在事务中时等提交后失效; 日期未知时失效该用户的全部缓存
+ */
+@Component
+public class FreeBusyService {
+
+    /**
+     * 单次查询的最大天数
+     */
+    public static final int MAX_RANGE_DAYS = 31;
+
+    /**
+     * 共同空闲查询的最大人数
+     */
+    public static final int MAX_USERS = 20;
+
+    public enum Match {
+        /**
+         * 所有人都空闲
+         */
+        ALL,
+        /**
+         * 至少一人空闲
+         */
+        ANY
+    }
+
+    @Autowired
+    private ScheduleService scheduleService;
+
+    @Autowired
+    private ScheduleCalendarIndex scheduleCalendarIndex;
+
+    @Value("${quickplan.schedule.free-busy.max-days:200000}")
+    private long maxDays;
+
+    @Value("${quickplan.schedule.free-busy.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${quickplan.schedule.free-busy.day-start:08:00}")
+    private LocalTime defaultDayStart;
+
+    @Value("${quickplan.schedule.free-busy.day-end:22:00}")
+    private LocalTime defaultDayEnd;
+
+    /**
+     * (用户, 日期) -> 当天的占用位图, 长度为 {@link SlotBitmap#WORDS_PER_DAY}, 放入后不再修改
+     */
+    private Cache<DayKey, long[]> busyDays;
+
+    @PostConstruct
+    public void init() {
+        busyDays = Caffeine.newBuilder()
+                .maximumSize(maxDays)
+                .expireAfterWrite(ttl)
+                .build();
+    }
+
+    /**
+     * 用户在 [startDate, endDate] 每天的占用位图, 按日期连续排列, 每天 {@link SlotBitmap#WORDS_PER_DAY} 个 long
+     *
+     * @throws IllegalArgumentException 日期范围不合法或超过 {@link #MAX_RANGE_DAYS} 天
+     */
+    public long[] getBusyBitmap(String userId, LocalDate startDate, LocalDate endDate) {
+        int days = checkRange(startDate, endDate);
+        List<DayKey> keys = new ArrayList<>(days);
+        for (int i = 0; i < days; i++) {
+            keys.add(new DayKey(userId, startDate.plusDays(i)));
+        }
+        Map<DayKey, long[]> loaded = busyDays.getAll(keys, this::load);
+
+        long[] words = new long[days * SlotBitmap.WORDS_PER_DAY];
+        for (int i = 0; i < days; i++) {
+            System.arraycopy(loaded.get(keys.get(i)), 0, words, i * SlotBitmap.WORDS_PER_DAY, SlotBitmap.WORDS_PER_DAY);
+        }
+        return words;
+    }
+
+    /**
+     * 查找多个用户在日期范围内的空闲时间段, 只看每天 [dayStart, dayEnd) 的时间, 已经过去的时间不返回
+     *
+     * @param dayStart   每天的开始时间, 为空时使用配置的默认值
+     * @param dayEnd     每天的结束时间, 为空时使用配置的默认值
+     * @param minMinutes 空闲时间段的最短分钟数
+     * @param match      ALL: 所有人都空闲; ANY: 至少一人空闲
+     * @throws IllegalArgumentException 参数不合法
+     */
+    public List<FreeSlot> findFreeSlots(List<String> userIds, LocalDate startDate, LocalDate endDate,
+                                        LocalTime dayStart, LocalTime dayEnd, int minMinutes, Match match) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new IllegalArgumentException("用户ID不能为空");
+        }
+        if (userIds.size() > MAX_USERS) {
+            throw new IllegalArgumentException("最多同时查询 " + MAX_USERS + " 个用户");
+        }
+        LocalTime from = dayStart != null ? dayStart : defaultDayStart;
+        LocalTime to = dayEnd != null ? dayEnd : defaultDayEnd;
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("每天的开始时间必须早于结束时间");
+        }
+        int days = checkRange(startDate, endDate);
+
+        // 可用的时间窗口: 每天 [from, to) 内完整的槽, 去掉已经过去的时间
+        long[] window = new long[days * SlotBitmap.WORDS_PER_DAY];
+        int fromSlot = SlotBitmap.slotCeil(from.getHour() * 60 + from.getMinute());
+        int toSlot = SlotBitmap.slotOf(to);
+        for (int i = 0; i < days; i++) {
+            int base = i * SlotBitmap.BITS_PER_DAY;
+            SlotBitmap.mark(window, base + fromSlot, base + toSlot);
+        }
+        LocalDateTime now = LocalDateTime.now();
+        long todayIndex = ChronoUnit.DAYS.between(startDate, now.toLocalDate());
+        if (todayIndex >= 0) {
+            long[] past = new long[window.length];
+            int pastBits = (int) Math.min(todayIndex, days) * SlotBitmap.BITS_PER_DAY
+                    + (todayIndex < days ? SlotBitmap.slotCeil(now.getHour() * 60 + now.getMinute()) : 0);
+            SlotBitmap.mark(past, 0, pastBits);
+            SlotBitmap.andNot(window, 0, past);
+        }
+
+        long[] result = match == Match.ALL ? window.clone() : new long[window.length];
+        for (String userId : userIds.stream().distinct().toList()) {
+            long[] free = window.clone();
+            SlotBitmap.andNot(free, 0, getBusyBitmap(userId, startDate, endDate));
+            if (match == Match.ALL) {
+                SlotBitmap.and(result, free);
+            } else {
+                SlotBitmap.or(result, free);
+            }
+        }
+        return toFreeSlots(result, startDate, Math.max(minMinutes, SlotBitmap.SLOT_MINUTES));
+    }
+
+    /**
+     * 日程变更后失效受影响日期的位图; 日程可能跨天, 后一天一并失效
+     * 事务中发布的事件等提交后处理, 避免提交前用旧数据重新加载
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        if (event.dates().isEmpty()) {
+            busyDays.asMap().keySet().removeIf(key -> key.userId().equals(event.userId()));
+            return;
+        }
+        for (LocalDate date : event.dates()) {
+            busyDays.invalidate(new DayKey(event.userId(), date));
+            busyDays.invalidate(new DayKey(event.userId(), date.plusDays(1)));
+        }
+    }
+
+    /**
+     * 批量加载缺失的位图, 每个用户只查询一次日期范围
+     */
+    private Map<DayKey, long[]> load(Set<? extends DayKey> keys) {
+        Map<DayKey, long[]> result = new HashMap<>();
+        Map<String, List<LocalDate>> datesByUser = keys.stream().collect(Collectors.groupingBy(DayKey::userId,
+                Collectors.mapping(DayKey::date, Collectors.toList())));
+
+        datesByUser.forEach((userId, dates) -> {
+            LocalDate first = dates.stream().min(LocalDate::compareTo).orElseThrow();
+            LocalDate last = dates.stream().max(LocalDate::compareTo).orElseThrow();
+            Map<LocalDate, long[]> bitmaps = new HashMap<>();
+            for (LocalDate date : dates) {
+                bitmaps.put(date, new long[SlotBitmap.WORDS_PER_DAY]);
+            }
+
+            // 前一天开始的日程可能延续到第一天
+            for (Schedule schedule : scheduleService.getSchedulesByDateRange(userId, first.minusDays(1), last)) {
+                LocalDateTime start = ScheduleCalendarIndex.startOf(schedule);
+                if (start == null) {
+                    continue;
+                }
+                LocalDateTime end = scheduleCalendarIndex.endOf(schedule);
+                for (LocalDate date = start.toLocalDate(); !date.isAfter(end.toLocalDate()); date = date.plusDays(1)) {
+                    long[] bitmap = bitmaps.get(date);
+                    if (bitmap == null) {
+                        continue;
+                    }
+                    LocalDateTime midnight = date.atStartOfDay();
+                    long fromMinute = ChronoUnit.MINUTES.between(midnight, start);
+                    long toMinute = ChronoUnit.MINUTES.between(midnight, end);
+                    SlotBitmap.mark(bitmap,
+                            (int) Math.max(0, Math.floorDiv(fromMinute, SlotBitmap.SLOT_MINUTES)),
+                            (int) Math.min(SlotBitmap.SLOTS_PER_DAY, SlotBitmap.slotCeil((int) Math.max(0, toMinute))));
+                }
+            }
+            bitmaps.forEach((date, bitmap) -> result.put(new DayKey(userId, date), bitmap));
+        });
+        return result;
+    }
+
+    /**
+     * 把空闲位图中连续的 1 转换为时间段; 每天的位图之间有不使用的位隔开, 时间段不会跨天
+     */
+    private static List<FreeSlot> toFreeSlots(long[] free, LocalDate startDate, int minMinutes) {
+        List<FreeSlot> slots = new ArrayList<>();
+        BitSet bits = BitSet.valueOf(free);
+        int i = bits.nextSetBit(0);
+        while (i >= 0) {
+            int end = bits.nextClearBit(i);
+            int minutes = (end - i) * SlotBitmap.SLOT_MINUTES;
+            if (minutes >= minMinutes) {
+                int day = i / SlotBitmap.BITS_PER_DAY;
+                int base = day * SlotBitmap.BITS_PER_DAY;
+                slots.add(new FreeSlot(startDate.plusDays(day), SlotBitmap.timeOf(i - base),
+                        SlotBitmap.timeOf(end - base), minutes));
+            }
+            i = bits.nextSetBit(end);
+        }
+        return slots;
+    }
+
+    private static int checkRange(LocalDate startDate, LocalDate endDate) {
+        if (startDate == null || endDate == null || endDate.isBefore(startDate)) {
+            throw new IllegalArgumentException("结束日期不能早于开始日期");
+        }
+        long days = ChronoUnit.DAYS.between(startDate, endDate) + 1;
+        if (days > MAX_RANGE_DAYS) {
+            throw new IllegalArgumentException("单次最多查询 " + MAX_RANGE_DAYS + " 天");
+        }
+        return (int) days;
+    }
+
+    private record DayKey(String userId, LocalDate date) {
+    }
+}
@@ -1,6 +1,8 @@
 package com.example.quickplan_ai.Service;
 
+import com.example.quickplan_ai.common.CursorPage;
 import com.example.quickplan_ai.entity.Message;
+import com.example.quickplan_ai.util.PageCursor;
 
 import java.util.List;
 
@@ -11,19 +13,35 @@ public interface MessageService {
 
     /**
      * 保存用户消息
+     * 异步写入(见 MessageWriteBehindQueue), 返回的消息没有 id
      */
     Message saveUserMessage(String conversationId, String content);
 
     /**
      * 保存AI助手消息
+     * 异步写入(见 MessageWriteBehindQueue), 返回的消息没有 id
      */
     Message saveAssistantMessage(String conversationId, String content);
 
+    /**
+     * 保存AI助手消息, 写入后如果会话仍是默认标题, 使用 titleCandidate 作为标题
+     */
+    Message saveAssistantMessage(String conversationId, String content, String titleCandidate);
+
     /**
      * 获取会话的所有消息
      */
     List<Message> getConversationMessages(String conversationId);
 
+    /**
+     * 游标分页获取会话消息
+     *
+     * @param cursor    上一页返回的游标, 第一页传 null
+     * @param size      每页条数
+     * @param ascending true-从旧到新, false-从新到旧
+     */
+    CursorPage<Message> getMessagePage(String conversationId, PageCursor cursor, int size, boolean ascending);
+
     /**
      * 获取会话的最近N条消息
      */
@@ -31,6 +49,7 @@ public interface MessageService {
 
     /**
      * 统计会话的消息数量
+     * 读取 conversation.message_count, 由写入消息时同步维护, 计数校正任务定期修正
      */
     Integer countMessages(String conversationId);
 
@@ -0,0 +1,398 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.entity.Message;
+import com.example.quickplan_ai.mapper.ConversationMapper;
+import com.example.quickplan_ai.mapper.MessageMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.RecoverableDataAccessException;
+import org.springframework.dao.TransientDataAccessException;
+import org.springframework.dao.TransientDataAccessResourceException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.CannotCreateTransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTransientException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 消息异步写入队列(write-behind)
+ * 对话接口只把消息放进队列就返回, 由单独的写入线程把多个请求的消息合并成多行 INSERT
+ *
+ * 规则:
+ * - 单线程写入, 同一会话的消息按入队顺序落库
+ * - 攒够 batchSize 条或等待 flushInterval 后写一批; 整批失败时逐条写入, 只丢弃违反约束的消息(如会话已被删除)
+ * - 数据库暂时不可用(连接失败、锁超时等)时不丢弃: 未写入的消息留在写入线程中, 按 retryBackoff 起指数退避后
+ *   连同新消息一起重试, 同一会话的顺序不变
+ * - 队列有界: 已满时入队方最多阻塞 offerTimeout, 仍然满则在调用线程同步写入, 以此形成背压;
+ *   同步写入时数据库不可用则把异常抛给调用方, 不静默丢弃
+ * - 消息和会话的摘要字段(最后一条消息、消息数量、更新时间)在同一事务中写入, 会话列表直接读取, 不再逐个统计
+ * - 消息附带的标题候选在同一批写完后处理: 会话还是默认标题时用它更新标题
+ * - 只有写入线程写库: 应用关闭时由写入线程把队列中剩余和等待重试的消息写完后退出, 最多继续 shutdownTimeout;
+ *   写入线程确实结束后, stop() 才接手它留下的消息再尝试一次, 仍然写不进去的记录日志.
+ *   不中断写入线程, 正在进行的批次不会被 stop() 重复写入, 也不会因中断而丢失
+ */
+@Component
+public class MessageWriteBehindQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageWriteBehindQueue.class);
+
+    /**
+     * 会话列表中最后一条消息摘要的最大长度
+     */
+    private static final int LAST_MESSAGE_PREVIEW_LENGTH = 60;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Value("${quickplan.message.write-behind.queue-capacity:10000}")
+    private int queueCapacity;
+
+    @Value("${quickplan.message.write-behind.batch-size:200}")
+    private int batchSize;
+
+    @Value("${quickplan.message.write-behind.flush-interval:50ms}")
+    private Duration flushInterval;
+
+    @Value("${quickplan.message.write-behind.offer-timeout:2s}")
+    private Duration offerTimeout;
+
+    @Value("${quickplan.message.write-behind.retry-backoff:200ms}")
+    private Duration retryBackoff;
+
+    @Value("${quickplan.message.write-behind.max-retry-backoff:30s}")
+    private Duration maxRetryBackoff;
+
+    @Value("${quickplan.message.write-behind.shutdown-timeout:30s}")
+    private Duration shutdownTimeout;
+
+    private BlockingQueue<PendingMessage> queue;
+    private Thread writer;
+    private volatile boolean running;
+
+    /**
+     * 关闭时写入线程最多继续写到这个时间(System.nanoTime), 在 running 置为 false 之前设置
+     */
+    private volatile long shutdownDeadline;
+
+    /**
+     * 因数据库暂时不可用而等待重试的消息, 只由写入线程修改; 写入线程结束(join 返回)后由 stop() 接手
+     */
+    private volatile List<PendingMessage> retrying = List.of();
+
+    private Counter syncFallbacks;
+    private Counter dropped;
+    private Counter retries;
+    private Timer flushTimer;
+
+    @PostConstruct
+    public void start() {
+        queue = new ArrayBlockingQueue<>(queueCapacity);
+
+        Gauge.builder("quickplan.message.write-behind.queued", queue, BlockingQueue::size)
+                .description("等待写入的消息数").register(meterRegistry);
+        syncFallbacks = Counter.builder("quickplan.message.write-behind.sync-fallbacks")
+                .description("队列已满改为同步写入的消息数").register(meterRegistry);
+        dropped = Counter.builder("quickplan.message.write-behind.dropped")
+                .description("违反约束被丢弃的消息数").register(meterRegistry);
+        retries = Counter.builder("quickplan.message.write-behind.retries")
+                .description("数据库暂时不可用, 退避后重试的消息数").register(meterRegistry);
+        flushTimer = Timer.builder("quickplan.message.write-behind.flush")
+                .description("每批消息的写入耗时").register(meterRegistry);
+
+        running = true;
+        writer = new Thread(this::runWriter, "message-write-behind");
+        writer.start();
+    }
+
+    /**
+     * 消息入队
+     *
+     * @param titleCandidate 会话仍是默认标题时使用的新标题, 不需要时传 null
+     */
+    public void enqueue(Message message, String titleCandidate) {
+        PendingMessage pending = new PendingMessage(message, titleCandidate);
+        try {
+            if (running && queue.offer(pending, offerTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        // 队列已满或已关闭: 在调用线程同步写入
+        syncFallbacks.increment();
+        if (!flush(List.of(pending)).isEmpty()) {
+            throw new TransientDataAccessResourceException("数据库暂时不可用, 消息未写入");
+        }
+    }
+
+    private void runWriter() {
+        List<PendingMessage> batch = new ArrayList<>(batchSize);
+        long backoffNanos = 0;
+        while (running || !queue.isEmpty() || !retrying.isEmpty()) {
+            if (!running && System.nanoTime() - shutdownDeadline > 0) {
+                // 关闭超时, 剩余消息交给 stop()
+                break;
+            }
+            try {
+                if (retrying.isEmpty()) {
+                    PendingMessage first = queue.poll(flushInterval.toNanos(), TimeUnit.NANOSECONDS);
+                    if (first == null) {
+                        continue;
+                    }
+                    batch.add(first);
+                } else {
+                    if (!pause(backoffNanos)) {
+                        continue;
+                    }
+                    batch.addAll(retrying);
+                }
+                // 等待重试的消息在前, 新消息在后, 同一会话的顺序不变
+                queue.drainTo(batch, Math.max(0, batchSize - batch.size()));
+                retrying = flush(batch);
+                if (retrying.isEmpty()) {
+                    backoffNanos = 0;
+                } else {
+                    retries.increment(retrying.size());
+                    backoffNanos = backoffNanos == 0 ? retryBackoff.toNanos()
+                            : Math.min(backoffNanos * 2, maxRetryBackoff.toNanos());
+                    logger.warn("数据库暂时不可用, {} 条消息 {} 毫秒后重试",
+                            retrying.size(), TimeUnit.NANOSECONDS.toMillis(backoffNanos));
+                }
+            } catch (InterruptedException e) {
+                // 不响应中断, 关闭由 running 和 shutdownDeadline 控制
+                Thread.interrupted();
+            } catch (Exception e) {
+                logger.error("消息批量写入异常: {}", e.getMessage(), e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * 退避等待; 开始关闭时被 stop() 唤醒立即重试, 关闭期间最多等到 shutdownDeadline
+     *
+     * @return 关闭已超时返回 false, 不再重试
+     */
+    private boolean pause(long nanos) {
+        long deadline = System.nanoTime() + nanos;
+        boolean stopping = !running;
+        while (true) {
+            long remaining = (stopping ? Math.min(deadline, shutdownDeadline) : deadline) - System.nanoTime();
+            if (remaining <= 0 || (!stopping && !running)) {
+                return running || shutdownDeadline - System.nanoTime() > 0;
+            }
+            LockSupport.parkNanos(this, remaining);
+        }
+    }
+
+    /**
+     * 写入一批消息
+     *
+     * @return 因数据库暂时不可用而没有写入的消息(保持原顺序), 需要重试; 全部写入或只有违反约束的消息时为空
+     */
+    private List<PendingMessage> flush(List<PendingMessage> batch) {
+        long start = System.nanoTime();
+        List<Message> messages = new ArrayList<>(batch.size());
+        for (PendingMessage pending : batch) {
+            messages.add(pending.message());
+        }
+
+        List<PendingMessage> written = batch;
+        List<PendingMessage> retry = List.of();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                messageMapper.batchInsert(messages);
+                updateConversationSummaries(messages);
+            });
+        } catch (Exception e) {
+            if (isTransient(e)) {
+                logger.warn("批量写入 {} 条消息失败, 数据库暂时不可用: {}", messages.size(), e.getMessage());
+                return new ArrayList<>(batch);
+            }
+            logger.warn("批量写入 {} 条消息失败, 改为逐条写入: {}", messages.size(), e.getMessage());
+            written = new ArrayList<>(batch.size());
+            for (int i = 0; i < batch.size(); i++) {
+                PendingMessage pending = batch.get(i);
+                Message message = pending.message();
+                try {
+                    transactionTemplate.executeWithoutResult(status -> {
+                        messageMapper.insert(message);
+                        updateConversationSummaries(List.of(message));
+                    });
+                    written.add(pending);
+                } catch (Exception single) {
+                    if (!isConstraintViolation(single)) {
+                        // 不是数据本身的问题: 这条和之后的消息都留待重试, 不打乱同一会话的顺序
+                        logger.warn("消息写入失败, 稍后重试, conversationId: {}, 原因: {}",
+                                message.getConversationId(), single.getMessage());
+                        retry = new ArrayList<>(batch.subList(i, batch.size()));
+                        break;
+                    }
+                    dropped.increment();
+                    logger.error("消息违反约束, 已丢弃, conversationId: {}, role: {}, 原因: {}",
+                            message.getConversationId(), message.getRole(), single.getMessage());
+                }
+            }
+        }
+
+        updateTitles(written);
+        flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return retry;
+    }
+
+    /**
+     * 已写入的消息附带的标题候选: 同一会话只取最早的一个
+     */
+    private void updateTitles(List<PendingMessage> written) {
+        Map<String, String> titles = new LinkedHashMap<>();
+        for (PendingMessage pending : written) {
+            if (pending.titleCandidate() != null) {
+                titles.putIfAbsent(pending.message().getConversationId(), pending.titleCandidate());
+            }
+        }
+        LocalDateTime now = LocalDateTime.now();
+        titles.forEach((conversationId, title) -> {
+            try {
+                conversationMapper.updateTitleIfDefault(conversationId, title, now);
+            } catch (Exception e) {
+                logger.warn("自动更新会话标题失败, conversationId: {}, 原因: {}", conversationId, e.getMessage());
+            }
+        });
+    }
+
+    /**
+     * 连接失败、锁等待超时、死锁等, 稍后重试可能成功
+     */
+    static boolean isTransient(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransientDataAccessException
+                    || cause instanceof RecoverableDataAccessException
+                    || cause instanceof DataAccessResourceFailureException
+                    || cause instanceof CannotCreateTransactionException
+                    || cause instanceof SQLTransientException
+                    || cause instanceof SQLRecoverableException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 违反唯一键、外键等约束, 重试也写不进去
+     */
+    static boolean isConstraintViolation(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof DataIntegrityViolationException
+                    || cause instanceof SQLIntegrityConstraintViolationException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按会话汇总本批消息, 更新会话的消息数量、最后一条消息和更新时间
+     * 按会话ID顺序更新, 与同步写入的批次并发时加锁顺序一致
+     */
+    private void updateConversationSummaries(List<Message> messages) {
+        Map<String, Integer> counts = new TreeMap<>();
+        Map<String, Message> lastMessages = new TreeMap<>();
+        for (Message message : messages) {
+            counts.merge(message.getConversationId(), 1, Integer::sum);
+            lastMessages.put(message.getConversationId(), message);
+        }
+        counts.forEach((conversationId, count) -> {
+            Message last = lastMessages.get(conversationId);
+            conversationMapper.appendMessages(conversationId, count, preview(last.getContent()), last.getCreatedAt());
+        });
+    }
+
+    private static String preview(String content) {
+        if (content == null) {
+            return null;
+        }
+        String text = content.strip().replaceAll("\\s+", " ");
+        if (text.length() <= LAST_MESSAGE_PREVIEW_LENGTH) {
+            return text;
+        }
+        // 不在代理对中间截断
+        int end = text.offsetByCodePoints(0, text.codePointCount(0, LAST_MESSAGE_PREVIEW_LENGTH));
+        return text.substring(0, end) + "...";
+    }
+
+    /**
+     * 当前排队的消息数
+     */
+    public int size() {
+        return queue.size();
+    }
+
+    @PreDestroy
+    public void stop() {
+        shutdownDeadline = System.nanoTime() + shutdownTimeout.toNanos();
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            // 写入线程最多再写 shutdownTimeout, 多等一会儿让进行中的批次(JDBC 调用不响应中断)结束
+            writer.join(shutdownTimeout.toMillis() + TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (writer.isAlive()) {
+            // 写入线程仍持有进行中的批次, 不能在这里重复写入
+            logger.error("应用关闭时消息写入线程未结束, 队列中 {} 条、等待重试 {} 条消息可能未写入",
+                    queue.size(), retrying.size());
+            return;
+        }
+
+        List<PendingMessage> remaining = new ArrayList<>(retrying);
+        queue.drainTo(remaining);
+        if (!remaining.isEmpty()) {
+            logger.info("应用关闭, 写入队列中剩余的 {} 条消息", remaining.size());
+            int unwritten = 0;
+            for (int i = 0; i < remaining.size(); i += batchSize) {
+                unwritten += flush(remaining.subList(i, Math.min(i + batchSize, remaining.size()))).size();
+            }
+            if (unwritten > 0) {
+                logger.error("应用关闭时数据库仍不可用, {} 条消息未能写入", unwritten);
+            }
+        }
+    }
+
+    private record PendingMessage(Message message, String titleCandidate) {
+    }
+}
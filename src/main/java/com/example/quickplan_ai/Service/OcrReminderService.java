@@ -14,6 +14,11 @@ public interface OcrReminderService {
      */
     OcrReminder createReminder(OcrReminder reminder);
 
+    /**
+     * 批量创建OCR提醒, 在同一个事务中以多行 INSERT 写入
+     */
+    List<OcrReminder> createReminders(List<OcrReminder> reminders);
+
     /**
      * 根据ID获取提醒
      */
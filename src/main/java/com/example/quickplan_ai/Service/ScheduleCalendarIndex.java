@@ -0,0 +1,364 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.event.ScheduleChangedEvent;
+import com.example.quickplan_ai.mapper.ScheduleMapper;
+import com.example.quickplan_ai.util.IntervalTree;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * 按用户缓存的日历索引
+ * 日历视图和AI查询会反复按日期、日期范围查同一个用户的日程, 这里把用户的全部日程按 (日期, 时间) 排好序放在内存中,
+ * 按日期和范围查询时二分定位, 不再访问数据库; 有时间的日程另外建一棵 {@link IntervalTree}, 用于创建日程时检测时间冲突
+ *
+ * 规则:
+ * - 首次查询某个用户时从数据库加载, 长时间未访问的用户按 idle-timeout 淘汰, 缓存的用户数不超过 max-users
+ * - 无论是否访问、是否写穿, 索引自加载起最多保留 ttl, 到期后重新加载; 漏掉其他节点的广播时以此兜底
+ * - 日程数超过 max-schedules-per-user 的用户只记录"不缓存", 仍然查数据库
+ * - ScheduleServiceImpl 新增、修改、删除日程后直接更新索引(写穿); 在事务中时等提交后再更新
+ * - 其他节点的日程变更通过 {@link ScheduleChangedEvent} 广播, 收到后丢弃该用户的索引, 下次查询重新加载
+ * - 索引内容不可变, 每次写入替换整个数组; 查询返回日程的副本, 调用方修改不影响索引
+ */
+@Component
+public class ScheduleCalendarIndex {
+
+    /**
+     * 与 SQL 的 ORDER BY date ASC, time ASC 一致: 没有时间的日程排在当天最前
+     */
+    private static final Comparator<Schedule> ORDER = Comparator
+            .comparing(Schedule::getDate)
+            .thenComparing(Schedule::getTime, Comparator.nullsFirst(Comparator.<LocalTime>naturalOrder()))
+            .thenComparing(Schedule::getId);
+
+    @Autowired
+    private ScheduleMapper scheduleMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${quickplan.schedule.calendar-index.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quickplan.schedule.calendar-index.max-users:10000}")
+    private long maxUsers;
+
+    @Value("${quickplan.schedule.calendar-index.max-schedules-per-user:5000}")
+    private int maxSchedulesPerUser;
+
+    @Value("${quickplan.schedule.calendar-index.idle-timeout:30m}")
+    private Duration idleTimeout;
+
+    @Value("${quickplan.schedule.calendar-index.ttl:10m}")
+    private Duration ttl;
+
+    @Value("${quickplan.schedule.conflict.default-duration-minutes:60}")
+    private int defaultDurationMinutes;
+
+    private Cache<String, Calendar> calendars;
+
+    private Counter hits;
+    private Counter loads;
+
+    @PostConstruct
+    public void init() {
+        calendars = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfter(new Expiry<String, Calendar>() {
+                    @Override
+                    public long expireAfterCreate(String userId, Calendar calendar, long currentTime) {
+                        return remaining(calendar, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String userId, Calendar calendar, long currentTime,
+                                                  long currentDuration) {
+                        return remaining(calendar, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String userId, Calendar calendar, long currentTime,
+                                                long currentDuration) {
+                        return remaining(calendar, currentTime);
+                    }
+                })
+                .build();
+
+        Gauge.builder("quickplan.schedule.index.users", calendars, Cache::estimatedSize)
+                .description("已缓存日历索引的用户数").register(meterRegistry);
+        hits = Counter.builder("quickplan.schedule.index.requests").tag("result", "hit")
+                .description("日历索引查询次数").register(meterRegistry);
+        loads = Counter.builder("quickplan.schedule.index.requests").tag("result", "load")
+                .description("日历索引查询次数").register(meterRegistry);
+    }
+
+    /**
+     * 距离过期的纳秒数: 空闲超时与加载后 ttl 中较早的一个, 写穿更新不延长 ttl
+     */
+    private long remaining(Calendar calendar, long currentTime) {
+        long untilStale = calendar.loadedAt() + ttl.toNanos() - currentTime;
+        return Math.max(0, Math.min(idleTimeout.toNanos(), untilStale));
+    }
+
+    /**
+     * 查询用户某一天的日程, 用户未启用索引时返回 empty, 由调用方查询数据库
+     */
+    public Optional<List<Schedule>> findByDate(String userId, LocalDate date) {
+        return findByDateRange(userId, date, date);
+    }
+
+    /**
+     * 查询用户日期范围内(含首尾)的日程, 按日期、时间排序
+     * 用户未启用索引时返回 empty, 由调用方查询数据库
+     */
+    public Optional<List<Schedule>> findByDateRange(String userId, LocalDate startDate, LocalDate endDate) {
+        Calendar calendar = calendar(userId);
+        if (calendar == null) {
+            return Optional.empty();
+        }
+        Schedule[] schedules = calendar.schedules;
+        List<Schedule> result = new ArrayList<>();
+        for (int i = firstOnOrAfter(schedules, startDate); i < schedules.length; i++) {
+            if (schedules[i].getDate().isAfter(endDate)) {
+                break;
+            }
+            result.add(copy(schedules[i]));
+        }
+        return Optional.of(result);
+    }
+
+    /**
+     * 查询用户与 [start, end) 时间段重叠的日程(不含没有时间的全天日程), 按开始时间排序
+     * 用户未启用索引时返回 empty, 由调用方查询数据库
+     */
+    public Optional<List<Schedule>> findOverlapping(String userId, LocalDateTime start, LocalDateTime end) {
+        Calendar calendar = calendar(userId);
+        if (calendar == null) {
+            return Optional.empty();
+        }
+        return Optional.of(calendar.intervals.overlapping(minuteOf(start), minuteOf(end)).stream()
+                .map(ScheduleCalendarIndex::copy)
+                .toList());
+    }
+
+    /**
+     * 日程的开始时间, 没有时间的日程返回 null
+     */
+    public static LocalDateTime startOf(Schedule schedule) {
+        return schedule.getDate() == null || schedule.getTime() == null ? null
+                : schedule.getDate().atTime(schedule.getTime());
+    }
+
+    /**
+     * 日程的结束时间, 没有时长时按默认时长计算
+     */
+    public LocalDateTime endOf(Schedule schedule) {
+        LocalDateTime start = startOf(schedule);
+        if (start == null) {
+            return null;
+        }
+        Integer duration = schedule.getDurationMinutes();
+        return start.plusMinutes(duration != null && duration > 0 ? duration : defaultDurationMinutes);
+    }
+
+    /**
+     * 新增或修改后写入索引, 日程必须是完整的记录(含 userId、date)
+     */
+    public void put(Schedule schedule) {
+        putAll(List.of(schedule));
+    }
+
+    /**
+     * 批量新增后写入索引
+     */
+    public void putAll(Collection<Schedule> schedules) {
+        if (!enabled || schedules.isEmpty()) {
+            return;
+        }
+        List<Schedule> copies = schedules.stream()
+                .filter(s -> s.getUserId() != null && s.getDate() != null)
+                .map(ScheduleCalendarIndex::copy)
+                .toList();
+        afterCommit(() -> {
+            for (String userId : copies.stream().map(Schedule::getUserId).distinct().toList()) {
+                List<Schedule> own = copies.stream().filter(s -> s.getUserId().equals(userId)).toList();
+                calendars.asMap().computeIfPresent(userId, (key, calendar) -> with(calendar, own));
+            }
+        });
+    }
+
+    /**
+     * 删除后移出索引
+     */
+    public void remove(String userId, String scheduleId) {
+        if (!enabled || userId == null) {
+            return;
+        }
+        afterCommit(() -> calendars.asMap().computeIfPresent(userId, (key, calendar) -> without(calendar, scheduleId)));
+    }
+
+    /**
+     * 丢弃用户的索引, 下次查询时重新加载
+     */
+    public void invalidate(String userId) {
+        calendars.invalidate(userId);
+    }
+
+    /**
+     * 其他节点修改了日程: 本节点的索引已经过时
+     * 本节点的修改已经写穿, 不需要处理
+     */
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        if (event.remote()) {
+            invalidate(event.userId());
+        }
+    }
+
+    /**
+     * 取用户的索引, 不存在时加载
+     * 加载在缓存的 compute 中进行, 同一用户并发的写入会等加载完成后再应用, 不会被加载结果覆盖
+     */
+    private Calendar calendar(String userId) {
+        if (!enabled || userId == null) {
+            return null;
+        }
+        boolean[] loaded = new boolean[1];
+        Calendar calendar = calendars.get(userId, key -> {
+            loaded[0] = true;
+            long loadedAt = System.nanoTime();
+            List<Schedule> schedules = scheduleMapper.selectByUserId(key);
+            if (schedules.size() > maxSchedulesPerUser) {
+                return Calendar.tooLarge(loadedAt);
+            }
+            Schedule[] sorted = schedules.toArray(new Schedule[0]);
+            Arrays.sort(sorted, ORDER);
+            return newCalendar(sorted, loadedAt);
+        });
+        (loaded[0] ? loads : hits).increment();
+        return calendar.isTooLarge() ? null : calendar;
+    }
+
+    private Calendar with(Calendar calendar, List<Schedule> changed) {
+        if (calendar.isTooLarge()) {
+            return calendar;
+        }
+        Set<String> ids = new HashSet<>();
+        for (Schedule schedule : changed) {
+            ids.add(schedule.getId());
+        }
+        List<Schedule> merged = new ArrayList<>(calendar.schedules.length + changed.size());
+        for (Schedule schedule : calendar.schedules) {
+            if (!ids.contains(schedule.getId())) {
+                merged.add(schedule);
+            }
+        }
+        merged.addAll(changed);
+        if (merged.size() > maxSchedulesPerUser) {
+            return Calendar.tooLarge(calendar.loadedAt());
+        }
+        Schedule[] sorted = merged.toArray(new Schedule[0]);
+        Arrays.sort(sorted, ORDER);
+        return newCalendar(sorted, calendar.loadedAt());
+    }
+
+    private Calendar without(Calendar calendar, String scheduleId) {
+        if (calendar.isTooLarge()) {
+            return calendar;
+        }
+        Schedule[] remaining = Arrays.stream(calendar.schedules)
+                .filter(s -> !s.getId().equals(scheduleId))
+                .toArray(Schedule[]::new);
+        return remaining.length == calendar.schedules.length ? calendar
+                : newCalendar(remaining, calendar.loadedAt());
+    }
+
+    /**
+     * 每次写入都整体重建, 区间树随排好序的数组一起构建, 只包含有时间的日程
+     * 写穿重建时沿用原来的加载时间, ttl 从加载时算起
+     */
+    private Calendar newCalendar(Schedule[] sorted, long loadedAt) {
+        List<Schedule> timed = Arrays.stream(sorted).filter(s -> s.getTime() != null).toList();
+        return new Calendar(sorted, IntervalTree.of(timed,
+                s -> minuteOf(startOf(s)), s -> minuteOf(endOf(s))), loadedAt);
+    }
+
+    private static long minuteOf(LocalDateTime time) {
+        return time.toEpochSecond(ZoneOffset.UTC) / 60;
+    }
+
+    /**
+     * 第一个日期不早于 date 的位置
+     */
+    private static int firstOnOrAfter(Schedule[] schedules, LocalDate date) {
+        int low = 0;
+        int high = schedules.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (schedules[mid].getDate().isBefore(date)) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Schedule copy(Schedule s) {
+        return new Schedule(s.getId(), s.getUserId(), s.getTitle(), s.getLocation(), s.getDate(), s.getTime(),
+                s.getDurationMinutes(), s.getDescription(), s.getCreatedAt(), s.getUpdatedAt(), s.getIsDeleted(), s.getSeriesId());
+    }
+
+    /**
+     * 一个用户的日程, 按 (日期, 时间, ID) 排序, 以及其中有时间的日程构成的区间树
+     * schedules 为 null 表示日程过多、不缓存; loadedAt 为从数据库加载时的 System.nanoTime()
+     */
+    private record Calendar(Schedule[] schedules, IntervalTree<Schedule> intervals, long loadedAt) {
+
+        static Calendar tooLarge(long loadedAt) {
+            return new Calendar(null, null, loadedAt);
+        }
+
+        boolean isTooLarge() {
+            return schedules == null;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.mapper.ScheduleMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 日程时间冲突检测
+ * 日程占用 [日期+时间, 日期+时间+时长), 没有时长时按默认时长计算, 没有时间的全天日程不参与冲突检测
+ *
+ * 普通日程由 {@link ScheduleCalendarIndex} 中按用户构建的区间树回答, 不额外查询数据库;
+ * 只有日程过多、未进入索引的用户才按日期范围查库。重复日程的实例按候选时间段展开后一并检查
+ */
+@Component
+public class ScheduleConflictDetector {
+
+    /**
+     * 单个日程允许的最长时长, 查库时据此确定需要向前多查的天数
+     */
+    public static final int MAX_DURATION_MINUTES = 24 * 60;
+
+    private static final Comparator<Schedule> START_ORDER = Comparator.comparing(ScheduleCalendarIndex::startOf);
+
+    @Autowired
+    private ScheduleCalendarIndex scheduleCalendarIndex;
+
+    @Autowired
+    private ScheduleMapper scheduleMapper;
+
+    @Autowired
+    private ScheduleSeriesService scheduleSeriesService;
+
+    /**
+     * 查找与候选日程时间重叠的已有日程, 按开始时间排序
+     * 候选日程有 ID 时(如修改)排除其自身; 候选日程没有时间时返回空列表
+     */
+    public List<Schedule> findConflicts(Schedule candidate) {
+        LocalDateTime start = ScheduleCalendarIndex.startOf(candidate);
+        if (candidate.getUserId() == null || start == null) {
+            return List.of();
+        }
+        LocalDateTime end = scheduleCalendarIndex.endOf(candidate);
+        String userId = candidate.getUserId();
+
+        // 前一天开始的日程可能延续到候选时间段
+        LocalDate fromDate = start.toLocalDate().minusDays(1);
+        LocalDate toDate = end.toLocalDate();
+
+        List<Schedule> conflicts = new ArrayList<>(scheduleCalendarIndex.findOverlapping(userId, start, end)
+                .orElseGet(() -> overlapping(scheduleMapper.selectByUserIdAndDateRange(userId, fromDate, toDate),
+                        start, end)));
+        conflicts.addAll(overlapping(scheduleSeriesService.expandOccurrences(userId, fromDate, toDate), start, end));
+        if (candidate.getId() != null) {
+            conflicts.removeIf(s -> candidate.getId().equals(s.getId()));
+        }
+        conflicts.sort(START_ORDER);
+        return conflicts;
+    }
+
+    private List<Schedule> overlapping(List<Schedule> schedules, LocalDateTime start, LocalDateTime end) {
+        List<Schedule> result = new ArrayList<>();
+        for (Schedule schedule : schedules) {
+            LocalDateTime otherStart = ScheduleCalendarIndex.startOf(schedule);
+            if (otherStart != null && otherStart.isBefore(end)
+                    && scheduleCalendarIndex.endOf(schedule).isAfter(start)) {
+                result.add(schedule);
+            }
+        }
+        return result;
+    }
+}
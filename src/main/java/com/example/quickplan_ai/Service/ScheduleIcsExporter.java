@@ -0,0 +1,229 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.dto.ScheduleFeedVersion;
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.entity.ScheduleSeries;
+import com.example.quickplan_ai.mapper.ScheduleMapper;
+import com.example.quickplan_ai.mapper.ScheduleSeriesMapper;
+import jakarta.annotation.PostConstruct;
+import org.apache.ibatis.cursor.Cursor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * 日程导出为 iCalendar(RFC 5545)
+ * 普通日程通过 MyBatis {@link Cursor} 逐行读取并直接写到输出流, 内存占用与日程数量无关;
+ * 重复日程原样导出为带 RRULE/EXDATE 的事件, 由日历应用自行展开
+ *
+ * 时间按"浮动时间"(不带时区)导出, 由日历应用按本地时区显示; 没有时间的日程导出为全天事件
+ */
+@Component
+public class ScheduleIcsExporter {
+
+    private static final DateTimeFormatter DATE = DateTimeFormatter.ofPattern("yyyyMMdd");
+    private static final DateTimeFormatter DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter UTC_DATE_TIME = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'");
+
+    /**
+     * RFC 5545 3.1: 每行最多 75 个字节, 超出部分折行, 续行以一个空格开头
+     */
+    private static final int MAX_LINE_OCTETS = 75;
+
+    private static final String UID_SUFFIX = "@quickplan";
+
+    @Autowired
+    private ScheduleMapper scheduleMapper;
+
+    @Autowired
+    private ScheduleSeriesMapper scheduleSeriesMapper;
+
+    @Autowired
+    private ScheduleCalendarIndex scheduleCalendarIndex;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Value("${quickplan.schedule.ics.calendar-name:QuickPlan 日程}")
+    private String calendarName;
+
+    /**
+     * 游标需要在事务中保持连接, 只读事务即可
+     */
+    private TransactionTemplate readOnlyTransaction;
+
+    @PostConstruct
+    public void init() {
+        readOnlyTransaction = new TransactionTemplate(transactionManager);
+        readOnlyTransaction.setReadOnly(true);
+    }
+
+    /**
+     * 用户日程数据的版本, 只做计数和最大更新时间的查询, 不读取日程内容
+     */
+    public ScheduleFeedVersion getVersion(String userId) {
+        return scheduleMapper.selectFeedVersion(userId);
+    }
+
+    /**
+     * 由版本生成 ETag(不含引号), 日程数或最大更新时间变化时随之变化
+     */
+    public static String etagOf(ScheduleFeedVersion version) {
+        return "s" + version.getScheduleCount() + "-r" + version.getSeriesCount() + "-"
+                + version.getLastModified().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * 把用户的全部日程写为 iCalendar, 写完后 flush, 不关闭输出流
+     */
+    public void export(String userId, OutputStream out) throws IOException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writeLine(writer, "BEGIN:VCALENDAR");
+        writeLine(writer, "VERSION:2.0");
+        writeLine(writer, "PRODID:-//QuickPlan AI//Schedule Export//CN");
+        writeLine(writer, "CALSCALE:GREGORIAN");
+        writeLine(writer, "METHOD:PUBLISH");
+        writeLine(writer, "X-WR-CALNAME:" + escape(calendarName));
+
+        // 重复日程条数很少, 先于游标读取, 游标打开期间同一连接不能执行其他查询
+        for (ScheduleSeries series : scheduleSeriesMapper.selectByUserId(userId)) {
+            writeSeries(writer, series);
+        }
+
+        try {
+            readOnlyTransaction.executeWithoutResult(status -> {
+                try (Cursor<Schedule> cursor = scheduleMapper.streamByUserId(userId)) {
+                    for (Schedule schedule : cursor) {
+                        writeSchedule(writer, schedule);
+                    }
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        writeLine(writer, "END:VCALENDAR");
+        writer.flush();
+    }
+
+    private void writeSchedule(Writer writer, Schedule schedule) throws IOException {
+        writeLine(writer, "BEGIN:VEVENT");
+        writeLine(writer, "UID:" + schedule.getId() + UID_SUFFIX);
+        writeStamps(writer, schedule.getUpdatedAt());
+        if (schedule.getTime() == null) {
+            writeLine(writer, "DTSTART;VALUE=DATE:" + schedule.getDate().format(DATE));
+        } else {
+            writeLine(writer, "DTSTART:" + ScheduleCalendarIndex.startOf(schedule).format(DATE_TIME));
+            writeLine(writer, "DTEND:" + scheduleCalendarIndex.endOf(schedule).format(DATE_TIME));
+        }
+        writeText(writer, schedule.getTitle(), schedule.getLocation(), schedule.getDescription());
+        writeLine(writer, "END:VEVENT");
+    }
+
+    private void writeSeries(Writer writer, ScheduleSeries series) throws IOException {
+        boolean allDay = series.getTime() == null;
+        List<LocalDate> exdates = series.getExdates() == null || series.getExdates().isBlank() ? List.of()
+                : Arrays.stream(series.getExdates().split(",")).map(String::strip).map(LocalDate::parse).toList();
+
+        writeLine(writer, "BEGIN:VEVENT");
+        writeLine(writer, "UID:series-" + series.getId() + UID_SUFFIX);
+        writeStamps(writer, series.getUpdatedAt());
+        if (allDay) {
+            writeLine(writer, "DTSTART;VALUE=DATE:" + series.getStartDate().format(DATE));
+            writeLine(writer, "RRULE:" + series.getRrule());
+            if (!exdates.isEmpty()) {
+                writeLine(writer, "EXDATE;VALUE=DATE:" + exdates.stream().map(d -> d.format(DATE))
+                        .collect(Collectors.joining(",")));
+            }
+        } else {
+            Schedule first = new Schedule();
+            first.setDate(series.getStartDate());
+            first.setTime(series.getTime());
+            first.setDurationMinutes(series.getDurationMinutes());
+            writeLine(writer, "DTSTART:" + ScheduleCalendarIndex.startOf(first).format(DATE_TIME));
+            writeLine(writer, "DTEND:" + scheduleCalendarIndex.endOf(first).format(DATE_TIME));
+            // DTSTART 带时间时 UNTIL 也必须带时间, 库中保存的是日期, 取当天结束
+            writeLine(writer, "RRULE:" + series.getRrule().replaceAll("UNTIL=(\\d{8})(?=;|$)", "UNTIL=$1T235959"));
+            if (!exdates.isEmpty()) {
+                writeLine(writer, "EXDATE:" + exdates.stream().map(d -> d.atTime(series.getTime()).format(DATE_TIME))
+                        .collect(Collectors.joining(",")));
+            }
+        }
+        writeText(writer, series.getTitle(), series.getLocation(), series.getDescription());
+        writeLine(writer, "END:VEVENT");
+    }
+
+    private static void writeStamps(Writer writer, LocalDateTime updatedAt) throws IOException {
+        String stamp = (updatedAt != null ? updatedAt : LocalDateTime.now())
+                .atZone(ZoneId.systemDefault())
+                .withZoneSameInstant(ZoneOffset.UTC)
+                .format(UTC_DATE_TIME);
+        writeLine(writer, "DTSTAMP:" + stamp);
+        writeLine(writer, "LAST-MODIFIED:" + stamp);
+    }
+
+    private static void writeText(Writer writer, String title, String location, String description)
+            throws IOException {
+        writeLine(writer, "SUMMARY:" + escape(title));
+        if (location != null && !location.isBlank()) {
+            writeLine(writer, "LOCATION:" + escape(location));
+        }
+        if (description != null && !description.isBlank()) {
+            writeLine(writer, "DESCRIPTION:" + escape(description));
+        }
+    }
+
+    /**
+     * 写一行内容, 按 UTF-8 字节数折行, 不在多字节字符中间断开
+     */
+    private static void writeLine(Writer writer, String line) throws IOException {
+        int octets = 0;
+        for (int i = 0; i < line.length(); ) {
+            int codePoint = line.codePointAt(i);
+            int size = codePoint < 0x80 ? 1 : codePoint < 0x800 ? 2 : codePoint < 0x10000 ? 3 : 4;
+            if (octets + size > MAX_LINE_OCTETS) {
+                writer.write("\r\n ");
+                octets = 1;
+            }
+            writer.write(line, i, Character.charCount(codePoint));
+            octets += size;
+            i += Character.charCount(codePoint);
+        }
+        writer.write("\r\n");
+    }
+
+    /**
+     * RFC 5545 3.3.11 TEXT 值的转义
+     */
+    private static String escape(String text) {
+        if (text == null) {
+            return "";
+        }
+        return text.replace("\\", "\\\\")
+                .replace(";", "\\;")
+                .replace(",", "\\,")
+                .replace("\r\n", "\\n")
+                .replace("\n", "\\n")
+                .replace("\r", "");
+    }
+}
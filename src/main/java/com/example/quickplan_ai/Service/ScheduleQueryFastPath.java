@@ -0,0 +1,161 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.util.RelativeDateParser;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * 日程查询快速通道
+ * "明天有什么安排""周五要做什么"这类问题最终都只会调用 {@link ScheduleTools#getSchedulesByDate},
+ * 先用规则识别意图, 高置信度时直接查询日程, 不经过大模型
+ *
+ * 只有同时满足以下条件才走快速通道, 其余情况交给模型:
+ * - 消息较短, 且只包含一个可换算的日期(词表见 {@link RelativeDateParser})
+ * - 包含查询类词语(安排、日程、做什么...)
+ * - 不包含添加/删除/修改类词语, 不包含具体时刻(3点、下午), 避免把"明天下午3点开会"当成查询
+ *
+ * 指标:
+ * - quickplan.ai.fastpath.requests{result=hit|miss}: 命中率
+ * - quickplan.ai.fastpath.latency: 快速通道耗时
+ * - quickplan.ai.model.latency: 走模型的对话耗时
+ * - quickplan.ai.fastpath.saved: 累计节省的时间(毫秒), 按模型平均耗时减去快速通道耗时估算
+ */
+@Component
+public class ScheduleQueryFastPath {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleQueryFastPath.class);
+
+    private static final Pattern QUERY_CUE = Pattern.compile(
+            "什么安排|啥安排|哪些安排|有什么|有啥|有哪些|安排|日程|行程|计划|要做什么|做什么|干什么|干啥|忙不忙|忙吗|有空|空吗");
+
+    private static final Pattern WRITE_CUE = Pattern.compile(
+            "添加|新增|增加|加一?个|加上|创建|新建|记一下|记下|帮我记|提醒我?|删除|删掉|删了|取消|修改|改成|改到|改为|"
+                    + "推迟|提前|延期|挪到|换到|预约|约了|安排一?个|安排上|帮我安排|设置|定个|定一个");
+
+    private static final Pattern CLOCK_TIME = Pattern.compile(
+            "\\d{1,2}\\s*[点时:：]|上午|下午|中午|晚上|早上|凌晨|傍晚");
+
+    @Autowired
+    private ScheduleTools scheduleTools;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${quickplan.ai.fast-path.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quickplan.ai.fast-path.max-length:30}")
+    private int maxLength;
+
+    /**
+     * 还没有模型耗时样本时, 估算节省时间使用的模型耗时
+     */
+    @Value("${quickplan.ai.fast-path.assumed-model-latency:3s}")
+    private Duration assumedModelLatency;
+
+    private Counter hits;
+    private Counter misses;
+    private Counter savedMillis;
+    private Timer fastPathTimer;
+    private Timer modelTimer;
+
+    @PostConstruct
+    public void init() {
+        hits = Counter.builder("quickplan.ai.fastpath.requests").tag("result", "hit")
+                .description("日程查询快速通道命中次数").register(meterRegistry);
+        misses = Counter.builder("quickplan.ai.fastpath.requests").tag("result", "miss")
+                .description("日程查询快速通道未命中次数").register(meterRegistry);
+        savedMillis = Counter.builder("quickplan.ai.fastpath.saved").baseUnit("milliseconds")
+                .description("快速通道节省的模型调用时间(估算)").register(meterRegistry);
+        fastPathTimer = Timer.builder("quickplan.ai.fastpath.latency")
+                .description("快速通道回复耗时").register(meterRegistry);
+        modelTimer = Timer.builder("quickplan.ai.model.latency")
+                .description("经过模型的对话回复耗时").register(meterRegistry);
+    }
+
+    /**
+     * 识别到高置信度的日程查询时直接返回查询结果
+     *
+     * @param today 换算相对日期的基准日期
+     * @return 查询结果, 未命中时为空
+     */
+    public Optional<String> tryAnswer(String userId, String message, LocalDate today) {
+        if (!enabled) {
+            return Optional.empty();
+        }
+        long start = System.nanoTime();
+        LocalDate date = classify(message, today);
+        if (date == null) {
+            misses.increment();
+            return Optional.empty();
+        }
+
+        String reply = scheduleTools.getSchedulesByDate(userId, date.format(DateTimeFormatter.ISO_LOCAL_DATE));
+        long elapsed = System.nanoTime() - start;
+
+        hits.increment();
+        fastPathTimer.record(elapsed, TimeUnit.NANOSECONDS);
+        double modelMillis = modelTimer.count() > 0
+                ? modelTimer.mean(TimeUnit.MILLISECONDS)
+                : assumedModelLatency.toMillis();
+        savedMillis.increment(Math.max(0, modelMillis - TimeUnit.NANOSECONDS.toMillis(elapsed)));
+
+        logger.debug("日程查询快速通道命中, userId: {}, 问题: {}, 日期: {}", userId, message, date);
+        return Optional.of(reply);
+    }
+
+    /**
+     * 记录一次经过模型的对话耗时, 用于估算快速通道节省的时间
+     */
+    public void recordModelLatency(long nanos) {
+        modelTimer.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * 是否为只读的日程问题: 包含查询类词语且不包含添加/删除/修改类词语
+     * 响应缓存只对这类问题查找和写入, 避免"帮我删除明天的安排"命中"明天有什么安排"的缓存
+     */
+    public static boolean isReadOnlyQuestion(String message) {
+        return message != null
+                && QUERY_CUE.matcher(message).find()
+                && !WRITE_CUE.matcher(message).find();
+    }
+
+    /**
+     * 规则分类
+     *
+     * @return 查询的日期, 不是高置信度的日程查询时返回 null
+     */
+    LocalDate classify(String message, LocalDate today) {
+        if (message == null) {
+            return null;
+        }
+        String text = message.strip();
+        if (text.isEmpty() || text.length() > maxLength) {
+            return null;
+        }
+        if (!isReadOnlyQuestion(text) || CLOCK_TIME.matcher(text).find()) {
+            return null;
+        }
+        List<LocalDate> dates = RelativeDateParser.findDates(text, today);
+        if (dates.isEmpty() || dates.stream().distinct().count() > 1) {
+            return null;
+        }
+        return dates.get(0);
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.entity.ScheduleSeries;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * 重复日程Service接口
+ */
+public interface ScheduleSeriesService {
+
+    /**
+     * 单次展开的最大天数(含首尾), 限制无限重复的系列在超长范围内展开出大量实例
+     */
+    int MAX_EXPAND_DAYS = 366;
+
+    /**
+     * 创建重复日程, rrule 会被校验并规范化
+     *
+     * @throws IllegalArgumentException 重复规则不正确
+     */
+    ScheduleSeries createSeries(ScheduleSeries series);
+
+    /**
+     * 根据ID获取重复日程
+     */
+    ScheduleSeries getSeriesById(String id);
+
+    /**
+     * 获取用户的所有重复日程
+     */
+    List<ScheduleSeries> getUserSeries(String userId);
+
+    /**
+     * 展开用户在日期范围内(含首尾)的重复日程实例, 按日期、时间排序
+     *
+     * @throws IllegalArgumentException 范围超过 {@link #MAX_EXPAND_DAYS} 天
+     */
+    List<Schedule> expandOccurrences(String userId, LocalDate startDate, LocalDate endDate);
+
+    /**
+     * 取消系列中某一天的实例
+     */
+    boolean addException(String seriesId, LocalDate date);
+
+    /**
+     * 删除整个系列
+     */
+    boolean deleteSeries(String id);
+}
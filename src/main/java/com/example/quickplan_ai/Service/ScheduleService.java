@@ -15,6 +15,11 @@ public interface ScheduleService {
      */
     Schedule createSchedule(Schedule schedule);
 
+    /**
+     * 批量创建日程, 在同一个事务中以多行 INSERT 写入
+     */
+    List<Schedule> createSchedules(List<Schedule> schedules);
+
     /**
      * 根据ID获取日程
      */
@@ -26,7 +31,9 @@ public interface ScheduleService {
     List<Schedule> getUserSchedules(String userId);
 
     /**
-     * 获取用户指定日期范围内的日程
+     * 获取用户指定日期范围内的日程, 含重复日程的实例
+     *
+     * @throws IllegalArgumentException 范围超过 {@link ScheduleSeriesService#MAX_EXPAND_DAYS} 天
      */
     List<Schedule> getSchedulesByDateRange(String userId, LocalDate startDate, LocalDate endDate);
 
@@ -36,7 +43,7 @@ public interface ScheduleService {
     List<Schedule> getSchedulesByDate(String userId, LocalDate date);
 
     /**
-     * 更新日程
+     * 更新日程, durationMinutes 为空时保留原时长
      */
     boolean updateSchedule(Schedule schedule);
 
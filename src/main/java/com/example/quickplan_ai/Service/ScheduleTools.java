@@ -1,14 +1,21 @@
 package com.example.quickplan_ai.Service;
 
+import com.example.quickplan_ai.dto.FreeSlot;
 import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.entity.ScheduleSeries;
+import dev.langchain4j.agent.tool.P;
 import dev.langchain4j.agent.tool.Tool;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
+import java.time.LocalDate;
+import java.time.LocalTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
+import java.util.Arrays;
+import java.util.List;
 
 /**
  * 日程管理工具类
@@ -22,6 +29,23 @@ public class ScheduleTools {
     @Autowired
     private ScheduleService scheduleService;
 
+    @Autowired
+    private ScheduleSeriesService scheduleSeriesService;
+
+    @Autowired
+    private ScheduleConflictDetector scheduleConflictDetector;
+
+    @Autowired
+    private ScheduleCalendarIndex scheduleCalendarIndex;
+
+    @Autowired
+    private FreeBusyService freeBusyService;
+
+    /**
+     * findCommonFreeTime 结果中最多列出的时间段数
+     */
+    private static final int MAX_FREE_SLOTS_IN_RESULT = 10;
+
     /**
      * 添加日程工具
      * 当用户说"帮我添加日程"时,AI会调用此方法
@@ -32,16 +56,23 @@ public class ScheduleTools {
      * @param time        时间(格式: HH:mm) (必需)
      * @param location    地点 (可选,默认"未指定")
      * @param description 描述 (可选,默认为空)
-     * @return 添加结果
+     * @param durationMinutes 时长(分钟) (可选,为空时按默认时长检测冲突)
+     * @return 添加结果, 与已有日程时间冲突时附带冲突的日程
      */
-    @Tool("添加日程到用户日历。必需参数: userId(用户ID), title(标题), date(日期yyyy-MM-dd), time(时间HH:mm)。可选参数: location(地点,默认'未指定'), description(描述,默认空)")
+    @Tool("添加日程到用户日历。必需参数: userId(用户ID), title(标题), date(日期yyyy-MM-dd), time(时间HH:mm)。可选参数: location(地点,默认'未指定'), description(描述,默认空), durationMinutes(时长分钟数,用户没说时传null)。结果中会列出时间冲突的已有日程")
     public String addSchedule(
-            String userId,
-            String title,
-            String date,
-            String time,
-            String location,
-            String description) {
+            @P("用户ID") String userId,
+            @P("标题") String title,
+            @P("日期, 格式 yyyy-MM-dd") String date,
+            @P("时间, 格式 HH:mm") String time,
+            @P(value = "地点", required = false) String location,
+            @P(value = "描述", required = false) String description,
+            @P(value = "时长分钟数", required = false) Integer durationMinutes) {
+
+        if (date == null || date.isBlank() || time == null || time.isBlank()) {
+            logger.warn("添加日程缺少日期或时间: date={}, time={}", date, time);
+            return "❌ 缺少日期或时间,日期格式: yyyy-MM-dd (如2025-10-30), 时间格式: HH:mm (如14:00)";
+        }
 
         try {
             logger.info("✓ AI工具调用: 添加日程");
@@ -51,6 +82,7 @@ public class ScheduleTools {
             logger.info("  - time: {}", time);
             logger.info("  - location: {}", location != null && !location.isEmpty() ? location : "未指定");
             logger.info("  - description: {}", description != null && !description.isEmpty() ? description : "(无)");
+            logger.info("  - durationMinutes: {}", durationMinutes);
 
             // 处理可选参数的默认值
             if (location == null || location.trim().isEmpty()) {
@@ -60,12 +92,17 @@ public class ScheduleTools {
             if (description == null) {
                 description = "";
             }
+            if (durationMinutes != null
+                    && (durationMinutes <= 0 || durationMinutes > ScheduleConflictDetector.MAX_DURATION_MINUTES)) {
+                logger.info("  - 时长超出范围,按默认时长处理: {}", durationMinutes);
+                durationMinutes = null;
+            }
 
             // 解析日期和时间
             DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
             DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
-            java.time.LocalDate scheduleDate = java.time.LocalDate.parse(date, dateFormatter);
-            java.time.LocalTime scheduleTime = java.time.LocalTime.parse(time, timeFormatter);
+            LocalDate scheduleDate = LocalDate.parse(date, dateFormatter);
+            LocalTime scheduleTime = LocalTime.parse(time, timeFormatter);
 
             // 创建日程对象
             Schedule schedule = new Schedule();
@@ -75,14 +112,22 @@ public class ScheduleTools {
             schedule.setTime(scheduleTime);
             schedule.setLocation(location);
             schedule.setDescription(description.isEmpty() ? null : description);
+            schedule.setDurationMinutes(durationMinutes);
+
+            // 冲突检测走内存中的日历索引, 不阻止添加, 结果里告诉AI由其提醒用户
+            List<Schedule> conflicts = scheduleConflictDetector.findConflicts(schedule);
 
             // 保存到数据库
             scheduleService.createSchedule(schedule);
 
-            logger.info("✅ 日程添加成功: scheduleId={}", schedule.getId());
+            logger.info("✅ 日程添加成功: scheduleId={}, 冲突 {} 条", schedule.getId(), conflicts.size());
 
-            return String.format("✅ 日程添加成功!\n标题: %s\n日期: %s\n时间: %s\n地点: %s",
+            String result = String.format("✅ 日程添加成功!\n标题: %s\n日期: %s\n时间: %s\n地点: %s",
                     title, date, time, location);
+            if (!conflicts.isEmpty()) {
+                result += "\n" + describeConflicts(conflicts);
+            }
+            return result;
 
         } catch (DateTimeParseException e) {
             logger.error("时间格式解析失败: {}", e.getMessage());
@@ -94,6 +139,71 @@ public class ScheduleTools {
         }
     }
 
+    /**
+     * 添加重复日程工具
+     * 当用户说"每周二下午3点上课"这类重复安排时, 只保存一条规则, 不逐天创建
+     *
+     * @param userId    用户ID (必需)
+     * @param title     日程标题 (必需)
+     * @param startDate 开始日期(格式: yyyy-MM-dd) (必需)
+     * @param time      时间(格式: HH:mm) (必需)
+     * @param rrule     重复规则 (必需), 如 FREQ=WEEKLY;BYDAY=TU
+     * @param location  地点 (可选)
+     * @param durationMinutes 每次的时长(分钟) (可选,为空时按默认时长检测冲突)
+     * @return 添加结果
+     */
+    @Tool("添加重复日程。必需参数: userId(用户ID), title(标题), startDate(开始日期yyyy-MM-dd), time(时间HH:mm), "
+            + "rrule(重复规则, 如每天 FREQ=DAILY, 每周二四 FREQ=WEEKLY;BYDAY=TU,TH, 每月15号 FREQ=MONTHLY;BYMONTHDAY=15, "
+            + "可加 INTERVAL=2 表示隔一个周期, UNTIL=yyyyMMdd 或 COUNT=次数 表示结束)。可选参数: location(地点), durationMinutes(每次的时长分钟数,用户没说时传null)")
+    public String addRecurringSchedule(
+            @P("用户ID") String userId,
+            @P("标题") String title,
+            @P("开始日期, 格式 yyyy-MM-dd") String startDate,
+            @P("时间, 格式 HH:mm") String time,
+            @P("重复规则, 如 FREQ=WEEKLY;BYDAY=TU") String rrule,
+            @P(value = "地点", required = false) String location,
+            @P(value = "时长分钟数", required = false) Integer durationMinutes) {
+
+        try {
+            logger.info("✓ AI工具调用: 添加重复日程 - userId={}, title={}, startDate={}, time={}, rrule={}, durationMinutes={}",
+                    userId, title, startDate, time, rrule, durationMinutes);
+
+            if (durationMinutes != null
+                    && (durationMinutes <= 0 || durationMinutes > ScheduleConflictDetector.MAX_DURATION_MINUTES)) {
+                logger.info("  - 时长超出范围,按默认时长处理: {}", durationMinutes);
+                durationMinutes = null;
+            }
+
+            ScheduleSeries series = new ScheduleSeries();
+            series.setUserId(userId);
+            series.setTitle(title);
+            series.setStartDate(LocalDate.parse(startDate, DateTimeFormatter.ofPattern("yyyy-MM-dd")));
+            series.setTime(LocalTime.parse(time, DateTimeFormatter.ofPattern("HH:mm")));
+            series.setRrule(rrule);
+            series.setDurationMinutes(durationMinutes);
+            series.setLocation(location == null || location.isBlank() ? "未指定" : location);
+
+            scheduleSeriesService.createSeries(series);
+
+            logger.info("✅ 重复日程添加成功: seriesId={}", series.getId());
+
+            return String.format("✅ 重复日程添加成功!\n标题: %s\n开始日期: %s\n时间: %s\n重复规则: %s\n地点: %s",
+                    title, startDate, time, series.getRrule(), series.getLocation());
+
+        } catch (DateTimeParseException e) {
+            logger.error("时间格式解析失败: {}", e.getMessage());
+            return "❌ 时间格式错误,日期格式: yyyy-MM-dd (如2025-10-30), 时间格式: HH:mm (如14:00)";
+
+        } catch (IllegalArgumentException e) {
+            logger.error("重复规则错误: {}", e.getMessage());
+            return "❌ 重复规则错误: " + e.getMessage();
+
+        } catch (Exception e) {
+            logger.error("添加重复日程失败: {}", e.getMessage(), e);
+            return "❌ 添加重复日程失败: " + e.getMessage();
+        }
+    }
+
     /**
      * 查询用户的日程列表
      * 
@@ -102,12 +212,12 @@ public class ScheduleTools {
      * @return 日程列表
      */
     @Tool("查询用户指定日期的日程安排。当用户询问某天有什么安排、今天要做什么时使用此工具。")
-    public String getSchedulesByDate(String userId, String date) {
+    public String getSchedulesByDate(@P("用户ID") String userId, @P("日期, 格式 yyyy-MM-dd") String date) {
         try {
             logger.info("AI工具调用: 查询日程 - userId={}, date={}", userId, date);
 
             DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
-            java.time.LocalDate targetDate = java.time.LocalDate.parse(date, dateFormatter);
+            LocalDate targetDate = LocalDate.parse(date, dateFormatter);
 
             var schedules = scheduleService.getSchedulesByDate(userId, targetDate);
 
@@ -123,7 +233,10 @@ public class ScheduleTools {
                 DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
                 result.append(String.format("%d. %s\n", index++, schedule.getTitle()));
                 result.append(String.format("   时间: %s\n",
-                        schedule.getTime().format(timeFormatter)));
+                        schedule.getTime() != null ? schedule.getTime().format(timeFormatter) : "全天"));
+                if (schedule.getSeriesId() != null) {
+                    result.append(String.format("   (重复日程, ID: %s)\n", schedule.getId()));
+                }
                 if (schedule.getLocation() != null) {
                     result.append(String.format("   地点: %s\n", schedule.getLocation()));
                 }
@@ -138,6 +251,69 @@ public class ScheduleTools {
         }
     }
 
+    /**
+     * 查找共同空闲时间工具
+     * 当用户问"这周我什么时候有空"、"帮我们找个时间开会"时, 直接由空闲位图计算, 不用多次查询日程
+     *
+     * @param userIds         用户ID, 多人时用逗号分隔 (必需)
+     * @param startDate       开始日期(格式: yyyy-MM-dd) (必需)
+     * @param endDate         结束日期(格式: yyyy-MM-dd) (必需)
+     * @param durationMinutes 需要的时长(分钟) (可选,默认30)
+     * @return 空闲时间段列表
+     */
+    @Tool("查找一个或多个用户都空闲的时间段。必需参数: userIds(用户ID,多人用逗号分隔,包含当前用户), startDate(开始日期yyyy-MM-dd), endDate(结束日期yyyy-MM-dd,最多31天)。可选参数: durationMinutes(需要的时长分钟数,默认30)")
+    public String findCommonFreeTime(@P("用户ID, 多人用逗号分隔") String userIds,
+                                     @P("开始日期, 格式 yyyy-MM-dd") String startDate,
+                                     @P("结束日期, 格式 yyyy-MM-dd") String endDate,
+                                     @P(value = "需要的时长分钟数", required = false) Integer durationMinutes) {
+        try {
+            logger.info("AI工具调用: 查找空闲时间 - userIds={}, {} ~ {}, durationMinutes={}",
+                    userIds, startDate, endDate, durationMinutes);
+
+            DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+            List<String> users = Arrays.stream(userIds.split(","))
+                    .map(String::strip)
+                    .filter(id -> !id.isEmpty())
+                    .toList();
+            int minutes = durationMinutes != null && durationMinutes > 0 ? durationMinutes : 30;
+
+            List<FreeSlot> slots = freeBusyService.findFreeSlots(users,
+                    LocalDate.parse(startDate, dateFormatter),
+                    LocalDate.parse(endDate, dateFormatter),
+                    null, null, minutes, FreeBusyService.Match.ALL);
+
+            String who = users.size() > 1 ? "大家" : "你";
+            if (slots.isEmpty()) {
+                return String.format("📅 %s ~ %s 没有找到%s都空闲的 %d 分钟时间段", startDate, endDate, who, minutes);
+            }
+
+            DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+            StringBuilder result = new StringBuilder();
+            result.append(String.format("📅 %s ~ %s %s都空闲的时间:\n\n", startDate, endDate, who));
+            for (FreeSlot slot : slots.subList(0, Math.min(slots.size(), MAX_FREE_SLOTS_IN_RESULT))) {
+                result.append(String.format("- %s %s-%s (%d分钟)\n", slot.getDate(),
+                        slot.getStartTime().format(timeFormatter), slot.getEndTime().format(timeFormatter),
+                        slot.getDurationMinutes()));
+            }
+            if (slots.size() > MAX_FREE_SLOTS_IN_RESULT) {
+                result.append(String.format("... 另有 %d 个时间段\n", slots.size() - MAX_FREE_SLOTS_IN_RESULT));
+            }
+            return result.toString();
+
+        } catch (DateTimeParseException e) {
+            logger.error("日期格式解析失败: {}", e.getMessage());
+            return "❌ 日期格式错误,格式: yyyy-MM-dd (如2025-10-30)";
+
+        } catch (IllegalArgumentException e) {
+            logger.error("查找空闲时间参数错误: {}", e.getMessage());
+            return "❌ " + e.getMessage();
+
+        } catch (Exception e) {
+            logger.error("查找空闲时间失败: {}", e.getMessage(), e);
+            return "❌ 查找空闲时间失败: " + e.getMessage();
+        }
+    }
+
     /**
      * 删除日程
      * 
@@ -145,11 +321,17 @@ public class ScheduleTools {
      * @param scheduleId 日程ID
      * @return 删除结果
      */
-    @Tool("删除用户的日程。当用户要求取消、删除某个日程时使用此工具。")
-    public String deleteSchedule(String userId, String scheduleId) {
+    @Tool("删除用户的日程。当用户要求取消、删除某个日程时使用此工具。重复日程的实例ID({seriesId}@{日期})表示只取消这一次。")
+    public String deleteSchedule(@P("用户ID") String userId, @P("日程ID") String scheduleId) {
         try {
             logger.info("AI工具调用: 删除日程 - userId={}, scheduleId={}", userId, scheduleId);
 
+            // 重复日程的实例没有单独的记录, 按取消这一次处理
+            int at = scheduleId.indexOf('@');
+            if (at > 0) {
+                return cancelRecurringOccurrence(userId, scheduleId.substring(0, at), scheduleId.substring(at + 1));
+            }
+
             // 验证日程是否属于该用户
             Schedule schedule = scheduleService.getScheduleById(scheduleId);
             if (schedule == null) {
@@ -169,4 +351,88 @@ public class ScheduleTools {
             return "❌ 删除日程失败: " + e.getMessage();
         }
     }
+
+    /**
+     * 取消重复日程中的某一次
+     *
+     * @param userId   用户ID
+     * @param seriesId 重复日程ID
+     * @param date     要取消的日期(格式: yyyy-MM-dd)
+     * @return 取消结果
+     */
+    @Tool("取消重复日程中的某一次, 其他日期不受影响。必需参数: userId(用户ID), seriesId(重复日程ID, 即实例ID中@之前的部分), date(要取消的日期yyyy-MM-dd)")
+    public String cancelRecurringOccurrence(@P("用户ID") String userId, @P("重复日程ID") String seriesId,
+                                            @P("要取消的日期, 格式 yyyy-MM-dd") String date) {
+        try {
+            logger.info("AI工具调用: 取消重复日程的一次 - userId={}, seriesId={}, date={}", userId, seriesId, date);
+
+            LocalDate targetDate = LocalDate.parse(date, DateTimeFormatter.ofPattern("yyyy-MM-dd"));
+            ScheduleSeries series = scheduleSeriesService.getSeriesById(seriesId);
+            if (series == null) {
+                return "❌ 重复日程不存在";
+            }
+            if (!series.getUserId().equals(userId)) {
+                return "❌ 无权修改此重复日程";
+            }
+            if (!scheduleSeriesService.addException(seriesId, targetDate)) {
+                return "❌ 取消失败, 重复日程可能已被删除";
+            }
+            return String.format("✅ 已取消 %s 的「%s」, 其他日期照常", date, series.getTitle());
+
+        } catch (DateTimeParseException e) {
+            logger.error("日期格式解析失败: {}", e.getMessage());
+            return "❌ 日期格式错误,格式: yyyy-MM-dd (如2025-10-30)";
+
+        } catch (Exception e) {
+            logger.error("取消重复日程失败: {}", e.getMessage(), e);
+            return "❌ 取消重复日程失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 删除整个重复日程
+     *
+     * @param userId   用户ID
+     * @param seriesId 重复日程ID
+     * @return 删除结果
+     */
+    @Tool("删除整个重复日程, 所有日期都不再出现。必需参数: userId(用户ID), seriesId(重复日程ID, 即实例ID中@之前的部分)")
+    public String deleteRecurringSchedule(@P("用户ID") String userId, @P("重复日程ID") String seriesId) {
+        try {
+            logger.info("AI工具调用: 删除重复日程 - userId={}, seriesId={}", userId, seriesId);
+
+            ScheduleSeries series = scheduleSeriesService.getSeriesById(seriesId);
+            if (series == null) {
+                return "❌ 重复日程不存在";
+            }
+            if (!series.getUserId().equals(userId)) {
+                return "❌ 无权删除此重复日程";
+            }
+            scheduleSeriesService.deleteSeries(seriesId);
+            return String.format("✅ 已删除重复日程: %s", series.getTitle());
+
+        } catch (Exception e) {
+            logger.error("删除重复日程失败: {}", e.getMessage(), e);
+            return "❌ 删除重复日程失败: " + e.getMessage();
+        }
+    }
+
+    /**
+     * 冲突日程的文字描述, 如 "- 10-30 14:00-15:00 团队会议 (会议室A)"
+     */
+    private String describeConflicts(List<Schedule> conflicts) {
+        DateTimeFormatter dateFormatter = DateTimeFormatter.ofPattern("MM-dd");
+        DateTimeFormatter timeFormatter = DateTimeFormatter.ofPattern("HH:mm");
+        StringBuilder sb = new StringBuilder("⚠️ 时间冲突,与以下已有日程重叠(新日程已保存):\n");
+        for (Schedule conflict : conflicts) {
+            sb.append(String.format("- %s %s-%s %s", conflict.getDate().format(dateFormatter),
+                    conflict.getTime().format(timeFormatter),
+                    scheduleCalendarIndex.endOf(conflict).format(timeFormatter), conflict.getTitle()));
+            if (conflict.getLocation() != null && !conflict.getLocation().isBlank()) {
+                sb.append(String.format(" (%s)", conflict.getLocation()));
+            }
+            sb.append("\n");
+        }
+        return sb.toString().stripTrailing();
+    }
 }
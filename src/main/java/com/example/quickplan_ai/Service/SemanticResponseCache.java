@@ -0,0 +1,258 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.event.ScheduleChangedEvent;
+import com.example.quickplan_ai.util.RelativeDateParser;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import dev.langchain4j.data.document.Metadata;
+import dev.langchain4j.data.embedding.Embedding;
+import dev.langchain4j.data.segment.TextSegment;
+import dev.langchain4j.model.embedding.EmbeddingModel;
+import dev.langchain4j.store.embedding.EmbeddingMatch;
+import dev.langchain4j.store.embedding.EmbeddingSearchRequest;
+import dev.langchain4j.store.embedding.EmbeddingStore;
+import dev.langchain4j.store.embedding.filter.Filter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static dev.langchain4j.store.embedding.filter.MetadataFilterBuilder.metadataKey;
+
+/**
+ * 只读问题的语义响应缓存
+ * 用户反复询问"今天有什么安排""明天要做什么"时, 直接返回上一次的工具查询结果, 不再调用大模型
+ *
+ * 匹配规则:
+ * - 缓存键: 用户ID + 当前日期 + 问题中的日期词 + 归一化后的问题
+ * - 先按归一化文本精确匹配, 未命中再用 bge 向量在 EmbeddingStore 中检索, 检索时按
+ *   userId / currentDate / 日期词 过滤, 避免"今天"和"明天"这种字面相近的问题互相命中
+ * - 只缓存仅调用了只读工具(getSchedulesByDate)的回复
+ * - 只对只读问题(见 {@link ScheduleQueryFastPath#isReadOnlyQuestion})查找和写入, 带有添加/删除/修改类词语的消息
+ *   即使与缓存的问题向量相近也不会命中
+ *
+ * 失效规则:
+ * - 收到该用户的 {@link ScheduleChangedEvent}(含其他节点广播的)时清空该用户的全部缓存, 并递增该用户的缓存代数
+ * - 调用方在执行工具前用 {@link #generation} 记下代数, 写入时代数已变化说明期间日程有变化, 回复可能是旧数据, 不写入
+ * - 条目数和存活时间由 Caffeine 限制, 条目淘汰时同步从 EmbeddingStore 删除
+ */
+@Component
+public class SemanticResponseCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(SemanticResponseCache.class);
+
+    /**
+     * 元数据中标记缓存条目, 与 EmbeddingStore 中的其他数据区分
+     */
+    private static final String KIND = "response-cache";
+
+    private static final Pattern NOISE = Pattern.compile("[\\s\\p{Punct}，。！？、；：“”‘’（）【】~～]+");
+
+    @Autowired
+    private EmbeddingModel embeddingModel;
+
+    @Autowired
+    private EmbeddingStore<TextSegment> embeddingStore;
+
+    @Value("${quickplan.ai.response-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * 向量检索的最低相关度(InMemoryEmbeddingStore 的分数为 (cos + 1) / 2)
+     */
+    @Value("${quickplan.ai.response-cache.min-score:0.95}")
+    private double minScore;
+
+    @Value("${quickplan.ai.response-cache.max-size:5000}")
+    private long maxSize;
+
+    @Value("${quickplan.ai.response-cache.ttl:6h}")
+    private Duration ttl;
+
+    /**
+     * 条目ID -> 条目, 负责容量和过期
+     */
+    private Cache<String, Entry> entries;
+
+    /**
+     * 精确匹配键 -> 条目ID
+     */
+    private final Map<String, String> exactIndex = new ConcurrentHashMap<>();
+
+    /**
+     * 用户ID -> 缓存代数, 每次日程变化时取 sequence 的新值
+     * 代数取自全局递增序列, 条目被淘汰后重新分配的代数不会与之前的相同, 淘汰只会让正在写入的回复不被缓存
+     */
+    private Cache<String, Long> generations;
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        entries = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(ttl)
+                .removalListener((String id, Entry entry, RemovalCause cause) -> {
+                    if (entry != null) {
+                        exactIndex.remove(entry.exactKey(), id);
+                    }
+                    if (id != null) {
+                        embeddingStore.remove(id);
+                    }
+                })
+                .build();
+        // 访问过期时间不短于条目的存活时间, 条目仍在缓存中时其用户的代数不会因过期被淘汰
+        generations = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterAccess(ttl)
+                .build();
+    }
+
+    /**
+     * 查找缓存的回复
+     * 会调用向量模型, 不要在 Tomcat 线程中调用
+     *
+     * @return 命中时返回上次的回复
+     */
+    public Optional<String> lookup(String userId, String currentDate, String message) {
+        if (!enabled || !ScheduleQueryFastPath.isReadOnlyQuestion(message)) {
+            return Optional.empty();
+        }
+        String normalized = normalize(message);
+        String dateTerms = extractDateTerms(message);
+
+        String id = exactIndex.get(exactKey(userId, currentDate, dateTerms, normalized));
+        Entry entry = id != null ? entries.getIfPresent(id) : null;
+        if (entry != null) {
+            logger.debug("响应缓存精确命中, userId: {}, 问题: {}", userId, message);
+            return Optional.of(entry.response());
+        }
+
+        try {
+            Embedding embedding = embeddingModel.embed(normalized).content();
+            Filter filter = metadataKey("kind").isEqualTo(KIND)
+                    .and(metadataKey("userId").isEqualTo(userId))
+                    .and(metadataKey("currentDate").isEqualTo(currentDate))
+                    .and(metadataKey("dateTerms").isEqualTo(dateTerms));
+            List<EmbeddingMatch<TextSegment>> matches = embeddingStore.search(EmbeddingSearchRequest.builder()
+                    .queryEmbedding(embedding)
+                    .filter(filter)
+                    .minScore(minScore)
+                    .maxResults(1)
+                    .build()).matches();
+            if (!matches.isEmpty()) {
+                entry = entries.getIfPresent(matches.get(0).embeddingId());
+                if (entry != null) {
+                    logger.debug("响应缓存语义命中, userId: {}, 问题: {}, 相似问题: {}, 分数: {}",
+                            userId, message, entry.normalized(), matches.get(0).score());
+                    return Optional.of(entry.response());
+                }
+            }
+        } catch (Exception e) {
+            // 向量服务不可用时按未命中处理
+            logger.warn("响应缓存向量检索失败: {}", e.getMessage());
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * 用户当前的缓存代数, 在执行工具前读取, 写入缓存时传回 {@link #put}
+     */
+    public long generation(String userId) {
+        return generations.get(userId, id -> sequence.incrementAndGet());
+    }
+
+    /**
+     * 缓存只读问题的回复
+     *
+     * @param generation 执行工具前读取的 {@link #generation}, 与当前代数不同时不写入
+     */
+    public void put(String userId, String currentDate, String message, String response, long generation) {
+        if (!enabled || !ScheduleQueryFastPath.isReadOnlyQuestion(message)
+                || response == null || response.isBlank()) {
+            return;
+        }
+        if (generation(userId) != generation) {
+            logger.debug("日程已变化, 不缓存回复, userId: {}, 问题: {}", userId, message);
+            return;
+        }
+        String normalized = normalize(message);
+        String dateTerms = extractDateTerms(message);
+        String exactKey = exactKey(userId, currentDate, dateTerms, normalized);
+
+        try {
+            Embedding embedding = embeddingModel.embed(normalized).content();
+            String id = UUID.randomUUID().toString();
+            Metadata metadata = new Metadata()
+                    .put("kind", KIND)
+                    .put("userId", userId)
+                    .put("currentDate", currentDate)
+                    .put("dateTerms", dateTerms);
+            embeddingStore.addAll(List.of(id), List.of(embedding), List.of(TextSegment.from(normalized, metadata)));
+            entries.put(id, new Entry(userId, exactKey, normalized, response));
+            String replaced = exactIndex.put(exactKey, id);
+            if (replaced != null) {
+                entries.invalidate(replaced);
+            }
+            // 写入期间日程发生变化时, 清空可能先于写入执行, 这里补删
+            if (generation(userId) != generation) {
+                entries.invalidate(id);
+            }
+        } catch (Exception e) {
+            logger.warn("写入响应缓存失败: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 用户日程变化后清空该用户的缓存
+     * 先更新代数再清空, 正在写入的回复要么被清空, 要么在写入后的代数检查中被删除
+     */
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        generations.put(event.userId(), sequence.incrementAndGet());
+        entries.asMap().entrySet().removeIf(e -> e.getValue().userId().equals(event.userId()));
+    }
+
+    /**
+     * 去掉空白、标点和语气词, 统一大小写
+     */
+    static String normalize(String message) {
+        String text = NOISE.matcher(message).replaceAll("");
+        text = text.replaceAll("[吗呢吧呀啊哦嘛]+$", "");
+        return text.toLowerCase();
+    }
+
+    /**
+     * 提取问题中的日期词, 排序后拼接, 没有时为空字符串
+     */
+    static String extractDateTerms(String message) {
+        TreeSet<String> terms = new TreeSet<>();
+        Matcher matcher = RelativeDateParser.DATE_EXPRESSION.matcher(message);
+        while (matcher.find()) {
+            terms.add(matcher.group());
+        }
+        return String.join(",", terms);
+    }
+
+    private static String exactKey(String userId, String currentDate, String dateTerms, String normalized) {
+        return userId + "|" + currentDate + "|" + dateTerms + "|" + normalized;
+    }
+
+    private record Entry(String userId, String exactKey, String normalized, String response) {
+    }
+}
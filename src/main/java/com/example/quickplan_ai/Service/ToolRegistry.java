@@ -0,0 +1,284 @@
+package com.example.quickplan_ai.Service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.aop.support.AopUtils;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationContext;
+import org.springframework.stereotype.Component;
+import org.springframework.util.ClassUtils;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Method;
+import java.lang.reflect.Parameter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * AI工具注册表
+ * 启动时扫描容器中所有带 {@link Tool} 注解的方法, 为每个工具预先生成参数绑定器和 MethodHandle
+ * 调用时按工具名称查表分发, 不再需要手写 switch 和逐个参数的 has()/asText()
+ *
+ * 约定:
+ * - 工具名称取 {@link Tool#name()}, 未设置时使用方法名
+ * - 参数按名称从 arguments 中取值(依赖 -parameters 编译参数, spring-boot-starter-parent 默认开启)
+ * - 名为 userId 的参数缺省时使用当前请求的用户ID, 其他缺省参数传 null, 由工具方法自行处理默认值
+ * - 带 {@link P} 注解且 required=true 的参数为必需参数, 缺少(或为空字符串)时不调用工具, 直接返回缺少哪些参数及其说明
+ * - 参数不能是基本类型, 缺省时无法传 null, 注册时直接报错
+ */
+@Component
+public class ToolRegistry implements SmartInitializingSingleton {
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolRegistry.class);
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String USER_ID_PARAM = "userId";
+
+    private static final MethodType INVOKER_TYPE = MethodType.methodType(Object.class, Object[].class);
+
+    @Autowired
+    private ApplicationContext applicationContext;
+
+    /**
+     * 工具名称 -> 工具, 启动完成后只读
+     */
+    private Map<String, RegisteredTool> tools = Collections.emptyMap();
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        Map<String, RegisteredTool> registered = new LinkedHashMap<>();
+
+        for (String beanName : applicationContext.getBeanDefinitionNames()) {
+            Class<?> beanType = applicationContext.getType(beanName, false);
+            if (beanType == null || beanType == ToolRegistry.class) {
+                continue;
+            }
+            Class<?> userClass = ClassUtils.getUserClass(beanType);
+            List<Method> toolMethods = new ArrayList<>();
+            for (Method method : userClass.getMethods()) {
+                if (method.isAnnotationPresent(Tool.class)) {
+                    toolMethods.add(method);
+                }
+            }
+            if (toolMethods.isEmpty()) {
+                continue;
+            }
+
+            Object bean = applicationContext.getBean(beanName);
+            for (Method method : toolMethods) {
+                RegisteredTool tool = register(bean, method);
+                RegisteredTool existing = registered.putIfAbsent(tool.name(), tool);
+                if (existing != null) {
+                    throw new IllegalStateException("工具名称重复: " + tool.name()
+                            + " (" + existing.method() + ", " + method + ")");
+                }
+            }
+        }
+
+        this.tools = Collections.unmodifiableMap(new HashMap<>(registered));
+        logger.info("AI工具注册完成: {}", registered.keySet());
+    }
+
+    private RegisteredTool register(Object bean, Method method) {
+        Tool annotation = method.getAnnotation(Tool.class);
+        String name = annotation.name().isBlank() ? method.getName() : annotation.name();
+
+        Parameter[] parameters = method.getParameters();
+        ArgumentBinder[] binders = new ArgumentBinder[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            Parameter parameter = parameters[i];
+            if (!parameter.isNamePresent()) {
+                throw new IllegalStateException("工具参数名不可用, 请使用 -parameters 编译: " + method);
+            }
+            if (parameter.getType().isPrimitive()) {
+                throw new IllegalStateException("工具参数不能是基本类型, 请改用包装类型: " + method
+                        + " 参数 " + parameter.getName());
+            }
+            P description = parameter.getAnnotation(P.class);
+            boolean userId = USER_ID_PARAM.equals(parameter.getName());
+            binders[i] = new ArgumentBinder(parameter.getName(), converterFor(parameter.getType()), userId,
+                    description != null && description.required() && !userId,
+                    description != null ? description.value() : "");
+        }
+
+        try {
+            Method invocable = AopUtils.selectInvocableMethod(method, bean.getClass());
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .unreflect(invocable)
+                    .bindTo(bean)
+                    .asSpreader(Object[].class, parameters.length)
+                    .asType(INVOKER_TYPE);
+            return new RegisteredTool(name, method, handle, binders);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("无法访问工具方法: " + method, e);
+        }
+    }
+
+    /**
+     * 按参数类型预先选好 JSON 到 Java 值的转换函数
+     */
+    private static Function<JsonNode, Object> converterFor(Class<?> type) {
+        if (type == String.class) {
+            return JsonNode::asText;
+        }
+        if (type == Integer.class) {
+            return JsonNode::asInt;
+        }
+        if (type == Long.class) {
+            return JsonNode::asLong;
+        }
+        if (type == Double.class) {
+            return JsonNode::asDouble;
+        }
+        if (type == Boolean.class) {
+            return JsonNode::asBoolean;
+        }
+        return node -> objectMapper.convertValue(node, type);
+    }
+
+    /**
+     * 执行工具调用
+     *
+     * @param name      工具名称
+     * @param arguments 工具参数(JSON对象)
+     * @param userId    当前请求的用户ID, 参数中缺少 userId 时使用
+     * @return 工具返回值, 工具不存在时返回 null; 缺少必需参数时返回提示, 不调用工具
+     * @throws Exception 工具方法抛出的异常原样抛出
+     */
+    public String invoke(String name, JsonNode arguments, String userId) throws Exception {
+        RegisteredTool tool = tools.get(name);
+        if (tool == null) {
+            return null;
+        }
+
+        long start = System.nanoTime();
+        List<String> missing = tool.missing(arguments);
+        if (!missing.isEmpty()) {
+            logger.warn("工具 {} 缺少必需参数: {}", name, missing);
+            tool.stats().errors.increment();
+            tool.stats().record(System.nanoTime() - start);
+            return "❌ 缺少必需参数: " + String.join(", ", missing);
+        }
+        try {
+            Object result = tool.handle().invokeExact(tool.bind(arguments, userId));
+            return result == null ? null : result.toString();
+        } catch (Exception | Error e) {
+            tool.stats().errors.increment();
+            throw e;
+        } catch (Throwable t) {
+            tool.stats().errors.increment();
+            throw new IllegalStateException(t);
+        } finally {
+            tool.stats().record(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * 是否存在指定名称的工具
+     */
+    public boolean contains(String name) {
+        return tools.containsKey(name);
+    }
+
+    /**
+     * 各工具的调用统计: 调用次数、失败次数、平均耗时(微秒)
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> result = new LinkedHashMap<>();
+        tools.values().stream()
+                .sorted((a, b) -> a.name().compareTo(b.name()))
+                .forEach(tool -> result.put(tool.name(), tool.stats().snapshot()));
+        return result;
+    }
+
+    /**
+     * 单个参数的绑定规则
+     */
+    private record ArgumentBinder(String name, Function<JsonNode, Object> converter, boolean userId,
+                                  boolean required, String description) {
+
+        Object bind(JsonNode arguments, String requestUserId) {
+            JsonNode value = arguments == null ? null : arguments.get(name);
+            if (value == null || value.isNull()) {
+                return userId ? requestUserId : null;
+            }
+            return converter.apply(value);
+        }
+
+        boolean isMissing(JsonNode arguments) {
+            JsonNode value = arguments == null ? null : arguments.get(name);
+            return value == null || value.isNull() || (value.isTextual() && value.asText().isBlank());
+        }
+
+        /**
+         * 提示中的参数说明, 如 date(日期, 格式 yyyy-MM-dd)
+         */
+        String hint() {
+            return description.isBlank() ? name : name + "(" + description + ")";
+        }
+    }
+
+    private record RegisteredTool(String name, Method method, MethodHandle handle,
+                                  ArgumentBinder[] binders, ToolStats stats) {
+
+        RegisteredTool(String name, Method method, MethodHandle handle, ArgumentBinder[] binders) {
+            this(name, method, handle, binders, new ToolStats());
+        }
+
+        /**
+         * 缺少的必需参数的说明
+         */
+        List<String> missing(JsonNode arguments) {
+            List<String> missing = new ArrayList<>();
+            for (ArgumentBinder binder : binders) {
+                if (binder.required() && binder.isMissing(arguments)) {
+                    missing.add(binder.hint());
+                }
+            }
+            return missing;
+        }
+
+        Object[] bind(JsonNode arguments, String userId) {
+            Object[] args = new Object[binders.length];
+            for (int i = 0; i < binders.length; i++) {
+                args[i] = binders[i].bind(arguments, userId);
+            }
+            return args;
+        }
+    }
+
+    private static final class ToolStats {
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+
+        void record(long nanos) {
+            calls.increment();
+            totalNanos.add(nanos);
+        }
+
+        Map<String, Object> snapshot() {
+            long count = calls.sum();
+            Map<String, Object> snapshot = new LinkedHashMap<>();
+            snapshot.put("calls", count);
+            snapshot.put("errors", errors.sum());
+            snapshot.put("avgMicros", count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalNanos.sum() / count));
+            return snapshot;
+        }
+    }
+}
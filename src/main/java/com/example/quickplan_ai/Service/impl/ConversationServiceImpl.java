@@ -1,8 +1,11 @@
 package com.example.quickplan_ai.Service.impl;
 
+import com.example.quickplan_ai.Service.ConversationOwnershipVerifier;
 import com.example.quickplan_ai.Service.ConversationService;
+import com.example.quickplan_ai.common.CursorPage;
 import com.example.quickplan_ai.entity.Conversation;
 import com.example.quickplan_ai.mapper.ConversationMapper;
+import com.example.quickplan_ai.util.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -19,18 +22,23 @@ public class ConversationServiceImpl implements ConversationService {
     @Autowired
     private ConversationMapper conversationMapper;
 
+    @Autowired
+    private ConversationOwnershipVerifier conversationOwnershipVerifier;
+
     @Override
     public Conversation createConversation(String userId, String title) {
         Conversation conversation = Conversation.builder()
                 .id(UUID.randomUUID().toString())
                 .userId(userId)
                 .title(title != null && !title.isBlank() ? title : "新对话")
+                .messageCount(0)
                 .createdAt(LocalDateTime.now())
                 .updatedAt(LocalDateTime.now())
                 .isDeleted(0)
                 .build();
 
         conversationMapper.insert(conversation);
+        conversationOwnershipVerifier.remember(conversation.getId(), userId);
         return conversation;
     }
 
@@ -50,6 +58,24 @@ public class ConversationServiceImpl implements ConversationService {
         return conversationMapper.selectByUserId(userId);
     }
 
+    @Override
+    public CursorPage<Conversation> getConversationPage(String userId, PageCursor cursor, int size) {
+        // 多查一条判断是否还有下一页
+        List<Conversation> rows = conversationMapper.selectPageByUserId(userId,
+                cursor != null ? cursor.time() : null,
+                cursor != null ? cursor.id() : null,
+                size + 1);
+
+        boolean hasMore = rows.size() > size;
+        List<Conversation> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Conversation last = items.get(items.size() - 1);
+            nextCursor = new PageCursor(last.getUpdatedAt(), last.getId()).encode();
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
     @Override
     public List<Conversation> getRecentConversations(String userId, Integer limit) {
         return conversationMapper.selectRecentConversations(userId, limit);
@@ -57,7 +83,9 @@ public class ConversationServiceImpl implements ConversationService {
 
     @Override
     public boolean deleteConversation(String conversationId) {
-        return conversationMapper.deleteById(conversationId) > 0;
+        boolean deleted = conversationMapper.deleteById(conversationId) > 0;
+        conversationOwnershipVerifier.invalidate(conversationId);
+        return deleted;
     }
 
     @Override
@@ -1,10 +1,15 @@
 package com.example.quickplan_ai.Service.impl;
 
 import com.example.quickplan_ai.Service.MessageService;
+import com.example.quickplan_ai.Service.MessageWriteBehindQueue;
+import com.example.quickplan_ai.common.CursorPage;
 import com.example.quickplan_ai.entity.Message;
+import com.example.quickplan_ai.mapper.ConversationMapper;
 import com.example.quickplan_ai.mapper.MessageMapper;
+import com.example.quickplan_ai.util.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -18,6 +23,12 @@ public class MessageServiceImpl implements MessageService {
     @Autowired
     private MessageMapper messageMapper;
 
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private MessageWriteBehindQueue messageWriteBehindQueue;
+
     @Override
     public Message saveUserMessage(String conversationId, String content) {
         Message message = Message.builder()
@@ -28,12 +39,17 @@ public class MessageServiceImpl implements MessageService {
                 .isDeleted(0)
                 .build();
 
-        messageMapper.insert(message);
+        messageWriteBehindQueue.enqueue(message, null);
         return message;
     }
 
     @Override
     public Message saveAssistantMessage(String conversationId, String content) {
+        return saveAssistantMessage(conversationId, content, null);
+    }
+
+    @Override
+    public Message saveAssistantMessage(String conversationId, String content, String titleCandidate) {
         Message message = Message.builder()
                 .conversationId(conversationId)
                 .role("assistant")
@@ -42,7 +58,7 @@ public class MessageServiceImpl implements MessageService {
                 .isDeleted(0)
                 .build();
 
-        messageMapper.insert(message);
+        messageWriteBehindQueue.enqueue(message, titleCandidate);
         return message;
     }
 
@@ -51,6 +67,24 @@ public class MessageServiceImpl implements MessageService {
         return messageMapper.selectByConversationId(conversationId);
     }
 
+    @Override
+    public CursorPage<Message> getMessagePage(String conversationId, PageCursor cursor, int size, boolean ascending) {
+        // 多查一条判断是否还有下一页
+        List<Message> rows = messageMapper.selectPage(conversationId,
+                cursor != null ? cursor.time() : null,
+                cursor != null ? cursor.numericId() : null,
+                ascending, size + 1);
+
+        boolean hasMore = rows.size() > size;
+        List<Message> items = hasMore ? rows.subList(0, size) : rows;
+        String nextCursor = null;
+        if (hasMore) {
+            Message last = items.get(items.size() - 1);
+            nextCursor = new PageCursor(last.getCreatedAt(), String.valueOf(last.getId())).encode();
+        }
+        return new CursorPage<>(items, nextCursor, hasMore);
+    }
+
     @Override
     public List<Message> getRecentMessages(String conversationId, Integer limit) {
         return messageMapper.selectRecentMessages(conversationId, limit);
@@ -58,11 +92,16 @@ public class MessageServiceImpl implements MessageService {
 
     @Override
     public Integer countMessages(String conversationId) {
-        return messageMapper.countByConversationId(conversationId);
+        // 读取写入消息时维护的计数, 不再 COUNT(*)
+        Integer count = conversationMapper.selectMessageCount(conversationId);
+        return count != null ? count : 0;
     }
 
     @Override
+    @Transactional
     public boolean deleteConversationMessages(String conversationId) {
-        return messageMapper.deleteByConversationId(conversationId) > 0;
+        boolean deleted = messageMapper.deleteByConversationId(conversationId) > 0;
+        conversationMapper.clearMessageSummary(conversationId);
+        return deleted;
     }
 }
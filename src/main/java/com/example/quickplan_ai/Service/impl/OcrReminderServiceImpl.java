@@ -5,6 +5,7 @@ import com.example.quickplan_ai.mapper.OcrReminderMapper;
 import com.example.quickplan_ai.Service.OcrReminderService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -16,6 +17,11 @@ import java.util.UUID;
 @Service
 public class OcrReminderServiceImpl implements OcrReminderService {
 
+    /**
+     * 每条多行 INSERT 最多包含的行数, 避免超过 max_allowed_packet
+     */
+    private static final int BATCH_SIZE = 500;
+
     @Autowired
     private OcrReminderMapper ocrReminderMapper;
 
@@ -33,6 +39,29 @@ public class OcrReminderServiceImpl implements OcrReminderService {
         return reminder;
     }
 
+    @Override
+    @Transactional
+    public List<OcrReminder> createReminders(List<OcrReminder> reminders) {
+        if (reminders == null || reminders.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        for (OcrReminder reminder : reminders) {
+            if (reminder.getId() == null || reminder.getId().isBlank()) {
+                reminder.setId(UUID.randomUUID().toString());
+            }
+            reminder.setIsCompleted(0);
+            reminder.setIsDeleted(0);
+            reminder.setCreatedAt(now);
+            reminder.setUpdatedAt(now);
+        }
+
+        for (int i = 0; i < reminders.size(); i += BATCH_SIZE) {
+            ocrReminderMapper.batchInsert(reminders.subList(i, Math.min(i + BATCH_SIZE, reminders.size())));
+        }
+        return reminders;
+    }
+
     @Override
     public OcrReminder getReminderById(String id) {
         return ocrReminderMapper.selectById(id);
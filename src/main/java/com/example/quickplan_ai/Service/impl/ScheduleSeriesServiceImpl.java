@@ -0,0 +1,210 @@
+package com.example.quickplan_ai.Service.impl;
+
+import com.example.quickplan_ai.Service.ScheduleSeriesService;
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.entity.ScheduleSeries;
+import com.example.quickplan_ai.event.ScheduleChangedEvent;
+import com.example.quickplan_ai.mapper.ScheduleSeriesMapper;
+import com.example.quickplan_ai.util.RecurrenceRule;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 重复日程Service实现类
+ * 每个系列只存一行, 实例在查询时按查询窗口展开, 存储和查询开销与系列数相关, 与重复次数无关
+ * 用户的系列列表(通常只有几条)按用户缓存, 本节点修改时失效, 其他节点的修改通过 {@link ScheduleChangedEvent} 广播失效
+ */
+@Service
+public class ScheduleSeriesServiceImpl implements ScheduleSeriesService {
+
+    private static final Comparator<Schedule> OCCURRENCE_ORDER = Comparator
+            .comparing(Schedule::getDate)
+            .thenComparing(Schedule::getTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    @Autowired
+    private ScheduleSeriesMapper scheduleSeriesMapper;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @Value("${quickplan.schedule.series-cache.max-users:10000}")
+    private long maxUsers;
+
+    @Value("${quickplan.schedule.series-cache.idle-timeout:30m}")
+    private Duration idleTimeout;
+
+    /**
+     * 用户ID -> 用户的全部系列及解析好的规则
+     */
+    private Cache<String, List<ParsedSeries>> seriesByUser;
+
+    @PostConstruct
+    public void init() {
+        seriesByUser = Caffeine.newBuilder()
+                .maximumSize(maxUsers)
+                .expireAfterAccess(idleTimeout)
+                .build();
+    }
+
+    @Override
+    public ScheduleSeries createSeries(ScheduleSeries series) {
+        RecurrenceRule rule = RecurrenceRule.parse(series.getRrule());
+        if (series.getId() == null || series.getId().isBlank()) {
+            series.setId(UUID.randomUUID().toString());
+        }
+        series.setRrule(rule.toString());
+        series.setEndDate(rule.lastDate(series.getStartDate()));
+        try {
+            series.setExdates(formatExdates(parseExdates(series.getExdates())));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("取消日期格式错误, 应为 yyyy-MM-dd", e);
+        }
+        series.setIsDeleted(0);
+        series.setCreatedAt(LocalDateTime.now());
+        series.setUpdatedAt(LocalDateTime.now());
+
+        scheduleSeriesMapper.insert(series);
+        changed(series.getUserId());
+        return series;
+    }
+
+    @Override
+    public ScheduleSeries getSeriesById(String id) {
+        return scheduleSeriesMapper.selectById(id);
+    }
+
+    @Override
+    public List<ScheduleSeries> getUserSeries(String userId) {
+        return scheduleSeriesMapper.selectByUserId(userId);
+    }
+
+    @Override
+    public List<Schedule> expandOccurrences(String userId, LocalDate startDate, LocalDate endDate) {
+        if (ChronoUnit.DAYS.between(startDate, endDate) >= MAX_EXPAND_DAYS) {
+            throw new IllegalArgumentException("单次最多查询 " + MAX_EXPAND_DAYS + " 天");
+        }
+        List<ParsedSeries> all = seriesByUser.get(userId, key -> scheduleSeriesMapper.selectByUserId(key).stream()
+                .map(s -> new ParsedSeries(s, RecurrenceRule.parse(s.getRrule()), parseExdates(s.getExdates())))
+                .toList());
+        if (all.isEmpty()) {
+            return List.of();
+        }
+
+        List<Schedule> occurrences = new ArrayList<>();
+        for (ParsedSeries parsed : all) {
+            ScheduleSeries series = parsed.series();
+            // 系列在窗口之前已结束或在窗口之后才开始, 不需要展开
+            if (series.getStartDate().isAfter(endDate)
+                    || (series.getEndDate() != null && series.getEndDate().isBefore(startDate))) {
+                continue;
+            }
+            for (LocalDate date : parsed.rule().between(series.getStartDate(), startDate, endDate, parsed.exdates())) {
+                occurrences.add(toOccurrence(series, date));
+            }
+        }
+        occurrences.sort(OCCURRENCE_ORDER);
+        return occurrences;
+    }
+
+    @Override
+    public boolean addException(String seriesId, LocalDate date) {
+        ScheduleSeries series = scheduleSeriesMapper.selectById(seriesId);
+        if (series == null) {
+            return false;
+        }
+        Set<LocalDate> exdates = parseExdates(series.getExdates());
+        if (!exdates.add(date)) {
+            return true;
+        }
+        boolean updated = scheduleSeriesMapper.updateExdates(seriesId, formatExdates(exdates), LocalDateTime.now()) > 0;
+        if (updated) {
+            changed(series.getUserId());
+        }
+        return updated;
+    }
+
+    @Override
+    public boolean deleteSeries(String id) {
+        ScheduleSeries series = scheduleSeriesMapper.selectById(id);
+        boolean deleted = scheduleSeriesMapper.deleteById(id) > 0;
+        if (deleted && series != null) {
+            changed(series.getUserId());
+        }
+        return deleted;
+    }
+
+    /**
+     * 其他节点修改了日程或系列时丢弃该用户的缓存
+     */
+    @EventListener
+    public void onScheduleChanged(ScheduleChangedEvent event) {
+        if (event.remote()) {
+            seriesByUser.invalidate(event.userId());
+        }
+    }
+
+    /**
+     * 系列影响的日期不确定, 事件中不带日期, 依赖日程数据的缓存按整个用户失效
+     */
+    private void changed(String userId) {
+        if (userId == null) {
+            return;
+        }
+        seriesByUser.invalidate(userId);
+        eventPublisher.publishEvent(ScheduleChangedEvent.local(userId, Set.of()));
+    }
+
+    private static Schedule toOccurrence(ScheduleSeries series, LocalDate date) {
+        Schedule schedule = new Schedule();
+        schedule.setId(series.getId() + "@" + date);
+        schedule.setSeriesId(series.getId());
+        schedule.setUserId(series.getUserId());
+        schedule.setTitle(series.getTitle());
+        schedule.setLocation(series.getLocation());
+        schedule.setDate(date);
+        schedule.setTime(series.getTime());
+        schedule.setDurationMinutes(series.getDurationMinutes());
+        schedule.setDescription(series.getDescription());
+        schedule.setCreatedAt(series.getCreatedAt());
+        schedule.setUpdatedAt(series.getUpdatedAt());
+        schedule.setIsDeleted(0);
+        return schedule;
+    }
+
+    private static Set<LocalDate> parseExdates(String exdates) {
+        Set<LocalDate> dates = new TreeSet<>();
+        if (exdates != null && !exdates.isBlank()) {
+            Arrays.stream(exdates.split(",")).map(String::strip).filter(s -> !s.isEmpty())
+                    .map(LocalDate::parse).forEach(dates::add);
+        }
+        return dates;
+    }
+
+    private static String formatExdates(Set<LocalDate> exdates) {
+        return exdates.isEmpty() ? null
+                : exdates.stream().map(LocalDate::toString).collect(Collectors.joining(","));
+    }
+
+    private record ParsedSeries(ScheduleSeries series, RecurrenceRule rule, Set<LocalDate> exdates) {
+    }
+}
@@ -1,25 +1,59 @@
 package com.example.quickplan_ai.Service.impl;
 
+import com.example.quickplan_ai.Service.ScheduleCalendarIndex;
+import com.example.quickplan_ai.Service.ScheduleSeriesService;
 import com.example.quickplan_ai.Service.ScheduleService;
 import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.event.ScheduleChangedEvent;
 import com.example.quickplan_ai.mapper.ScheduleMapper;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 
 /**
  * 日程Service实现类
+ * 日程新增、修改、删除成功后写入 {@link ScheduleCalendarIndex}, 并发布 {@link ScheduleChangedEvent}
+ * 按日期和日期范围的查询优先由日历索引回答, 并合并重复日程在该范围内展开的实例
  */
 @Service
 public class ScheduleServiceImpl implements ScheduleService {
 
+    /**
+     * 每条多行 INSERT 最多包含的行数, 避免超过 max_allowed_packet
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 与 SQL 的 ORDER BY date ASC, time ASC 一致
+     */
+    private static final Comparator<Schedule> SCHEDULE_ORDER = Comparator
+            .comparing(Schedule::getDate)
+            .thenComparing(Schedule::getTime, Comparator.nullsFirst(Comparator.naturalOrder()));
+
     @Autowired
     private ScheduleMapper scheduleMapper;
 
+    @Autowired
+    private ScheduleCalendarIndex scheduleCalendarIndex;
+
+    @Autowired
+    private ScheduleSeriesService scheduleSeriesService;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
     @Override
     public Schedule createSchedule(Schedule schedule) {
         if (schedule.getId() == null || schedule.getId().isBlank()) {
@@ -30,9 +64,43 @@ public class ScheduleServiceImpl implements ScheduleService {
         schedule.setUpdatedAt(LocalDateTime.now());
 
         scheduleMapper.insert(schedule);
+        scheduleCalendarIndex.put(schedule);
+        publishChanged(schedule.getUserId(), schedule.getDate(), null);
         return schedule;
     }
 
+    @Override
+    @Transactional
+    public List<Schedule> createSchedules(List<Schedule> schedules) {
+        if (schedules == null || schedules.isEmpty()) {
+            return List.of();
+        }
+        LocalDateTime now = LocalDateTime.now();
+        Map<String, Set<LocalDate>> changedDates = new HashMap<>();
+        for (Schedule schedule : schedules) {
+            if (schedule.getId() == null || schedule.getId().isBlank()) {
+                schedule.setId(UUID.randomUUID().toString());
+            }
+            schedule.setIsDeleted(0);
+            schedule.setCreatedAt(now);
+            schedule.setUpdatedAt(now);
+            if (schedule.getUserId() != null && schedule.getDate() != null) {
+                changedDates.computeIfAbsent(schedule.getUserId(), k -> new HashSet<>()).add(schedule.getDate());
+            }
+        }
+
+        for (int i = 0; i < schedules.size(); i += BATCH_SIZE) {
+            scheduleMapper.batchInsert(schedules.subList(i, Math.min(i + BATCH_SIZE, schedules.size())));
+        }
+
+        // 登记写入日历索引, 当前在事务中, putAll 等事务提交后才真正写入, 回滚时不写入
+        scheduleCalendarIndex.putAll(schedules);
+
+        // 每个用户只发布一次变更事件
+        changedDates.forEach((userId, dates) -> eventPublisher.publishEvent(ScheduleChangedEvent.local(userId, dates)));
+        return schedules;
+    }
+
     @Override
     public Schedule getScheduleById(String id) {
         return scheduleMapper.selectById(id);
@@ -45,27 +113,79 @@ public class ScheduleServiceImpl implements ScheduleService {
 
     @Override
     public List<Schedule> getSchedulesByDateRange(String userId, LocalDate startDate, LocalDate endDate) {
-        return scheduleMapper.selectByUserIdAndDateRange(userId, startDate, endDate);
+        List<Schedule> schedules = scheduleCalendarIndex.findByDateRange(userId, startDate, endDate)
+                .orElseGet(() -> scheduleMapper.selectByUserIdAndDateRange(userId, startDate, endDate));
+        return withOccurrences(schedules, userId, startDate, endDate);
     }
 
     @Override
     public List<Schedule> getSchedulesByDate(String userId, LocalDate date) {
-        return scheduleMapper.selectByUserIdAndDate(userId, date);
+        List<Schedule> schedules = scheduleCalendarIndex.findByDate(userId, date)
+                .orElseGet(() -> scheduleMapper.selectByUserIdAndDate(userId, date));
+        return withOccurrences(schedules, userId, date, date);
+    }
+
+    /**
+     * 合并重复日程的实例, 结果仍按日期、时间排序
+     */
+    private List<Schedule> withOccurrences(List<Schedule> schedules, String userId,
+                                           LocalDate startDate, LocalDate endDate) {
+        List<Schedule> occurrences = scheduleSeriesService.expandOccurrences(userId, startDate, endDate);
+        if (occurrences.isEmpty()) {
+            return schedules;
+        }
+        List<Schedule> merged = new ArrayList<>(schedules.size() + occurrences.size());
+        merged.addAll(schedules);
+        merged.addAll(occurrences);
+        merged.sort(SCHEDULE_ORDER);
+        return merged;
     }
 
     @Override
     public boolean updateSchedule(Schedule schedule) {
+        Schedule existing = scheduleMapper.selectById(schedule.getId());
         schedule.setUpdatedAt(LocalDateTime.now());
-        return scheduleMapper.updateById(schedule) > 0;
+        boolean updated = scheduleMapper.updateById(schedule) > 0;
+        if (updated && existing != null) {
+            // updateById 覆盖标题、地点、日期、时间、备注; 时长为空时保留原值, 其余字段沿用原记录
+            Integer durationMinutes = schedule.getDurationMinutes() != null
+                    ? schedule.getDurationMinutes() : existing.getDurationMinutes();
+            scheduleCalendarIndex.put(new Schedule(existing.getId(), existing.getUserId(), schedule.getTitle(),
+                    schedule.getLocation(), schedule.getDate(), schedule.getTime(), durationMinutes,
+                    schedule.getDescription(), existing.getCreatedAt(), schedule.getUpdatedAt(),
+                    existing.getIsDeleted(), null));
+            publishChanged(existing.getUserId(), existing.getDate(), schedule.getDate());
+        }
+        return updated;
     }
 
     @Override
     public boolean deleteSchedule(String id) {
-        return scheduleMapper.deleteById(id) > 0;
+        Schedule existing = scheduleMapper.selectById(id);
+        boolean deleted = scheduleMapper.deleteById(id) > 0;
+        if (deleted && existing != null) {
+            scheduleCalendarIndex.remove(existing.getUserId(), id);
+            publishChanged(existing.getUserId(), existing.getDate(), null);
+        }
+        return deleted;
     }
 
     @Override
     public long countUserSchedules(String userId) {
         return scheduleMapper.countByUserId(userId);
     }
+
+    private void publishChanged(String userId, LocalDate date, LocalDate otherDate) {
+        if (userId == null) {
+            return;
+        }
+        Set<LocalDate> dates = new HashSet<>();
+        if (date != null) {
+            dates.add(date);
+        }
+        if (otherDate != null) {
+            dates.add(otherDate);
+        }
+        eventPublisher.publishEvent(ScheduleChangedEvent.local(userId, dates));
+    }
 }
@@ -0,0 +1,33 @@
+package com.example.quickplan_ai.common;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * 标记需要校验会话归属的接口
+ * 由 ConversationOwnerInterceptor 在进入方法前检查: 路径变量中的会话存在且属于请求参数中的用户,
+ * 否则直接返回 400 / 403, 方法体内不需要再查询会话做判断
+ */
+@Documented
+@Target(ElementType.METHOD)
+@Retention(RetentionPolicy.RUNTIME)
+public @interface RequireConversationOwner {
+
+    /**
+     * 会话ID所在的路径变量名
+     */
+    String conversationIdVariable() default "conversationId";
+
+    /**
+     * 用户ID所在的请求参数名
+     */
+    String userIdParam() default "userId";
+
+    /**
+     * 会话不属于该用户时的提示
+     */
+    String deniedMessage() default "无权访问该会话";
+}
@@ -0,0 +1,102 @@
+package com.example.quickplan_ai.config;
+
+import com.example.quickplan_ai.llm.AdaptiveConcurrencyLimiter;
+import com.example.quickplan_ai.llm.LimitedChatModel;
+import com.example.quickplan_ai.llm.LimitedStreamingChatModel;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+
+/**
+ * 模型调用的隔离与并发限制
+ *
+ * 上游模型变慢时, 如果每个 /api/ai/chat 请求都在 Tomcat 线程上等待 PT2M 超时, 线程很快耗尽,
+ * /api/schedule、/api/auth 等接口也会跟着不可用. 这里:
+ * - 用 {@link AdaptiveConcurrencyLimiter} 包装同步和流式模型(@Primary), 并发上限随模型耗时自动调整;
+ *   同步模型包装的是 routingChatModel(见 LlmRoutingConfig)
+ * - 模型调用在独立的 aiChatExecutor 线程池中执行, 不占用 Tomcat 线程
+ * - 排队已满或等待超时直接失败, 前端收到"AI服务暂时不可用"
+ */
+@Configuration
+public class AiConcurrencyConfig {
+
+    @Value("${quickplan.ai.limiter.initial-limit:10}")
+    private int initialLimit;
+
+    @Value("${quickplan.ai.limiter.min-limit:2}")
+    private int minLimit;
+
+    @Value("${quickplan.ai.limiter.max-limit:40}")
+    private int maxLimit;
+
+    @Value("${quickplan.ai.limiter.max-queue:50}")
+    private int maxQueue;
+
+    @Value("${quickplan.ai.limiter.max-wait:5s}")
+    private Duration maxWait;
+
+    @Value("${quickplan.ai.limiter.latency-threshold:20s}")
+    private Duration latencyThreshold;
+
+    @Value("${quickplan.ai.limiter.backoff-ratio:0.9}")
+    private double backoffRatio;
+
+    @Bean
+    public AdaptiveConcurrencyLimiter aiConcurrencyLimiter(MeterRegistry meterRegistry) {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("llm", initialLimit, minLimit,
+                maxLimit, maxQueue, maxWait, latencyThreshold, backoffRatio);
+
+        Gauge.builder("quickplan.ai.limiter.limit", limiter, AdaptiveConcurrencyLimiter::getLimit)
+                .description("模型调用当前并发上限").register(meterRegistry);
+        Gauge.builder("quickplan.ai.limiter.in-flight", limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                .description("正在进行的模型调用数").register(meterRegistry);
+        Gauge.builder("quickplan.ai.limiter.queued", limiter, AdaptiveConcurrencyLimiter::getQueued)
+                .description("排队等待的模型调用数").register(meterRegistry);
+        FunctionCounter.builder("quickplan.ai.limiter.rejected", limiter, AdaptiveConcurrencyLimiter::getRejected)
+                .description("被拒绝的模型调用数").register(meterRegistry);
+        return limiter;
+    }
+
+    /**
+     * 模型调用专用线程池
+     * 线程数等于并发上限加排队上限, 不再额外排队: 超出时直接拒绝
+     */
+    @Bean
+    public ThreadPoolTaskExecutor aiChatExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(maxLimit + maxQueue);
+        executor.setMaxPoolSize(maxLimit + maxQueue);
+        executor.setQueueCapacity(0);
+        executor.setAllowCoreThreadTimeOut(true);
+        executor.setThreadNamePrefix("ai-chat-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    @Bean
+    @Primary
+    public ChatModel limitedChatModel(@Qualifier("routingChatModel") ChatModel routingChatModel,
+                                      AdaptiveConcurrencyLimiter aiConcurrencyLimiter) {
+        return new LimitedChatModel(routingChatModel, aiConcurrencyLimiter);
+    }
+
+    @Bean
+    @Primary
+    public StreamingChatModel limitedStreamingChatModel(
+            @Qualifier("openAiStreamingChatModel") StreamingChatModel openAiStreamingChatModel,
+            AdaptiveConcurrencyLimiter aiConcurrencyLimiter,
+            @Qualifier("aiChatExecutor") ThreadPoolTaskExecutor aiChatExecutor) {
+        return new LimitedStreamingChatModel(openAiStreamingChatModel, aiConcurrencyLimiter, aiChatExecutor);
+    }
+}
@@ -1,14 +1,20 @@
 package com.example.quickplan_ai.config;
 
 import com.example.quickplan_ai.Service.ScheduleTools;
+import com.example.quickplan_ai.memory.ChatSummarizer;
+import com.example.quickplan_ai.memory.HeuristicTokenCountEstimator;
+import com.example.quickplan_ai.memory.TokenBudgetChatMemory;
 import dev.langchain4j.data.segment.TextSegment;
 import dev.langchain4j.memory.ChatMemory;
 import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import dev.langchain4j.memory.chat.MessageWindowChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.model.chat.ChatModel;
 import dev.langchain4j.store.embedding.EmbeddingStore;
 import dev.langchain4j.store.embedding.inmemory.InMemoryEmbeddingStore;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -25,24 +31,41 @@ public class Aiconfiguration {
     @Autowired
     private ScheduleTools scheduleTools;
 
+    @Autowired
+    private ChatModel chatModel;
+
+    @Value("${quickplan.chat.memory.max-messages:100}")
+    private int maxMessages;
+
+    @Value("${quickplan.chat.memory.token-budget:4000}")
+    private int tokenBudget;
+
+    @Value("${quickplan.chat.memory.compact-to:2500}")
+    private int compactTo;
+
+    @Value("${quickplan.chat.memory.summary-max-chars:400}")
+    private int summaryMaxChars;
+
     @Bean
     public ChatMemory chatMemory() {
         MessageWindowChatMemory memory = MessageWindowChatMemory.builder()
-                .maxMessages(100) // 设置最大消息数
+                .maxMessages(maxMessages) // 设置最大消息数
                 .build();
         return memory;
     }
 
+    /**
+     * 每个会话的记忆按 token 预算裁剪, 超出的旧消息折叠为摘要
+     */
     @Bean
     public ChatMemoryProvider redisChatMemoryStore() {
+        TokenCountEstimator estimator = new HeuristicTokenCountEstimator();
+        ChatSummarizer summarizer = new ChatSummarizer(chatModel, summaryMaxChars);
         ChatMemoryProvider memory = new ChatMemoryProvider() {
             @Override
             public ChatMemory get(Object memoryId) {
-                return MessageWindowChatMemory.builder()
-                        .maxMessages(100) // 设置最大消息数
-                        .chatMemoryStore(redisChatMemoryStore)
-                        .id(memoryId)
-                        .build();
+                return new TokenBudgetChatMemory(memoryId, redisChatMemoryStore, estimator, summarizer,
+                        tokenBudget, compactTo);
             }
         };
         return memory;
@@ -0,0 +1,77 @@
+package com.example.quickplan_ai.config;
+
+import com.example.quickplan_ai.Service.ConversationOwnershipVerifier;
+import com.example.quickplan_ai.common.RequireConversationOwner;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 会话归属校验拦截器
+ * 只处理标注了 {@link RequireConversationOwner} 的接口, 校验失败时按接口原有的格式返回错误
+ */
+@Component
+public class ConversationOwnerInterceptor implements HandlerInterceptor {
+
+    @Autowired
+    private ConversationOwnershipVerifier conversationOwnershipVerifier;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler)
+            throws IOException {
+        if (!(handler instanceof HandlerMethod handlerMethod)) {
+            return true;
+        }
+        RequireConversationOwner requirement = handlerMethod.getMethodAnnotation(RequireConversationOwner.class);
+        if (requirement == null) {
+            return true;
+        }
+
+        String userId = request.getParameter(requirement.userIdParam());
+        if (userId == null || userId.isBlank()) {
+            return reject(response, HttpStatus.BAD_REQUEST, "用户ID不能为空");
+        }
+
+        @SuppressWarnings("unchecked")
+        Map<String, String> pathVariables = (Map<String, String>) request
+                .getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String conversationId = pathVariables != null ? pathVariables.get(requirement.conversationIdVariable()) : null;
+        if (conversationId == null || conversationId.isBlank()) {
+            return reject(response, HttpStatus.BAD_REQUEST, "会话不存在");
+        }
+
+        return switch (conversationOwnershipVerifier.verify(conversationId, userId)) {
+            case OK -> true;
+            case NOT_FOUND -> reject(response, HttpStatus.BAD_REQUEST, "会话不存在");
+            case DENIED -> reject(response, HttpStatus.FORBIDDEN, requirement.deniedMessage());
+        };
+    }
+
+    private boolean reject(HttpServletResponse response, HttpStatus status, String message) throws IOException {
+        Map<String, Object> body = new HashMap<>();
+        body.put("success", false);
+        body.put("message", message);
+        body.put("data", null);
+
+        response.setStatus(status.value());
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        objectMapper.writeValue(response.getWriter(), body);
+        return false;
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.quickplan_ai.config;
+
+import com.example.quickplan_ai.llm.AdaptiveConcurrencyLimiter;
+import com.example.quickplan_ai.llm.RoutingChatModel;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * 多端点模型路由配置
+ * quickplan.llm.routing.enabled=true 且配置了 endpoints 时, 同步对话经 {@link RoutingChatModel} 分发到多个端点;
+ * 否则直接使用 langchain4j.open-ai.chat-model 的单个模型. 两种情况下外层都会再包一层并发限制(见 AiConcurrencyConfig)
+ * 对冲请求与外层共用同一个 {@link AdaptiveConcurrencyLimiter}, 每次对冲多占一个许可
+ */
+@Configuration
+public class LlmRoutingConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(LlmRoutingConfig.class);
+
+    /**
+     * 对冲请求的线程池, 模型调用以等待网络为主, 使用虚拟线程
+     */
+    @Bean
+    public ExecutorService llmRoutingExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("llm-route-", 0).factory());
+    }
+
+    @Bean
+    public ChatModel routingChatModel(@Qualifier("openAiChatModel") ChatModel openAiChatModel,
+                                      LlmRoutingProperties properties,
+                                      @Qualifier("llmRoutingExecutor") ExecutorService llmRoutingExecutor,
+                                      AdaptiveConcurrencyLimiter aiConcurrencyLimiter,
+                                      MeterRegistry meterRegistry) {
+        if (!properties.isEnabled() || properties.getEndpoints().isEmpty()) {
+            return openAiChatModel;
+        }
+
+        Map<String, ChatModel> endpoints = new LinkedHashMap<>();
+        for (LlmRoutingProperties.Endpoint endpoint : properties.getEndpoints()) {
+            String name = endpoint.getName() != null ? endpoint.getName() : endpoint.getModelName();
+            ChatModel model = OpenAiChatModel.builder()
+                    .baseUrl(endpoint.getBaseUrl())
+                    .apiKey(endpoint.getApiKey())
+                    .modelName(endpoint.getModelName())
+                    .timeout(endpoint.getTimeout())
+                    // 失败转移和对冲由路由负责, 端点自身不再重试
+                    .maxRetries(0)
+                    .build();
+            if (endpoints.putIfAbsent(name, model) != null) {
+                throw new IllegalStateException("模型端点名称重复: " + name);
+            }
+        }
+
+        LlmRoutingProperties.Hedge hedge = properties.getHedge();
+        RoutingChatModel router = new RoutingChatModel(endpoints, properties.getEwmaAlpha(),
+                properties.getErrorPenalty(), hedge.isEnabled(), hedge.getPercentile(),
+                hedge.getMinDelay(), hedge.getMaxDelay(), llmRoutingExecutor, aiConcurrencyLimiter);
+
+        for (String name : router.getEndpointNames()) {
+            Gauge.builder("quickplan.llm.endpoint.latency", router, r -> r.getEwmaLatencyMillis(name))
+                    .tag("endpoint", name).baseUnit("milliseconds")
+                    .description("模型端点延迟的指数加权平均").register(meterRegistry);
+            Gauge.builder("quickplan.llm.endpoint.error-rate", router, r -> r.getErrorRate(name))
+                    .tag("endpoint", name)
+                    .description("模型端点错误率的指数加权平均").register(meterRegistry);
+        }
+        FunctionCounter.builder("quickplan.llm.hedges", router, RoutingChatModel::getHedgeCount)
+                .description("触发的对冲请求数").register(meterRegistry);
+        FunctionCounter.builder("quickplan.llm.hedges.skipped", router, RoutingChatModel::getSkippedHedgeCount)
+                .description("并发已满而放弃的对冲请求数").register(meterRegistry);
+
+        logger.info("多端点模型路由已启用: {}, 对冲请求: {}", endpoints.keySet(), hedge.isEnabled());
+        return router;
+    }
+}
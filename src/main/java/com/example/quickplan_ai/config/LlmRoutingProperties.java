@@ -0,0 +1,86 @@
+package com.example.quickplan_ai.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 多端点模型路由配置(quickplan.llm.routing)
+ * endpoints 为空或 enabled=false 时, 仍使用 langchain4j.open-ai.chat-model 配置的单个模型
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "quickplan.llm.routing")
+public class LlmRoutingProperties {
+
+    /**
+     * 是否启用多端点路由
+     */
+    private boolean enabled = false;
+
+    /**
+     * 延迟和错误率的指数加权系数, 越大越偏向最近的调用
+     */
+    private double ewmaAlpha = 0.3;
+
+    /**
+     * 错误率对评分的放大倍数: 评分 = 平均延迟 * (1 + errorPenalty * 错误率)
+     */
+    private double errorPenalty = 4.0;
+
+    /**
+     * 对冲请求配置
+     */
+    private Hedge hedge = new Hedge();
+
+    /**
+     * OpenAI 兼容的模型端点, 可以是不同的服务商, 也可以是同一服务商的不同规格模型
+     */
+    private List<Endpoint> endpoints = new ArrayList<>();
+
+    @Data
+    public static class Hedge {
+
+        /**
+         * 首选端点超过 P95 延迟仍未返回时, 向次优端点再发一次请求, 取先返回的结果
+         */
+        private boolean enabled = true;
+
+        /**
+         * 触发对冲的延迟分位数
+         */
+        private double percentile = 0.95;
+
+        /**
+         * 对冲延迟的下限
+         * 样本少于 20 个时对冲延迟取 EWMA 延迟的 2 倍, 还没有样本时取 maxDelay, 都不低于该值
+         */
+        private Duration minDelay = Duration.ofSeconds(2);
+
+        /**
+         * 对冲延迟的上限
+         */
+        private Duration maxDelay = Duration.ofSeconds(30);
+    }
+
+    @Data
+    public static class Endpoint {
+
+        /**
+         * 端点名称, 用于日志和指标
+         */
+        private String name;
+
+        private String baseUrl;
+
+        private String apiKey;
+
+        private String modelName;
+
+        private Duration timeout = Duration.ofMinutes(2);
+    }
+}
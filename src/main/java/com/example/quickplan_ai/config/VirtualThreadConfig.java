@@ -0,0 +1,36 @@
+package com.example.quickplan_ai.config;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.task.AsyncTaskExecutor;
+import org.springframework.core.task.SimpleAsyncTaskExecutor;
+
+/**
+ * 虚拟线程配置
+ * 开启方式: 激活 virtual profile (--spring.profiles.active=virtual) 或设置 spring.threads.virtual.enabled=true
+ *
+ * 说明:
+ * - Tomcat 请求处理线程由 Spring Boot 自动切换为虚拟线程, server.tomcat.threads.max 不再生效
+ * - 这里把 LangChain4j 流式模型的回调线程池也换成虚拟线程, 同步模型调用本身运行在请求的虚拟线程上
+ * - Druid 连接池与 MySQL 驱动(9.x)内部使用 ReentrantLock, 等待连接时虚拟线程会卸载, 不会钉住载体线程
+ */
+@Configuration
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class VirtualThreadConfig {
+
+    private static final Logger logger = LoggerFactory.getLogger(VirtualThreadConfig.class);
+
+    /**
+     * 覆盖 LangChain4j 自动配置中同名的流式模型线程池
+     */
+    @Bean(name = "openAiStreamingChatModelTaskExecutor")
+    public AsyncTaskExecutor openAiStreamingChatModelTaskExecutor() {
+        SimpleAsyncTaskExecutor executor = new SimpleAsyncTaskExecutor("LangChain4j-OpenAI-");
+        executor.setVirtualThreads(true);
+        logger.info("虚拟线程模式已开启: 请求处理与 LangChain4j 模型调用运行在虚拟线程上");
+        return executor;
+    }
+}
@@ -14,10 +14,15 @@ public class WebMvcConfig implements WebMvcConfigurer {
     @Autowired
     private RequestLoggingInterceptor requestLoggingInterceptor;
 
+    @Autowired
+    private ConversationOwnerInterceptor conversationOwnerInterceptor;
+
     @Override
     public void addInterceptors(InterceptorRegistry registry) {
         registry.addInterceptor(requestLoggingInterceptor)
                 .addPathPatterns("/**")
                 .excludePathPatterns("/error");
+        registry.addInterceptor(conversationOwnerInterceptor)
+                .addPathPatterns("/api/**");
     }
 }
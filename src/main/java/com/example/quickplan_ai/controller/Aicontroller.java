@@ -3,20 +3,37 @@ package com.example.quickplan_ai.controller;
 import com.example.quickplan_ai.Service.AiChatService;
 import com.example.quickplan_ai.Service.ConversationService;
 import com.example.quickplan_ai.Service.MessageService;
-import com.example.quickplan_ai.Service.ScheduleTools;
+import com.example.quickplan_ai.Service.ScheduleQueryFastPath;
+import com.example.quickplan_ai.Service.SemanticResponseCache;
+import com.example.quickplan_ai.Service.ToolRegistry;
 import com.example.quickplan_ai.domian.ChatRequest;
 import com.example.quickplan_ai.entity.Conversation;
+import com.example.quickplan_ai.llm.AiOverloadedException;
+import com.example.quickplan_ai.util.ToolCallParser;
+import com.example.quickplan_ai.util.ToolCallParser.ToolCall;
 import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.memory.chat.ChatMemoryProvider;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
+import java.io.IOException;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * AI对话Controller
@@ -36,12 +53,41 @@ public class Aicontroller {
     private MessageService messageService;
 
     @Autowired
-    private ScheduleTools scheduleTools;
+    private ToolRegistry toolRegistry;
 
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    @Autowired
+    private ToolCallParser toolCallParser;
+
+    @Autowired
+    private SemanticResponseCache semanticResponseCache;
+
+    @Autowired
+    private ScheduleQueryFastPath scheduleQueryFastPath;
+
+    @Autowired
+    private ChatMemoryProvider chatMemoryProvider;
+
+    /**
+     * 模型调用专用线程池, 见 AiConcurrencyConfig
+     */
+    @Autowired
+    @Qualifier("aiChatExecutor")
+    private Executor aiChatExecutor;
+
+    /**
+     * 只读工具, 仅调用这些工具的回复可以进入响应缓存
+     */
+    private static final String READ_ONLY_TOOL = "getSchedulesByDate";
+
+    /**
+     * 流式连接超时时间, 需大于模型调用超时(PT2M)
+     */
+    private static final long STREAM_TIMEOUT_MILLIS = 180_000L;
 
     /**
      * AI对话接口 - 非流式返回
+     * Tomcat 线程只做参数校验, 保存消息、快速通道查库、响应缓存的向量检索、模型调用和记忆写入
+     * 都在 aiChatExecutor 中异步执行
      * 返回格式: {
      * "success": true/false,
      * "message": "AI的回复内容",
@@ -49,231 +95,332 @@ public class Aicontroller {
      * }
      */
     @PostMapping("/chat")
-    public Map<String, Object> sendMessage(@RequestBody ChatRequest request) {
-        Map<String, Object> response = new HashMap<>();
-
+    public CompletableFuture<Map<String, Object>> sendMessage(@RequestBody ChatRequest request) {
         try {
             // 1. 验证请求参数
-            if (request.getMessage() == null || request.getMessage().isBlank()) {
-                response.put("success", false);
-                response.put("message", "消息为空");
-                response.put("data", null);
-                return response;
+            String invalidMessage = validateChatRequest(request);
+            if (invalidMessage != null) {
+                return CompletableFuture.completedFuture(chatResult(false, invalidMessage));
             }
 
-            if (request.getMemoryId() == null || request.getMemoryId().isBlank()) {
-                response.put("success", false);
-                response.put("message", "会话ID不能为空");
-                response.put("data", null);
-                return response;
-            }
+            // 2~5 都在 aiChatExecutor 中执行, 不占用 Tomcat 线程
+            return CompletableFuture.supplyAsync(() -> {
+                // 2. 保存用户消息到数据库
+                messageService.saveUserMessage(request.getMemoryId(), request.getMessage());
 
-            if (request.getUserId() == null || request.getUserId().isBlank()) {
-                response.put("success", false);
-                response.put("message", "用户ID不能为空");
-                response.put("data", null);
-                return response;
-            }
+                // 3. 获取当前日期
+                LocalDate today = LocalDate.now();
+                String currentDate = today.format(DateTimeFormatter.ISO_LOCAL_DATE);
 
-            // 2. 保存用户消息到数据库
-            messageService.saveUserMessage(request.getMemoryId(), request.getMessage());
-
-            // 3. 获取当前日期
-            String currentDate = LocalDate.now().format(DateTimeFormatter.ISO_LOCAL_DATE);
-
-            // 4. 调用AI服务(非流式,支持工具调用)
-            String aiResponse = aiChatService.chat(
-                    request.getMemoryId(),
-                    request.getMessage(),
-                    request.getUserId(),
-                    currentDate);
-
-            System.out.println("========== AI响应内容 ==========");
-            System.out.println(aiResponse);
-            System.out.println("================================");
-
-            // 5. 检查并手动执行工具调用
-            // 因为 Qwen2.5 模型不支持标准的 function calling,
-            // 它会将工具调用以文本形式返回,需要手动解析和执行
-            String finalResponse = aiResponse;
-
-            // 更宽松的检测条件:只要包含大括号和关键字段
-            boolean containsJson = aiResponse != null &&
-                    (aiResponse.contains("{") && aiResponse.contains("}"));
-            boolean containsToolName = aiResponse != null &&
-                    (aiResponse.contains("addSchedule") ||
-                            aiResponse.contains("getSchedulesByDate") ||
-                            aiResponse.contains("deleteSchedule"));
-
-            System.out.println("工具调用检测: containsJson=" + containsJson + ", containsToolName=" + containsToolName);
-
-            if (containsJson && containsToolName) {
-                System.out.println("✓ 检测到工具调用,尝试手动解析并执行...");
-                finalResponse = executeToolCallManually(aiResponse, request.getUserId(), request.getMemoryId(),
-                        currentDate);
-            } else {
-                System.out.println("✗ 未检测到工具调用,直接返回AI响应");
-            }
-
-            // 6. 保存AI回复到数据库
-            if (finalResponse != null && !finalResponse.isBlank()) {
-                messageService.saveAssistantMessage(request.getMemoryId(), finalResponse);
-
-                // 更新会话的更新时间和标题
-                Conversation conversation = conversationService.getConversationById(request.getMemoryId());
-                if (conversation != null && "新对话".equals(conversation.getTitle())) {
-                    String autoTitle = request.getMessage().length() > 30
-                            ? request.getMessage().substring(0, 30) + "..."
-                            : request.getMessage();
-                    conversationService.updateTitle(request.getMemoryId(), autoTitle);
+                // 4. 简单的日程查询直接走快速通道, 相同的只读问题命中缓存, 都不再调用模型
+                Optional<String> direct = findDirectReply(request, today, currentDate);
+                if (direct.isPresent()) {
+                    return chatResult(true, completeDirectReply(request, direct.get()));
                 }
-            }
 
-            // 6. 返回成功响应
-            response.put("success", true);
-            response.put("message", finalResponse);
-            response.put("data", null);
+                // 5. 调用AI服务(非流式,支持工具调用), 检查并执行工具调用, 保存AI回复
+                long cacheGeneration = semanticResponseCache.generation(request.getUserId());
+                long start = System.nanoTime();
+                String aiResponse = aiChatService.chat(
+                        request.getMemoryId(),
+                        request.getMessage(),
+                        request.getUserId(),
+                        currentDate);
+                scheduleQueryFastPath.recordModelLatency(System.nanoTime() - start);
 
-        } catch (Exception e) {
-            // 详细记录错误日志
-            System.err.println("AI服务错误: " + e.getMessage());
-            e.printStackTrace();
-
-            // 返回错误响应
-            String errorMsg = "抱歉，AI服务暂时不可用";
-            if (e.getMessage() != null) {
-                if (e.getMessage().contains("Connection reset")) {
-                    errorMsg = "AI服务连接中断，请重试";
-                } else if (e.getMessage().contains("timeout")) {
-                    errorMsg = "AI服务响应超时，请重试";
-                }
-            }
+                String finalResponse = completeReply(request, currentDate, cacheGeneration, aiResponse,
+                        toolCallParser.parse(aiResponse));
+                return chatResult(true, finalResponse);
+            }, aiChatExecutor).exceptionally(this::chatError);
 
-            response.put("success", false);
-            response.put("message", errorMsg);
-            response.put("data", null);
+        } catch (Exception e) {
+            return CompletableFuture.completedFuture(chatError(e));
         }
+    }
 
+    private Map<String, Object> chatResult(boolean success, String message) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", success);
+        response.put("message", message);
+        response.put("data", null);
         return response;
     }
 
+    private Map<String, Object> chatError(Throwable e) {
+        // 详细记录错误日志
+        System.err.println("AI服务错误: " + e.getMessage());
+        e.printStackTrace();
+
+        // 返回错误响应
+        return chatResult(false, resolveErrorMessage(e));
+    }
+
     /**
-     * 手动解析并执行工具调用
-     * 因为 Qwen2.5 模型不支持标准的 OpenAI function calling
-     * 需要从文本中提取 JSON 格式的工具调用并手动执行
+     * AI对话接口 - 流式返回(SSE)
+     * POST /api/ai/chat/stream
+     * 事件格式:
+     * - token: 模型生成的增量文本,收到即可追加显示
+     * - done: {"success": true, "message": "最终回复"},
+     * 如果回复中包含工具调用,message 为工具执行结果,前端应以它替换已显示的增量文本
+     * - error: {"success": false, "message": "错误信息"}
      */
-    private String executeToolCallManually(String aiResponse, String userId, String memoryId, String currentDate) {
-        try {
-            System.out.println("开始解析工具调用...");
-
-            // 尝试多种 JSON 提取模式
-            String jsonStr = null;
-
-            // 模式1: 标准的 {"name": "xxx", "arguments": {...}}
-            Pattern pattern1 = Pattern.compile("\\{[\\s\\S]*?\"name\"[\\s\\S]*?\"arguments\"[\\s\\S]*?\\}\\s*\\}",
-                    Pattern.DOTALL);
-            Matcher matcher1 = pattern1.matcher(aiResponse);
-            if (matcher1.find()) {
-                jsonStr = matcher1.group();
-                System.out.println("使用模式1提取");
-            }
+    @PostMapping(value = "/chat/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessage(@RequestBody ChatRequest request) {
+        SseEmitter emitter = new SseEmitter(STREAM_TIMEOUT_MILLIS);
+
+        String invalidMessage = validateChatRequest(request);
+        if (invalidMessage != null) {
+            sendEvent(emitter, "error", Map.of("success", false, "message", invalidMessage));
+            emitter.complete();
+            return emitter;
+        }
 
-            // 模式2: 可能缺少外层大括号,只有 "name": "xxx", "arguments": {...}
-            if (jsonStr == null) {
-                Pattern pattern2 = Pattern.compile(
-                        "\"name\"\\s*:\\s*\"(\\w+)\"[\\s\\S]*?\"arguments\"\\s*:\\s*\\{[\\s\\S]*?\\}", Pattern.DOTALL);
-                Matcher matcher2 = pattern2.matcher(aiResponse);
-                if (matcher2.find()) {
-                    String matched = matcher2.group();
-                    jsonStr = "{" + matched + "}";
-                    System.out.println("使用模式2提取");
+        try {
+            // 保存消息、快速通道和响应缓存的查找在 aiChatExecutor 中执行, 模型的回调运行在流式模型自己的线程池上,
+            // 当前 Tomcat 线程立即释放
+            CompletableFuture.runAsync(() -> {
+                messageService.saveUserMessage(request.getMemoryId(), request.getMessage());
+
+                LocalDate today = LocalDate.now();
+                String currentDate = today.format(DateTimeFormatter.ISO_LOCAL_DATE);
+
+                Optional<String> direct = findDirectReply(request, today, currentDate);
+                if (direct.isPresent()) {
+                    String finalResponse = completeDirectReply(request, direct.get());
+                    sendEvent(emitter, "token", finalResponse);
+                    sendEvent(emitter, "done", Map.of("success", true, "message", finalResponse));
+                    emitter.complete();
+                    return;
                 }
-            }
 
-            // 模式3: 最宽松的匹配,提取任何包含 name 和 arguments 的 JSON
-            if (jsonStr == null) {
-                Pattern pattern3 = Pattern.compile("\\{[^}]*\"name\"[^}]*\\{[^}]*\\}[^}]*\\}", Pattern.DOTALL);
-                Matcher matcher3 = pattern3.matcher(aiResponse);
-                if (matcher3.find()) {
-                    jsonStr = matcher3.group();
-                    System.out.println("使用模式3提取");
-                }
-            }
+                // 边接收 token 边扫描工具调用, 生成结束时无需再解析整段回复
+                ToolCallParser.Scanner toolCallScanner = toolCallParser.newScanner();
+                long cacheGeneration = semanticResponseCache.generation(request.getUserId());
+                long start = System.nanoTime();
+
+                aiChatService.chatStream(
+                        request.getMemoryId(),
+                        request.getMessage(),
+                        request.getUserId(),
+                        currentDate)
+                        .onPartialResponse(token -> {
+                            toolCallScanner.feed(token);
+                            sendEvent(emitter, "token", token);
+                        })
+                        .onCompleteResponse(chatResponse -> {
+                            try {
+                                scheduleQueryFastPath.recordModelLatency(System.nanoTime() - start);
+                                String aiResponse = chatResponse.aiMessage().text();
+                                String finalResponse = completeReply(request, currentDate, cacheGeneration,
+                                        aiResponse, toolCallScanner.finish());
+                                Map<String, Object> done = new HashMap<>();
+                                done.put("success", true);
+                                done.put("message", finalResponse);
+                                sendEvent(emitter, "done", done);
+                                emitter.complete();
+                            } catch (Exception e) {
+                                failStream(emitter, e);
+                            }
+                        })
+                        .onError(error -> failStream(emitter, error))
+                        .start();
+            }, aiChatExecutor).exceptionally(e -> {
+                failStream(emitter, e);
+                return null;
+            });
+        } catch (Exception e) {
+            failStream(emitter, e);
+        }
 
-            if (jsonStr == null) {
-                System.out.println("✗ 无法提取JSON,返回原始响应");
-                return aiResponse;
-            }
+        return emitter;
+    }
 
-            System.out.println("提取到的工具调用JSON:");
-            System.out.println(jsonStr);
+    /**
+     * 校验对话请求参数
+     *
+     * @return 错误信息, 参数合法时返回 null
+     */
+    private String validateChatRequest(ChatRequest request) {
+        if (request.getMessage() == null || request.getMessage().isBlank()) {
+            return "消息为空";
+        }
+        if (request.getMemoryId() == null || request.getMemoryId().isBlank()) {
+            return "会话ID不能为空";
+        }
+        if (request.getUserId() == null || request.getUserId().isBlank()) {
+            return "用户ID不能为空";
+        }
+        return null;
+    }
 
-            // 解析 JSON
-            JsonNode toolCall = objectMapper.readTree(jsonStr);
+    /**
+     * 快速通道优先, 未命中时查找响应缓存
+     * 两者都会查库或调用向量模型, 只在 aiChatExecutor 中调用
+     */
+    private Optional<String> findDirectReply(ChatRequest request, LocalDate today, String currentDate) {
+        Optional<String> direct = scheduleQueryFastPath.tryAnswer(request.getUserId(), request.getMessage(), today);
+        if (direct.isPresent()) {
+            return direct;
+        }
+        return semanticResponseCache.lookup(request.getUserId(), currentDate, request.getMessage());
+    }
 
-            if (!toolCall.has("name")) {
-                System.out.println("✗ JSON中没有name字段");
-                return aiResponse;
+    /**
+     * 模型回复生成完毕后的处理: 执行工具调用, 保存AI回复, 自动生成会话标题
+     * 流式和非流式接口共用
+     *
+     * @param cacheGeneration 调用模型前读取的响应缓存代数, 期间日程有变化时回复不进入缓存
+     * @param toolCalls       从回复中解析出的工具调用
+     * @return 返回给前端的最终回复
+     */
+    private String completeReply(ChatRequest request, String currentDate, long cacheGeneration, String aiResponse,
+                                 List<ToolCall> toolCalls) {
+        System.out.println("========== AI响应内容 ==========");
+        System.out.println(aiResponse);
+        System.out.println("================================");
+
+        // 检查并手动执行工具调用
+        // 因为 Qwen2.5 模型不支持标准的 function calling,
+        // 它会将工具调用以文本形式返回,需要手动解析和执行
+        String finalResponse = aiResponse;
+
+        System.out.println("工具调用检测: 解析到 " + toolCalls.size() + " 个工具调用");
+
+        if (!toolCalls.isEmpty()) {
+            System.out.println("✓ 检测到工具调用,执行中...");
+            finalResponse = executeToolCallManually(toolCalls, aiResponse, request.getUserId());
+
+            // 只调用了只读工具的回复可以复用
+            boolean readOnly = toolCalls.stream().allMatch(call -> READ_ONLY_TOOL.equals(call.name()));
+            if (readOnly && !finalResponse.equals(aiResponse)) {
+                semanticResponseCache.put(request.getUserId(), currentDate, request.getMessage(), finalResponse,
+                        cacheGeneration);
             }
+        } else {
+            System.out.println("✗ 未检测到工具调用,直接返回AI响应");
+        }
 
-            String toolName = toolCall.get("name").asText();
-            System.out.println("工具名称: " + toolName);
+        saveAssistantReply(request, finalResponse);
+        return finalResponse;
+    }
+
+    /**
+     * 命中快速通道或响应缓存时的处理: 把这一轮问答补进对话记忆, 保存AI回复
+     */
+    private String completeDirectReply(ChatRequest request, String reply) {
+        System.out.println("✓ 命中快速通道/响应缓存,跳过模型调用");
 
-            if (!toolCall.has("arguments")) {
-                System.out.println("✗ JSON中没有arguments字段");
-                return aiResponse;
+        ChatMemory chatMemory = chatMemoryProvider.get(request.getMemoryId());
+        chatMemory.add(UserMessage.from(request.getMessage()));
+        chatMemory.add(AiMessage.from(reply));
+
+        saveAssistantReply(request, reply);
+        return reply;
+    }
+
+    /**
+     * 保存AI回复, 会话还是默认标题时用用户的第一条消息生成标题
+     * 消息和标题都由异步写入队列落库, 不占用对话的响应时间
+     */
+    private void saveAssistantReply(ChatRequest request, String finalResponse) {
+        if (finalResponse != null && !finalResponse.isBlank()) {
+            String autoTitle = request.getMessage().length() > 30
+                    ? request.getMessage().substring(0, 30) + "..."
+                    : request.getMessage();
+            messageService.saveAssistantMessage(request.getMemoryId(), finalResponse, autoTitle);
+        }
+    }
+
+    /**
+     * 将异常转换为前端可读的错误信息
+     */
+    private String resolveErrorMessage(Throwable e) {
+        String errorMsg = "抱歉，AI服务暂时不可用";
+        // 并发限制拒绝(可能被 CompletionException 等包装)时直接快速失败
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof AiOverloadedException
+                    || cause instanceof TaskRejectedException
+                    || cause instanceof RejectedExecutionException) {
+                return errorMsg;
+            }
+        }
+        if (e.getMessage() != null) {
+            if (e.getMessage().contains("Connection reset")) {
+                errorMsg = "AI服务连接中断，请重试";
+            } else if (e.getMessage().contains("timeout")) {
+                errorMsg = "AI服务响应超时，请重试";
             }
+        }
+        return errorMsg;
+    }
+
+    private void failStream(SseEmitter emitter, Throwable e) {
+        System.err.println("AI流式服务错误: " + e.getMessage());
+        e.printStackTrace();
+
+        sendEvent(emitter, "error", Map.of("success", false, "message", resolveErrorMessage(e)));
+        emitter.complete();
+    }
+
+    private void sendEvent(SseEmitter emitter, String name, Object data) {
+        try {
+            emitter.send(SseEmitter.event().name(name).data(data));
+        } catch (IOException | IllegalStateException e) {
+            // 客户端已断开, 后续回调继续执行以保证回复入库
+            System.err.println("SSE发送失败: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 手动执行工具调用
+     * 因为 Qwen2.5 模型不支持标准的 OpenAI function calling
+     * 工具调用以 JSON 文本形式写在回复中, 由 ToolCallParser 提取后在这里执行
+     * 一条回复中有多个工具调用时依次执行, 结果按顺序拼接
+     * 工具的查找和参数绑定见 {@link ToolRegistry}
+     */
+    private String executeToolCallManually(List<ToolCall> toolCalls, String aiResponse, String userId) {
+        List<String> toolResults = new ArrayList<>();
 
-            JsonNode arguments = toolCall.get("arguments");
+        for (ToolCall toolCall : toolCalls) {
+            String toolName = toolCall.name();
+            JsonNode arguments = toolCall.arguments();
+            System.out.println("工具名称: " + toolName);
             System.out.println("参数内容: " + arguments.toString());
 
-            String toolResult = null;
-
-            // 根据工具名称执行相应操作
-            switch (toolName) {
-                case "addSchedule":
-                    System.out.println("执行 addSchedule 工具...");
-                    toolResult = scheduleTools.addSchedule(
-                            arguments.has("userId") ? arguments.get("userId").asText() : userId,
-                            arguments.has("title") ? arguments.get("title").asText() : "",
-                            arguments.has("date") ? arguments.get("date").asText() : "",
-                            arguments.has("time") ? arguments.get("time").asText() : "",
-                            arguments.has("location") ? arguments.get("location").asText() : "未指定",
-                            arguments.has("description") ? arguments.get("description").asText() : "");
-                    break;
-
-                case "getSchedulesByDate":
-                    toolResult = scheduleTools.getSchedulesByDate(
-                            arguments.get("userId").asText(),
-                            arguments.get("date").asText());
-                    break;
-
-                case "deleteSchedule":
-                    toolResult = scheduleTools.deleteSchedule(
-                            arguments.get("userId").asText(),
-                            arguments.get("scheduleId").asText());
-                    break;
-
-                default:
-                    System.err.println("未知的工具名称: " + toolName);
-                    return aiResponse;
+            if (!toolRegistry.contains(toolName)) {
+                System.err.println("未知的工具名称: " + toolName);
+                continue;
             }
 
-            System.out.println("工具执行结果: " + toolResult);
+            try {
+                // 按名称查表分发, 参数绑定规则在启动时由 ToolRegistry 生成
+                String toolResult = toolRegistry.invoke(toolName, arguments, userId);
 
-            // 如果工具执行成功,只返回工具的结果
-            // 否则返回完整的 AI 响应
-            if (toolResult != null && toolResult.contains("✅")) {
-                return toolResult;
-            } else {
-                return toolResult != null ? toolResult : aiResponse;
+                System.out.println("工具执行结果: " + toolResult);
+                if (toolResult != null) {
+                    toolResults.add(toolResult);
+                }
+            } catch (Exception e) {
+                System.err.println("手动执行工具调用失败: " + e.getMessage());
+                e.printStackTrace();
             }
-
-        } catch (Exception e) {
-            System.err.println("手动执行工具调用失败: " + e.getMessage());
-            e.printStackTrace();
-            return aiResponse;
         }
+
+        // 有工具执行结果时只返回工具的结果, 否则返回完整的 AI 响应
+        return toolResults.isEmpty() ? aiResponse : String.join("\n\n", toolResults);
+    }
+
+    /**
+     * 查询AI工具调用统计
+     * GET /api/ai/tools/stats
+     */
+    @GetMapping("/tools/stats")
+    public Map<String, Object> getToolStats() {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "查询成功");
+        response.put("data", toolRegistry.getStats());
+        return response;
     }
 
     /**
@@ -1,9 +1,13 @@
 package com.example.quickplan_ai.controller;
 
+import com.example.quickplan_ai.Service.ConversationOwnershipVerifier;
 import com.example.quickplan_ai.Service.ConversationService;
 import com.example.quickplan_ai.Service.MessageService;
+import com.example.quickplan_ai.common.CursorPage;
+import com.example.quickplan_ai.common.RequireConversationOwner;
 import com.example.quickplan_ai.entity.Conversation;
 import com.example.quickplan_ai.entity.Message;
+import com.example.quickplan_ai.util.PageCursor;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -16,12 +20,25 @@ import java.util.Map;
 @RequestMapping("/api/conversation")
 public class ConversationController {
 
+    /**
+     * 历史消息每页条数上限
+     */
+    private static final int MAX_MESSAGE_PAGE_SIZE = 100;
+
+    /**
+     * 会话列表每页条数上限
+     */
+    private static final int MAX_CONVERSATION_PAGE_SIZE = 100;
+
     @Autowired
     private ConversationService conversationService;
 
     @Autowired
     private MessageService messageService;
 
+    @Autowired
+    private ConversationOwnershipVerifier conversationOwnershipVerifier;
+
     @PostMapping("/create")
     public ResponseEntity<Map<String, Object>> createConversation(@RequestBody Map<String, String> request) {
         String userId = request.get("userId");
@@ -39,8 +56,15 @@ public class ConversationController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 分页获取用户的会话列表(按更新时间倒序)
+     * 每个会话带 lastMessage 和 messageCount, 侧边栏不需要再逐个请求 /stats
+     */
     @GetMapping("/list/{userId}")
-    public ResponseEntity<Map<String, Object>> getConversationList(@PathVariable String userId) {
+    public ResponseEntity<Map<String, Object>> getConversationList(
+            @PathVariable String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer size) {
         if (userId == null || userId.isBlank()) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
@@ -49,12 +73,28 @@ public class ConversationController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        List<Conversation> conversations = conversationService.getUserConversations(userId);
+        PageCursor pageCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                pageCursor = PageCursor.decode(cursor);
+            } catch (IllegalArgumentException e) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "无效的分页游标");
+                errorResponse.put("data", null);
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
+        }
+
+        int pageSize = Math.max(1, Math.min(size, MAX_CONVERSATION_PAGE_SIZE));
+        CursorPage<Conversation> page = conversationService.getConversationPage(userId, pageCursor, pageSize);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
-        response.put("data", conversations);
-        response.put("total", conversations.size());
+        response.put("data", page.getItems());
+        response.put("total", page.getItems().size());
+        response.put("nextCursor", page.getNextCursor());
+        response.put("hasMore", page.isHasMore());
         response.put("message", null);
         return ResponseEntity.ok(response);
     }
@@ -72,22 +112,15 @@ public class ConversationController {
         return ResponseEntity.ok(response);
     }
 
+    @RequireConversationOwner
     @GetMapping("/detail/{conversationId}")
     public ResponseEntity<Map<String, Object>> getConversationDetail(
             @PathVariable String conversationId,
             @RequestParam String userId) {
 
-        if (userId == null || userId.isBlank()) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "用户ID不能为空");
-            errorResponse.put("data", null);
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
-
         Conversation conversation = conversationService.getConversationById(conversationId);
-
         if (conversation == null) {
+            // 归属校验的缓存中可能还留着已删除的会话
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "会话不存在");
@@ -95,56 +128,58 @@ public class ConversationController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        if (!conversation.getUserId().equals(userId)) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "无权访问该会话");
-            errorResponse.put("data", null);
-            return ResponseEntity.status(403).body(errorResponse);
-        }
-
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("data", conversation);
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 分页获取会话历史消息
+     * 默认从旧到新(order=asc), 与分页之前的顺序一致; 向上滚动加载更早的消息时传 order=desc,
+     * 并把上一页返回的 nextCursor 原样传回. total 仍是会话的消息总数(conversation.message_count)
+     */
+    @RequireConversationOwner
     @GetMapping("/messages/{conversationId}")
     public ResponseEntity<Map<String, Object>> getConversationMessages(
             @PathVariable String conversationId,
-            @RequestParam String userId) {
-
-        if (userId == null || userId.isBlank()) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "用户ID不能为空");
-            errorResponse.put("data", null);
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
+            @RequestParam String userId,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") Integer size,
+            @RequestParam(defaultValue = "asc") String order) {
 
-        Conversation conversation = conversationService.getConversationById(conversationId);
-        if (conversation == null) {
+        if (!"desc".equalsIgnoreCase(order) && !"asc".equalsIgnoreCase(order)) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
-            errorResponse.put("message", "会话不存在");
+            errorResponse.put("message", "order 只能是 asc 或 desc");
             errorResponse.put("data", null);
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        if (!conversation.getUserId().equals(userId)) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "无权访问该会话");
-            errorResponse.put("data", null);
-            return ResponseEntity.status(403).body(errorResponse);
+        PageCursor pageCursor = null;
+        if (cursor != null && !cursor.isBlank()) {
+            try {
+                pageCursor = PageCursor.decode(cursor);
+                pageCursor.numericId();
+            } catch (IllegalArgumentException e) {
+                Map<String, Object> errorResponse = new HashMap<>();
+                errorResponse.put("success", false);
+                errorResponse.put("message", "无效的分页游标");
+                errorResponse.put("data", null);
+                return ResponseEntity.badRequest().body(errorResponse);
+            }
         }
 
-        List<Message> messages = messageService.getConversationMessages(conversationId);
+        int pageSize = Math.max(1, Math.min(size, MAX_MESSAGE_PAGE_SIZE));
+        CursorPage<Message> page = messageService.getMessagePage(conversationId, pageCursor, pageSize,
+                "asc".equalsIgnoreCase(order));
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
-        response.put("data", messages);
-        response.put("total", messages.size());
+        response.put("data", page.getItems());
+        response.put("total", messageService.countMessages(conversationId));
+        response.put("nextCursor", page.getNextCursor());
+        response.put("hasMore", page.isHasMore());
         response.put("message", null);
         return ResponseEntity.ok(response);
     }
@@ -163,8 +198,9 @@ public class ConversationController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        Conversation conversation = conversationService.getConversationById(conversationId);
-        if (conversation == null) {
+        // 会话ID在请求体中, 不能用 @RequireConversationOwner, 直接调用校验
+        ConversationOwnershipVerifier.Result ownership = conversationOwnershipVerifier.verify(conversationId, userId);
+        if (ownership == ConversationOwnershipVerifier.Result.NOT_FOUND) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "会话不存在");
@@ -172,7 +208,7 @@ public class ConversationController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        if (!conversation.getUserId().equals(userId)) {
+        if (ownership == ConversationOwnershipVerifier.Result.DENIED) {
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "无权修改该会话");
@@ -188,36 +224,12 @@ public class ConversationController {
         return ResponseEntity.ok(response);
     }
 
+    @RequireConversationOwner(deniedMessage = "无权删除该会话")
     @DeleteMapping("/delete/{conversationId}")
     public ResponseEntity<Map<String, Object>> deleteConversation(
             @PathVariable String conversationId,
             @RequestParam String userId) {
 
-        if (userId == null || userId.isBlank()) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "用户ID不能为空");
-            errorResponse.put("data", null);
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
-
-        Conversation conversation = conversationService.getConversationById(conversationId);
-        if (conversation == null) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "会话不存在");
-            errorResponse.put("data", null);
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
-
-        if (!conversation.getUserId().equals(userId)) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "无权删除该会话");
-            errorResponse.put("data", null);
-            return ResponseEntity.status(403).body(errorResponse);
-        }
-
         messageService.deleteConversationMessages(conversationId);
         boolean success = conversationService.deleteConversation(conversationId);
 
@@ -228,22 +240,15 @@ public class ConversationController {
         return ResponseEntity.ok(response);
     }
 
+    @RequireConversationOwner
     @GetMapping("/stats/{conversationId}")
     public ResponseEntity<Map<String, Object>> getConversationStats(
             @PathVariable String conversationId,
             @RequestParam String userId) {
 
-        if (userId == null || userId.isBlank()) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "用户ID不能为空");
-            errorResponse.put("data", null);
-            return ResponseEntity.badRequest().body(errorResponse);
-        }
-
         Conversation conversation = conversationService.getConversationById(conversationId);
-
         if (conversation == null) {
+            // 校验通过后会话刚好被删除
             Map<String, Object> errorResponse = new HashMap<>();
             errorResponse.put("success", false);
             errorResponse.put("message", "会话不存在");
@@ -251,15 +256,8 @@ public class ConversationController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
-        if (!conversation.getUserId().equals(userId)) {
-            Map<String, Object> errorResponse = new HashMap<>();
-            errorResponse.put("success", false);
-            errorResponse.put("message", "无权访问该会话");
-            errorResponse.put("data", null);
-            return ResponseEntity.status(403).body(errorResponse);
-        }
-
-        Integer messageCount = messageService.countMessages(conversationId);
+        // 会话记录里已经带有消息计数, 不需要再查消息表
+        Integer messageCount = conversation.getMessageCount() != null ? conversation.getMessageCount() : 0;
 
         Map<String, Object> stats = new HashMap<>();
         stats.put("conversation", conversation);
@@ -0,0 +1,112 @@
+package com.example.quickplan_ai.controller;
+
+import com.example.quickplan_ai.Service.FreeBusyService;
+import com.example.quickplan_ai.dto.FreeSlot;
+import com.example.quickplan_ai.util.SlotBitmap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 空闲/忙碌查询Controller
+ * 前端不再需要拉取整段日程自行计算空闲时间
+ */
+@RestController
+@RequestMapping("/api/schedule/freebusy")
+public class FreeBusyController {
+
+    private static final Logger logger = LoggerFactory.getLogger(FreeBusyController.class);
+
+    @Autowired
+    private FreeBusyService freeBusyService;
+
+    /**
+     * 获取用户每天的占用位图
+     * GET /api/schedule/freebusy?userId=xxx&startDate=2025-10-27&endDate=2025-11-02
+     * 每天返回 24 位十六进制, 共 96 位, 从最低位起每位对应 00:00 开始的一个 15 分钟时间段, 1 表示占用
+     */
+    @GetMapping
+    public ResponseEntity<Map<String, Object>> getBusyBitmap(
+            @RequestParam String userId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate) {
+
+        long[] words;
+        try {
+            words = freeBusyService.getBusyBitmap(userId, startDate, endDate);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+
+        List<Map<String, Object>> days = new ArrayList<>();
+        for (int i = 0; i * SlotBitmap.WORDS_PER_DAY < words.length; i++) {
+            Map<String, Object> day = new HashMap<>();
+            day.put("date", startDate.plusDays(i));
+            day.put("busy", SlotBitmap.toHex(words, i * SlotBitmap.WORDS_PER_DAY));
+            days.add(day);
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", days);
+        response.put("slotMinutes", SlotBitmap.SLOT_MINUTES);
+        response.put("message", null);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 查找一个或多个用户的空闲时间段
+     * GET /api/schedule/freebusy/common?userIds=u1,u2&startDate=2025-10-27&endDate=2025-10-31&minMinutes=60
+     * match=all(默认) 时返回所有人都空闲的时间, match=any 时返回至少一人空闲的时间
+     */
+    @GetMapping("/common")
+    public ResponseEntity<Map<String, Object>> findFreeSlots(
+            @RequestParam List<String> userIds,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate startDate,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate endDate,
+            @RequestParam(defaultValue = "30") int minMinutes,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime dayStart,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime dayEnd,
+            @RequestParam(defaultValue = "all") String match) {
+
+        logger.info("接收到空闲时间查询, userIds: {}, {} ~ {}, match: {}", userIds, startDate, endDate, match);
+
+        if (!"all".equalsIgnoreCase(match) && !"any".equalsIgnoreCase(match)) {
+            return badRequest("match 只支持 all 或 any");
+        }
+        FreeBusyService.Match mode = FreeBusyService.Match.valueOf(match.toUpperCase(Locale.ROOT));
+
+        List<FreeSlot> slots;
+        try {
+            slots = freeBusyService.findFreeSlots(userIds, startDate, endDate, dayStart, dayEnd, minMinutes, mode);
+        } catch (IllegalArgumentException e) {
+            return badRequest(e.getMessage());
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", slots);
+        response.put("total", slots.size());
+        response.put("message", null);
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        errorResponse.put("data", null);
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+}
@@ -2,6 +2,7 @@ package com.example.quickplan_ai.controller;
 
 import com.example.quickplan_ai.Service.OcrReminderService;
 import com.example.quickplan_ai.entity.OcrReminder;
+import com.example.quickplan_ai.util.RelativeDateParser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
@@ -66,12 +67,8 @@ public class OcrController {
             return ResponseEntity.ok(response);
         }
 
-        // 保存提醒到数据库
-        List<OcrReminder> createdReminders = new ArrayList<>();
-        for (OcrReminder reminder : reminders) {
-            OcrReminder created = ocrReminderService.createReminder(reminder);
-            createdReminders.add(created);
-        }
+        // 保存提醒到数据库(一次批量写入)
+        List<OcrReminder> createdReminders = ocrReminderService.createReminders(reminders);
 
         // 返回最新创建的提醒(或全部提醒)
         Map<String, Object> response = new HashMap<>();
@@ -246,12 +243,7 @@ public class OcrController {
                     int minute = (minuteStr != null && !minuteStr.isEmpty()) ? Integer.parseInt(minuteStr) : 0;
 
                     // 根据时间前缀计算提醒时间
-                    LocalDateTime baseTime = LocalDateTime.now();
-                    if ("明天".equals(timePrefix) || "明早".equals(timePrefix) || "明晚".equals(timePrefix)) {
-                        baseTime = baseTime.plusDays(1);
-                    } else if ("后天".equals(timePrefix)) {
-                        baseTime = baseTime.plusDays(2);
-                    }
+                    LocalDateTime baseTime = LocalDateTime.now().plusDays(RelativeDateParser.dayOffset(timePrefix));
 
                     // 调整小时(下午+12,晚上+12等)
                     if ("下午".equals(timePrefix) && hour < 12) {
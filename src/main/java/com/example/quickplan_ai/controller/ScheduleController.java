@@ -1,16 +1,28 @@
 package com.example.quickplan_ai.controller;
 
+import com.example.quickplan_ai.Service.ScheduleConflictDetector;
+import com.example.quickplan_ai.Service.ScheduleIcsExporter;
 import com.example.quickplan_ai.Service.ScheduleService;
+import com.example.quickplan_ai.dto.ScheduleFeedVersion;
 import com.example.quickplan_ai.entity.Schedule;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.nio.charset.StandardCharsets;
 import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 
@@ -24,9 +36,23 @@ public class ScheduleController {
 
     private static final Logger logger = LoggerFactory.getLogger(ScheduleController.class);
 
+    /**
+     * 批量创建接口单次允许的最大条数
+     */
+    private static final int MAX_BATCH_CREATE = 500;
+
+    private static final String DURATION_MESSAGE = "时长必须在 1-" + ScheduleConflictDetector.MAX_DURATION_MINUTES
+            + " 分钟之间";
+
     @Autowired
     private ScheduleService scheduleService;
 
+    @Autowired
+    private ScheduleConflictDetector scheduleConflictDetector;
+
+    @Autowired
+    private ScheduleIcsExporter scheduleIcsExporter;
+
     /**
      * 获取用户所有日程
      * GET /api/schedule/list/{userId}
@@ -47,9 +73,33 @@ public class ScheduleController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 导出/订阅用户日程(iCalendar 格式), 日历应用可直接订阅该地址
+     * GET /api/schedule/ics/{userId}
+     * 日程逐行从数据库读出并写入响应, 不在内存中组装完整列表;
+     * 支持 If-None-Match / If-Modified-Since, 日程没有变化时返回 304, 只执行一次计数查询
+     */
+    @GetMapping("/ics/{userId}")
+    public ResponseEntity<StreamingResponseBody> exportIcs(@PathVariable String userId, WebRequest webRequest) {
+        ScheduleFeedVersion version = scheduleIcsExporter.getVersion(userId);
+        long lastModified = version.getLastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+        if (webRequest.checkNotModified(ScheduleIcsExporter.etagOf(version), lastModified)) {
+            return null;
+        }
+
+        logger.info("导出日程 iCalendar, userId: {}, 日程数: {}, 重复日程数: {}",
+                userId, version.getScheduleCount(), version.getSeriesCount());
+        return ResponseEntity.ok()
+                .contentType(new MediaType("text", "calendar", StandardCharsets.UTF_8))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "inline; filename=\"schedule.ics\"")
+                .cacheControl(CacheControl.noCache())
+                .body(out -> scheduleIcsExporter.export(userId, out));
+    }
+
     /**
      * 获取指定日期范围内的日程
      * GET /api/schedule/range?userId=xxx&startDate=2025-10-26&endDate=2025-10-31
+     * 重复日程在范围内展开, 单次最多查询 ScheduleSeriesService.MAX_EXPAND_DAYS 天
      */
     @GetMapping("/range")
     public ResponseEntity<Map<String, Object>> getSchedulesByRange(
@@ -59,7 +109,16 @@ public class ScheduleController {
 
         logger.info("接收到获取日期范围日程请求, userId: {}, startDate: {}, endDate: {}", userId, startDate, endDate);
 
-        List<Schedule> schedules = scheduleService.getSchedulesByDateRange(userId, startDate, endDate);
+        List<Schedule> schedules;
+        try {
+            schedules = scheduleService.getSchedulesByDateRange(userId, startDate, endDate);
+        } catch (IllegalArgumentException e) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", e.getMessage());
+            errorResponse.put("data", null);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
         logger.info("查询到 {} 条日程记录", schedules.size());
 
         Map<String, Object> response = new HashMap<>();
@@ -91,6 +150,44 @@ public class ScheduleController {
         return ResponseEntity.ok(response);
     }
 
+    /**
+     * 检测时间冲突, 返回与给定时间段重叠的日程(含重复日程的实例)
+     * GET /api/schedule/conflicts?userId=xxx&date=2025-10-28&time=14:30&durationMinutes=60&excludeId=xxx
+     * durationMinutes 不传时按默认时长计算, excludeId 用于修改日程时排除其自身
+     */
+    @GetMapping("/conflicts")
+    public ResponseEntity<Map<String, Object>> getConflicts(
+            @RequestParam String userId,
+            @RequestParam @DateTimeFormat(pattern = "yyyy-MM-dd") LocalDate date,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.TIME) LocalTime time,
+            @RequestParam(required = false) Integer durationMinutes,
+            @RequestParam(required = false) String excludeId) {
+
+        if (!isValidDuration(durationMinutes)) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", DURATION_MESSAGE);
+            errorResponse.put("data", null);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        Schedule candidate = new Schedule();
+        candidate.setId(excludeId);
+        candidate.setUserId(userId);
+        candidate.setDate(date);
+        candidate.setTime(time);
+        candidate.setDurationMinutes(durationMinutes);
+        List<Schedule> conflicts = scheduleConflictDetector.findConflicts(candidate);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", conflicts);
+        response.put("total", conflicts.size());
+        response.put("message", null);
+
+        return ResponseEntity.ok(response);
+    }
+
     /**
      * 创建新日程
      * POST /api/schedule/create
@@ -125,12 +222,81 @@ public class ScheduleController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
+        if (!isValidDuration(schedule.getDurationMinutes())) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", DURATION_MESSAGE);
+            errorResponse.put("data", null);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        // 冲突不阻止创建, 随结果返回由前端提示
+        List<Schedule> conflicts = scheduleConflictDetector.findConflicts(schedule);
         Schedule created = scheduleService.createSchedule(schedule);
 
         Map<String, Object> response = new HashMap<>();
         response.put("success", true);
         response.put("message", "创建成功");
         response.put("data", created);
+        response.put("conflicts", conflicts);
+
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 批量创建日程(导入等场景), 一次请求最多 {@link #MAX_BATCH_CREATE} 条
+     * POST /api/schedule/batch-create
+     * 任意一条校验失败时整批不写入; 冲突不阻止创建, 按新日程ID返回, 同一批日程之间的重叠也会返回
+     */
+    @PostMapping("/batch-create")
+    public ResponseEntity<Map<String, Object>> batchCreateSchedules(@RequestBody List<Schedule> schedules) {
+        logger.info("接收到批量创建日程请求, 数量: {}", schedules == null ? 0 : schedules.size());
+
+        String invalidMessage = null;
+        if (schedules == null || schedules.isEmpty()) {
+            invalidMessage = "日程列表不能为空";
+        } else if (schedules.size() > MAX_BATCH_CREATE) {
+            invalidMessage = "单次最多创建 " + MAX_BATCH_CREATE + " 条日程";
+        } else {
+            for (int i = 0; i < schedules.size() && invalidMessage == null; i++) {
+                Schedule schedule = schedules.get(i);
+                if (schedule.getUserId() == null || schedule.getUserId().isBlank()) {
+                    invalidMessage = "第 " + (i + 1) + " 条日程: 用户ID不能为空";
+                } else if (schedule.getTitle() == null || schedule.getTitle().isBlank()) {
+                    invalidMessage = "第 " + (i + 1) + " 条日程: 日程标题不能为空";
+                } else if (schedule.getDate() == null) {
+                    invalidMessage = "第 " + (i + 1) + " 条日程: 日期不能为空";
+                } else if (!isValidDuration(schedule.getDurationMinutes())) {
+                    invalidMessage = "第 " + (i + 1) + " 条日程: " + DURATION_MESSAGE;
+                }
+            }
+        }
+        if (invalidMessage != null) {
+            logger.warn("批量创建日程失败: {}", invalidMessage);
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", invalidMessage);
+            errorResponse.put("data", null);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
+        List<Schedule> created = scheduleService.createSchedules(schedules);
+
+        // 写入后再检测, 此时日历索引已包含本批日程, 排除各自本身
+        Map<String, List<Schedule>> conflicts = new LinkedHashMap<>();
+        for (Schedule schedule : created) {
+            List<Schedule> overlapping = scheduleConflictDetector.findConflicts(schedule);
+            if (!overlapping.isEmpty()) {
+                conflicts.put(schedule.getId(), overlapping);
+            }
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "成功创建 " + created.size() + " 条日程");
+        response.put("data", created);
+        response.put("total", created.size());
+        response.put("conflicts", conflicts);
 
         return ResponseEntity.ok(response);
     }
@@ -138,6 +304,7 @@ public class ScheduleController {
     /**
      * 更新日程
      * PUT /api/schedule/update
+     * 冲突不阻止修改, 与修改后的时间重叠的日程随结果返回
      */
     @PutMapping("/update")
     public ResponseEntity<Map<String, Object>> updateSchedule(@RequestBody Schedule schedule) {
@@ -150,6 +317,14 @@ public class ScheduleController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
+        if (!isValidDuration(schedule.getDurationMinutes())) {
+            Map<String, Object> errorResponse = new HashMap<>();
+            errorResponse.put("success", false);
+            errorResponse.put("message", DURATION_MESSAGE);
+            errorResponse.put("data", null);
+            return ResponseEntity.badRequest().body(errorResponse);
+        }
+
         // 检查日程是否存在
         Schedule existing = scheduleService.getScheduleById(schedule.getId());
         if (existing == null) {
@@ -160,6 +335,16 @@ public class ScheduleController {
             return ResponseEntity.badRequest().body(errorResponse);
         }
 
+        // 请求中不带用户ID, 时长为空时保留原值, 按修改后的时间检测冲突
+        Schedule candidate = new Schedule();
+        candidate.setId(existing.getId());
+        candidate.setUserId(existing.getUserId());
+        candidate.setDate(schedule.getDate());
+        candidate.setTime(schedule.getTime());
+        candidate.setDurationMinutes(schedule.getDurationMinutes() != null
+                ? schedule.getDurationMinutes() : existing.getDurationMinutes());
+        List<Schedule> conflicts = scheduleConflictDetector.findConflicts(candidate);
+
         boolean updated = scheduleService.updateSchedule(schedule);
 
         Map<String, Object> response = new HashMap<>();
@@ -168,6 +353,7 @@ public class ScheduleController {
             response.put("success", true);
             response.put("message", "更新成功");
             response.put("data", updatedSchedule);
+            response.put("conflicts", conflicts);
             return ResponseEntity.ok(response);
         } else {
             response.put("success", false);
@@ -220,4 +406,9 @@ public class ScheduleController {
             return ResponseEntity.badRequest().body(response);
         }
     }
+
+    private static boolean isValidDuration(Integer durationMinutes) {
+        return durationMinutes == null
+                || (durationMinutes > 0 && durationMinutes <= ScheduleConflictDetector.MAX_DURATION_MINUTES);
+    }
 }
@@ -0,0 +1,142 @@
+package com.example.quickplan_ai.controller;
+
+import com.example.quickplan_ai.Service.ScheduleConflictDetector;
+import com.example.quickplan_ai.Service.ScheduleSeriesService;
+import com.example.quickplan_ai.entity.ScheduleSeries;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 重复日程Controller
+ * 重复日程只存规则, 每次重复的实例由 /api/schedule/date、/api/schedule/range 按查询范围展开返回
+ */
+@RestController
+@RequestMapping("/api/schedule/series")
+public class ScheduleSeriesController {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleSeriesController.class);
+
+    @Autowired
+    private ScheduleSeriesService scheduleSeriesService;
+
+    /**
+     * 创建重复日程
+     * POST /api/schedule/series/create
+     */
+    @PostMapping("/create")
+    public ResponseEntity<Map<String, Object>> createSeries(@RequestBody ScheduleSeries series) {
+        logger.info("接收到创建重复日程请求: {}", series);
+
+        String invalidMessage = null;
+        if (series.getUserId() == null || series.getUserId().isBlank()) {
+            invalidMessage = "用户ID不能为空";
+        } else if (series.getTitle() == null || series.getTitle().isBlank()) {
+            invalidMessage = "日程标题不能为空";
+        } else if (series.getStartDate() == null) {
+            invalidMessage = "开始日期不能为空";
+        } else if (series.getRrule() == null || series.getRrule().isBlank()) {
+            invalidMessage = "重复规则不能为空";
+        } else if (series.getDurationMinutes() != null && (series.getDurationMinutes() <= 0
+                || series.getDurationMinutes() > ScheduleConflictDetector.MAX_DURATION_MINUTES)) {
+            invalidMessage = "时长必须在 1-" + ScheduleConflictDetector.MAX_DURATION_MINUTES + " 分钟之间";
+        }
+        if (invalidMessage != null) {
+            return badRequest(invalidMessage);
+        }
+
+        ScheduleSeries created;
+        try {
+            created = scheduleSeriesService.createSeries(series);
+        } catch (IllegalArgumentException e) {
+            logger.warn("创建重复日程失败: {}", e.getMessage());
+            return badRequest(e.getMessage());
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "创建成功");
+        response.put("data", created);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 获取用户的所有重复日程
+     * GET /api/schedule/series/list/{userId}
+     */
+    @GetMapping("/list/{userId}")
+    public ResponseEntity<Map<String, Object>> getSeriesList(@PathVariable String userId) {
+        List<ScheduleSeries> series = scheduleSeriesService.getUserSeries(userId);
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("data", series);
+        response.put("total", series.size());
+        response.put("message", null);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 取消重复日程中的某一次
+     * POST /api/schedule/series/exception
+     * 请求体: {"seriesId": "...", "date": "2025-11-04"}
+     */
+    @PostMapping("/exception")
+    public ResponseEntity<Map<String, Object>> addException(@RequestBody Map<String, String> request) {
+        String seriesId = request.get("seriesId");
+        String date = request.get("date");
+        if (seriesId == null || seriesId.isBlank() || date == null || date.isBlank()) {
+            return badRequest("参数不完整");
+        }
+
+        LocalDate exdate;
+        try {
+            exdate = LocalDate.parse(date);
+        } catch (DateTimeParseException e) {
+            return badRequest("日期格式错误, 应为 yyyy-MM-dd");
+        }
+
+        if (!scheduleSeriesService.addException(seriesId, exdate)) {
+            return badRequest("重复日程不存在");
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "已取消 " + exdate + " 的日程");
+        response.put("data", null);
+        return ResponseEntity.ok(response);
+    }
+
+    /**
+     * 删除整个重复日程
+     * DELETE /api/schedule/series/delete/{seriesId}
+     */
+    @DeleteMapping("/delete/{seriesId}")
+    public ResponseEntity<Map<String, Object>> deleteSeries(@PathVariable String seriesId) {
+        if (!scheduleSeriesService.deleteSeries(seriesId)) {
+            return badRequest("重复日程不存在");
+        }
+
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("message", "删除成功");
+        response.put("data", null);
+        return ResponseEntity.ok(response);
+    }
+
+    private ResponseEntity<Map<String, Object>> badRequest(String message) {
+        Map<String, Object> errorResponse = new HashMap<>();
+        errorResponse.put("success", false);
+        errorResponse.put("message", message);
+        errorResponse.put("data", null);
+        return ResponseEntity.badRequest().body(errorResponse);
+    }
+}
@@ -0,0 +1,22 @@
+package com.example.quickplan_ai.dto;
+
+import lombok.Data;
+
+/**
+ * 会话消息计数与实际消息数不一致的记录, 由计数校正任务使用
+ */
+@Data
+public class ConversationCounterDrift {
+
+    private String id;
+
+    /**
+     * conversation.message_count 中保存的计数
+     */
+    private Integer storedCount;
+
+    /**
+     * conversation_message 中实际未删除的消息数
+     */
+    private Integer actualCount;
+}
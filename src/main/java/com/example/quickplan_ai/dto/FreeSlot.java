@@ -0,0 +1,28 @@
+package com.example.quickplan_ai.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalTime;
+
+/**
+ * 一段连续的空闲时间, 由空闲时间查询返回
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class FreeSlot {
+
+    private LocalDate date;
+
+    private LocalTime startTime;
+
+    /**
+     * 结束时间(不含)
+     */
+    private LocalTime endTime;
+
+    private Integer durationMinutes;
+}
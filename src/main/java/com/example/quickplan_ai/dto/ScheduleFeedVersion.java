@@ -0,0 +1,21 @@
+package com.example.quickplan_ai.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 用户日程数据的版本, 日程或重复日程有任何新增、修改、删除时都会变化, 用于导出接口的条件请求
+ */
+@Data
+public class ScheduleFeedVersion {
+
+    private Long scheduleCount;
+
+    private Long seriesCount;
+
+    /**
+     * 日程和重复日程中最大的 updated_at(含已删除的记录), 没有任何记录时为 1970-01-01
+     */
+    private LocalDateTime lastModified;
+}
@@ -32,6 +32,16 @@ public class Conversation {
      */
     private String title;
 
+    /**
+     * 最后一条消息的摘要, 写入消息时同步更新, 用于会话列表展示
+     */
+    private String lastMessage;
+
+    /**
+     * 会话的消息数量, 写入消息时同步更新
+     */
+    private Integer messageCount;
+
     /**
      * 会话创建时间
      */
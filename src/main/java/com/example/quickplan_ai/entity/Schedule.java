@@ -46,6 +46,11 @@ public class Schedule {
      */
     private LocalTime time;
 
+    /**
+     * 持续时长(分钟), 为空时检测冲突按默认时长计算
+     */
+    private Integer durationMinutes;
+
     /**
      * 备注描述
      */
@@ -65,4 +70,10 @@ public class Schedule {
      * 逻辑删除: 0-未删除, 1-已删除
      */
     private Integer isDeleted;
+
+    /**
+     * 所属重复日程的ID, 仅由系列展开的实例有值, 不落库
+     * 此时 id 为 "系列ID@日期"
+     */
+    private String seriesId;
 }
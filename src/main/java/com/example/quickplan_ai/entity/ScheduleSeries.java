@@ -0,0 +1,88 @@
+package com.example.quickplan_ai.entity;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+/**
+ * 重复日程(系列)实体类
+ * 一个系列只存一行, 每次重复的实例在查询时按 rrule 展开, 不落库
+ */
+@Data
+@NoArgsConstructor
+public class ScheduleSeries {
+
+    /**
+     * 系列ID (UUID)
+     */
+    private String id;
+
+    /**
+     * 用户ID
+     */
+    private String userId;
+
+    /**
+     * 日程标题
+     */
+    private String title;
+
+    /**
+     * 地点
+     */
+    private String location;
+
+    /**
+     * 开始日期, 第一次重复不早于该日期
+     */
+    private LocalDate startDate;
+
+    /**
+     * 最后一次重复的日期, 无限重复时为空
+     * 由 rrule 的 UNTIL / COUNT 计算得出, 用于查询时过滤已结束的系列
+     */
+    private LocalDate endDate;
+
+    /**
+     * 时间
+     */
+    private LocalTime time;
+
+    /**
+     * 每次的持续时长(分钟), 为空时按默认时长计算
+     */
+    private Integer durationMinutes;
+
+    /**
+     * 重复规则, RRULE 子集, 如 FREQ=WEEKLY;BYDAY=MO,WE
+     */
+    private String rrule;
+
+    /**
+     * 被单独取消的日期, 逗号分隔的 yyyy-MM-dd
+     */
+    private String exdates;
+
+    /**
+     * 备注描述
+     */
+    private String description;
+
+    /**
+     * 创建时间
+     */
+    private LocalDateTime createdAt;
+
+    /**
+     * 更新时间
+     */
+    private LocalDateTime updatedAt;
+
+    /**
+     * 逻辑删除: 0-未删除, 1-已删除
+     */
+    private Integer isDeleted;
+}
@@ -0,0 +1,19 @@
+package com.example.quickplan_ai.event;
+
+import java.time.LocalDate;
+import java.util.Set;
+
+/**
+ * 日程变更事件
+ * 日程新增、修改、删除后由 ScheduleServiceImpl 发布, 依赖日程数据的缓存据此失效
+ *
+ * @param userId 日程所属用户
+ * @param dates  受影响的日期(修改日期时包含新旧两个日期), 未知时为空集合
+ * @param remote 是否来自其他节点的广播, 本地监听器收到远程事件后不应再次广播
+ */
+public record ScheduleChangedEvent(String userId, Set<LocalDate> dates, boolean remote) {
+
+    public static ScheduleChangedEvent local(String userId, Set<LocalDate> dates) {
+        return new ScheduleChangedEvent(userId, dates, false);
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.quickplan_ai.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import jakarta.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+/**
+ * 日程变更事件的跨节点广播
+ * 本地事件通过 Redis 频道 quickplan:schedule:changed 发给其他节点, 其他节点收到后作为 remote 事件重新发布
+ * 消息格式: {nodeId}|{userId}|{yyyy-MM-dd,yyyy-MM-dd...}
+ * 事务中发布的事件等提交后再广播, 避免其他节点在提交前用旧数据重新加载, 事务回滚时也不广播
+ */
+@Component
+public class ScheduleEventBroadcaster {
+
+    private static final Logger logger = LoggerFactory.getLogger(ScheduleEventBroadcaster.class);
+
+    private static final String CHANNEL = "quickplan:schedule:changed";
+
+    private final String nodeId = UUID.randomUUID().toString();
+
+    @Autowired
+    private StringRedisTemplate stringRedisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+
+    @PostConstruct
+    public void subscribe() {
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onMessage(new String(message.getBody(), StandardCharsets.UTF_8)),
+                new ChannelTopic(CHANNEL));
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void broadcast(ScheduleChangedEvent event) {
+        if (event.remote()) {
+            return;
+        }
+        String dates = event.dates().stream().map(LocalDate::toString).collect(Collectors.joining(","));
+        try {
+            stringRedisTemplate.convertAndSend(CHANNEL, nodeId + "|" + event.userId() + "|" + dates);
+        } catch (Exception e) {
+            // 广播失败只影响其他节点的缓存时效, 不影响本次日程操作
+            logger.error("广播日程变更事件失败: {}", e.getMessage());
+        }
+    }
+
+    private void onMessage(String body) {
+        String[] parts = body.split("\\|", -1);
+        if (parts.length < 3 || nodeId.equals(parts[0])) {
+            return;
+        }
+        Set<LocalDate> dates = parts[2].isEmpty()
+                ? Set.of()
+                : Arrays.stream(parts[2].split(",")).map(LocalDate::parse)
+                        .collect(Collectors.toCollection(LinkedHashSet::new));
+        eventPublisher.publishEvent(new ScheduleChangedEvent(parts[1], dates, true));
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.quickplan_ai.llm;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * 自适应并发限制器(AIMD)
+ * 根据模型调用的实际耗时调整允许的并发数:
+ * - 调用成功且耗时低于阈值, 并且并发已接近上限时, 上限加性增长(每轮 +1)
+ * - 调用失败或耗时超过阈值时, 上限乘性下降(乘以 backoffRatio)
+ *
+ * 超过上限的请求进入有界等待队列, 队列已满或等待超时立即抛出 {@link AiOverloadedException},
+ * 上游变慢时快速失败, 不会把请求线程全部耗在等待模型上
+ */
+public class AdaptiveConcurrencyLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(AdaptiveConcurrencyLimiter.class);
+
+    private final String name;
+    private final int minLimit;
+    private final int maxLimit;
+    private final int maxQueue;
+    private final long maxWaitNanos;
+    private final long latencyThresholdNanos;
+    private final double backoffRatio;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition available = lock.newCondition();
+
+    private double limit;
+    private int inFlight;
+    private int queued;
+
+    private final LongAdder rejected = new LongAdder();
+
+    public AdaptiveConcurrencyLimiter(String name, int initialLimit, int minLimit, int maxLimit, int maxQueue,
+                                      Duration maxWait, Duration latencyThreshold, double backoffRatio) {
+        if (minLimit < 1 || minLimit > maxLimit || initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("并发限制参数不合法: 需要 1 <= min <= initial <= max");
+        }
+        if (backoffRatio <= 0 || backoffRatio >= 1) {
+            throw new IllegalArgumentException("backoffRatio 必须在 (0, 1) 之间");
+        }
+        this.name = name;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxQueue = maxQueue;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.latencyThresholdNanos = latencyThreshold.toNanos();
+        this.backoffRatio = backoffRatio;
+        this.limit = initialLimit;
+    }
+
+    /**
+     * 获取调用许可, 超过并发上限时排队等待
+     *
+     * @return 许可, 调用结束后必须 release
+     * @throws AiOverloadedException 队列已满、等待超时或等待时被中断
+     */
+    public Permit acquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit) {
+                inFlight++;
+                return new Permit();
+            }
+            if (queued >= maxQueue) {
+                rejected.increment();
+                throw new AiOverloadedException("AI服务繁忙: 等待队列已满(" + name + ")");
+            }
+
+            queued++;
+            try {
+                long remaining = maxWaitNanos;
+                while (inFlight >= (int) limit) {
+                    if (remaining <= 0) {
+                        rejected.increment();
+                        throw new AiOverloadedException("AI服务繁忙: 等待超时(" + name + ")");
+                    }
+                    remaining = available.awaitNanos(remaining);
+                }
+                inFlight++;
+                return new Permit();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                rejected.increment();
+                throw new AiOverloadedException("AI服务繁忙: 等待被中断(" + name + ")", e);
+            } finally {
+                queued--;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * 不排队地获取许可, 用于可有可无的额外调用(如对冲请求)
+     *
+     * @return 许可; 并发已达上限或有请求在排队时返回 null, 不与排队的请求抢许可
+     */
+    public Permit tryAcquire() {
+        lock.lock();
+        try {
+            if (inFlight < (int) limit && queued == 0) {
+                inFlight++;
+                return new Permit();
+            }
+            return null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onRelease(long latencyNanos, boolean success) {
+        lock.lock();
+        try {
+            int before = inFlight;
+            inFlight--;
+
+            double previous = limit;
+            if (!success || latencyNanos > latencyThresholdNanos) {
+                limit = Math.max(minLimit, limit * backoffRatio);
+            } else if (before * 2 >= (int) limit) {
+                // 只有并发确实用到一半以上时才放宽, 避免空闲时上限无限增长
+                limit = Math.min(maxLimit, limit + 1.0 / limit);
+            }
+
+            if ((int) limit != (int) previous) {
+                logger.info("模型并发上限调整({}): {} -> {}, 本次耗时: {}ms, 成功: {}",
+                        name, (int) previous, (int) limit, TimeUnit.NANOSECONDS.toMillis(latencyNanos), success);
+            }
+            available.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getLimit() {
+        lock.lock();
+        try {
+            return (int) limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * 一次调用许可, 记录获取时间用于计算耗时; 重复 release 只生效一次
+     */
+    public class Permit {
+
+        private final long start = System.nanoTime();
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        public void release(boolean success) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(System.nanoTime() - start, success);
+            }
+        }
+    }
+}
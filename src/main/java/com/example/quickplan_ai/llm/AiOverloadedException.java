@@ -0,0 +1,15 @@
+package com.example.quickplan_ai.llm;
+
+/**
+ * 模型调用被并发限制拒绝: 排队已满或等待超时
+ */
+public class AiOverloadedException extends RuntimeException {
+
+    public AiOverloadedException(String message) {
+        super(message);
+    }
+
+    public AiOverloadedException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
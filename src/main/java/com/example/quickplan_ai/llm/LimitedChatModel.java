@@ -0,0 +1,61 @@
+package com.example.quickplan_ai.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * 带并发限制的同步模型
+ * 每次调用先向 {@link AdaptiveConcurrencyLimiter} 申请许可, 调用结束后按耗时和结果反馈给限制器
+ * 请求参数默认值和监听器仍由被包装的模型处理
+ */
+public class LimitedChatModel implements ChatModel {
+
+    private final ChatModel delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+
+    public LimitedChatModel(ChatModel delegate, AdaptiveConcurrencyLimiter limiter) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        AdaptiveConcurrencyLimiter.Permit permit = limiter.acquire();
+        boolean success = false;
+        try {
+            ChatResponse response = delegate.chat(chatRequest);
+            success = true;
+            return response;
+        } finally {
+            permit.release(success);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
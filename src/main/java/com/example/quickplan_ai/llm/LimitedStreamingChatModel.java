@@ -0,0 +1,97 @@
+package com.example.quickplan_ai.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.Capability;
+import dev.langchain4j.model.chat.StreamingChatModel;
+import dev.langchain4j.model.chat.listener.ChatModelListener;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.request.ChatRequestParameters;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import dev.langchain4j.model.chat.response.StreamingChatResponseHandler;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * 带并发限制的流式模型
+ * 申请许可(可能需要排队)在独立线程池中进行, 调用方线程立即返回;
+ * 许可一直持有到流结束(完成或出错), 拒绝时通过 handler.onError 通知调用方
+ */
+public class LimitedStreamingChatModel implements StreamingChatModel {
+
+    private final StreamingChatModel delegate;
+    private final AdaptiveConcurrencyLimiter limiter;
+    private final Executor executor;
+
+    public LimitedStreamingChatModel(StreamingChatModel delegate, AdaptiveConcurrencyLimiter limiter,
+                                     Executor executor) {
+        this.delegate = delegate;
+        this.limiter = limiter;
+        this.executor = executor;
+    }
+
+    @Override
+    public void chat(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        try {
+            executor.execute(() -> start(chatRequest, handler));
+        } catch (RejectedExecutionException e) {
+            handler.onError(new AiOverloadedException("AI服务繁忙: 线程池已满", e));
+        }
+    }
+
+    private void start(ChatRequest chatRequest, StreamingChatResponseHandler handler) {
+        AdaptiveConcurrencyLimiter.Permit permit;
+        try {
+            permit = limiter.acquire();
+        } catch (AiOverloadedException e) {
+            handler.onError(e);
+            return;
+        }
+
+        try {
+            delegate.chat(chatRequest, new StreamingChatResponseHandler() {
+                @Override
+                public void onPartialResponse(String partialResponse) {
+                    handler.onPartialResponse(partialResponse);
+                }
+
+                @Override
+                public void onCompleteResponse(ChatResponse completeResponse) {
+                    permit.release(true);
+                    handler.onCompleteResponse(completeResponse);
+                }
+
+                @Override
+                public void onError(Throwable error) {
+                    permit.release(false);
+                    handler.onError(error);
+                }
+            });
+        } catch (RuntimeException e) {
+            permit.release(false);
+            handler.onError(e);
+        }
+    }
+
+    @Override
+    public ChatRequestParameters defaultRequestParameters() {
+        return delegate.defaultRequestParameters();
+    }
+
+    @Override
+    public List<ChatModelListener> listeners() {
+        return delegate.listeners();
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return delegate.provider();
+    }
+
+    @Override
+    public Set<Capability> supportedCapabilities() {
+        return delegate.supportedCapabilities();
+    }
+}
@@ -0,0 +1,348 @@
+package com.example.quickplan_ai.llm;
+
+import dev.langchain4j.model.ModelProvider;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.chat.response.ChatResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 多端点路由模型
+ * 把同步对话分发到多个 OpenAI 兼容端点(不同服务商或不同规格的模型), 对调用方(AiChatService)透明
+ *
+ * 选择规则:
+ * - 每个端点维护延迟和错误率的指数加权平均(EWMA), 评分 = 平均延迟 * (1 + errorPenalty * 错误率), 取评分最低者
+ * - 失败的调用按对冲延迟上限计入平均延迟, 快速返回错误的端点不会因为延迟低而一直被选中
+ * - 超过 {@link #PROBE_INTERVAL_NANOS} 未被选中的端点(包括从未调用过的)优先试探一次, 出错的端点恢复后能重新被选中
+ *
+ * 对冲请求(hedging):
+ * - 首选端点超过其 P95 延迟仍未返回时, 向次优端点再发一次同样的请求, 取先成功的结果, 另一个请求被取消;
+ *   被取消的一方按已等待的时间计入平均延迟, 不计入错误率
+ * - 各端点的模型应关闭自身的重试(maxRetries=0), 失败转移由路由负责
+ * - 首选端点直接失败时立即改用次优端点
+ * - 样本不足时对冲延迟取平均延迟的 2 倍, 没有样本时取上限
+ * - 外层 {@link LimitedChatModel} 的一个许可只覆盖首选请求, 对冲请求会向上游多发一次调用,
+ *   因此需要再向 hedgeLimiter 申请一个许可(不排队); 拿不到许可说明已经饱和, 放弃对冲, 继续等待首选端点
+ */
+public class RoutingChatModel implements ChatModel {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingChatModel.class);
+
+    /**
+     * 端点多久未被选中后重新试探
+     */
+    private static final long PROBE_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(30);
+
+    /**
+     * 计算分位数至少需要的样本数
+     */
+    private static final int MIN_PERCENTILE_SAMPLES = 20;
+
+    private static final int SAMPLE_WINDOW = 128;
+
+    private final List<EndpointState> endpoints;
+    private final double ewmaAlpha;
+    private final double errorPenalty;
+    private final boolean hedgeEnabled;
+    private final double hedgePercentile;
+    private final long minHedgeDelayNanos;
+    private final long maxHedgeDelayNanos;
+    private final ExecutorService executor;
+    private final AdaptiveConcurrencyLimiter hedgeLimiter;
+
+    private final LongAdder hedges = new LongAdder();
+    private final LongAdder skippedHedges = new LongAdder();
+
+    /**
+     * @param endpoints 端点名称 -> 模型, 按配置顺序; 评分相同时靠前的优先
+     * @param executor     对冲请求使用的线程池, 被取消的请求会被中断
+     * @param hedgeLimiter 对冲请求额外占用的并发许可, 一般与外层 LimitedChatModel 共用; 为 null 时不限制
+     */
+    public RoutingChatModel(Map<String, ChatModel> endpoints, double ewmaAlpha, double errorPenalty,
+                            boolean hedgeEnabled, double hedgePercentile, Duration minHedgeDelay,
+                            Duration maxHedgeDelay, ExecutorService executor,
+                            AdaptiveConcurrencyLimiter hedgeLimiter) {
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("至少需要一个模型端点");
+        }
+        List<EndpointState> states = new ArrayList<>(endpoints.size());
+        endpoints.forEach((name, model) -> states.add(new EndpointState(name, model)));
+        this.endpoints = List.copyOf(states);
+        this.ewmaAlpha = ewmaAlpha;
+        this.errorPenalty = errorPenalty;
+        this.hedgeEnabled = hedgeEnabled;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+        this.maxHedgeDelayNanos = maxHedgeDelay.toNanos();
+        this.executor = executor;
+        this.hedgeLimiter = hedgeLimiter;
+    }
+
+    @Override
+    public ChatResponse chat(ChatRequest chatRequest) {
+        List<EndpointState> ranked = rank();
+        EndpointState primary = ranked.get(0);
+        AtomicBoolean finished = new AtomicBoolean();
+        if (ranked.size() == 1) {
+            return call(primary, chatRequest, finished);
+        }
+        EndpointState secondary = ranked.get(1);
+
+        if (!hedgeEnabled) {
+            try {
+                return call(primary, chatRequest, finished);
+            } catch (RuntimeException e) {
+                logger.warn("模型端点 {} 调用失败, 改用 {}: {}", primary.name, secondary.name, e.getMessage());
+                return call(secondary, chatRequest, finished);
+            }
+        }
+        return hedgedCall(primary, secondary, chatRequest);
+    }
+
+    private ChatResponse hedgedCall(EndpointState primary, EndpointState secondary, ChatRequest chatRequest) {
+        ExecutorCompletionService<ChatResponse> completion = new ExecutorCompletionService<>(executor);
+        List<Future<ChatResponse>> futures = new ArrayList<>(2);
+        AtomicBoolean finished = new AtomicBoolean();
+        AtomicBoolean hedgeFailed = new AtomicBoolean();
+        AdaptiveConcurrencyLimiter.Permit hedgePermit = null;
+        long start = System.nanoTime();
+        futures.add(completion.submit(() -> call(primary, chatRequest, finished)));
+        boolean secondarySubmitted = false;
+        Throwable lastError = null;
+
+        try {
+            Future<ChatResponse> done = completion.poll(primary.hedgeDelayNanos(), TimeUnit.NANOSECONDS);
+            if (done == null) {
+                // 立即按已等待的时间更新首选端点的延迟, 不等被取消的请求结束, 后续请求才能及时避开它
+                primary.recordAtLeast(System.nanoTime() - start);
+                hedgePermit = hedgeLimiter != null ? hedgeLimiter.tryAcquire() : null;
+                if (hedgeLimiter == null || hedgePermit != null) {
+                    hedges.increment();
+                    logger.debug("模型端点 {} 超过对冲延迟未返回, 同时请求 {}", primary.name, secondary.name);
+                    futures.add(completion.submit(() -> {
+                        try {
+                            return call(secondary, chatRequest, finished);
+                        } catch (RuntimeException e) {
+                            hedgeFailed.set(!finished.get());
+                            throw e;
+                        }
+                    }));
+                    secondarySubmitted = true;
+                } else {
+                    skippedHedges.increment();
+                    logger.debug("模型端点 {} 超过对冲延迟未返回, 并发已满, 不发送对冲请求", primary.name);
+                }
+            }
+
+            int outstanding = futures.size();
+            while (outstanding > 0) {
+                if (done == null) {
+                    done = completion.take();
+                }
+                outstanding--;
+                try {
+                    return done.get();
+                } catch (ExecutionException e) {
+                    lastError = e.getCause();
+                    if (!secondarySubmitted) {
+                        logger.warn("模型端点 {} 调用失败, 改用 {}: {}", primary.name, secondary.name,
+                                lastError.getMessage());
+                        futures.add(completion.submit(() -> call(secondary, chatRequest, finished)));
+                        secondarySubmitted = true;
+                        outstanding++;
+                    }
+                }
+                done = null;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("模型调用被中断", e);
+        } finally {
+            // 取消还在进行的请求(对冲中较慢的一方)
+            finished.set(true);
+            for (Future<ChatResponse> future : futures) {
+                future.cancel(true);
+            }
+            // 对冲请求此时已经结束或被取消, 不再等待它真正退出
+            if (hedgePermit != null) {
+                hedgePermit.release(!hedgeFailed.get());
+            }
+        }
+
+        if (lastError instanceof RuntimeException runtimeException) {
+            throw runtimeException;
+        }
+        throw new IllegalStateException("模型调用失败", lastError);
+    }
+
+    /**
+     * @param finished 本次对话已经得到结果, 此后结束的调用都是被对冲取消的一方
+     */
+    private ChatResponse call(EndpointState endpoint, ChatRequest chatRequest, AtomicBoolean finished) {
+        long start = System.nanoTime();
+        endpoint.lastSelectedNanos = start;
+        try {
+            ChatResponse response = endpoint.model.chat(chatRequest);
+            endpoint.recordSuccess(System.nanoTime() - start);
+            return response;
+        } catch (RuntimeException e) {
+            if (finished.get()) {
+                // 被对冲取消: 实际延迟至少是已等待的时间, 不算错误
+                endpoint.recordAtLeast(System.nanoTime() - start);
+            } else {
+                endpoint.recordFailure(System.nanoTime() - start);
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * 按评分排序端点, 需要试探的端点排在最前
+     */
+    private List<EndpointState> rank() {
+        long now = System.nanoTime();
+        List<EndpointState> ranked = new ArrayList<>(endpoints);
+        ranked.sort(Comparator
+                .comparing((EndpointState e) -> !e.needsProbe(now))
+                .thenComparingDouble(EndpointState::score));
+        return ranked;
+    }
+
+    /**
+     * 各端点的统计: 平均延迟(毫秒)、错误率、调用次数、失败次数、当前对冲延迟(毫秒)
+     */
+    public Map<String, Map<String, Object>> getStats() {
+        Map<String, Map<String, Object>> stats = new LinkedHashMap<>();
+        for (EndpointState endpoint : endpoints) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("ewmaLatencyMillis", TimeUnit.NANOSECONDS.toMillis((long) endpoint.ewmaLatencyNanos));
+            item.put("errorRate", endpoint.ewmaErrorRate);
+            item.put("calls", endpoint.calls.sum());
+            item.put("errors", endpoint.errors.sum());
+            item.put("hedgeDelayMillis", TimeUnit.NANOSECONDS.toMillis(endpoint.hedgeDelayNanos()));
+            stats.put(endpoint.name, item);
+        }
+        return stats;
+    }
+
+    public List<String> getEndpointNames() {
+        return endpoints.stream().map(endpoint -> endpoint.name).toList();
+    }
+
+    public double getEwmaLatencyMillis(String name) {
+        return find(name).ewmaLatencyNanos / 1_000_000.0;
+    }
+
+    public double getErrorRate(String name) {
+        return find(name).ewmaErrorRate;
+    }
+
+    public long getHedgeCount() {
+        return hedges.sum();
+    }
+
+    public long getSkippedHedgeCount() {
+        return skippedHedges.sum();
+    }
+
+    private EndpointState find(String name) {
+        for (EndpointState endpoint : endpoints) {
+            if (endpoint.name.equals(name)) {
+                return endpoint;
+            }
+        }
+        throw new IllegalArgumentException("未知的模型端点: " + name);
+    }
+
+    @Override
+    public ModelProvider provider() {
+        return ModelProvider.OTHER;
+    }
+
+    private final class EndpointState {
+
+        private final String name;
+        private final ChatModel model;
+
+        private volatile double ewmaLatencyNanos;
+        private volatile double ewmaErrorRate;
+        private volatile long lastSelectedNanos = System.nanoTime() - PROBE_INTERVAL_NANOS;
+
+        private final long[] samples = new long[SAMPLE_WINDOW];
+        private int sampleCount;
+        private int sampleIndex;
+
+        private final LongAdder calls = new LongAdder();
+        private final LongAdder errors = new LongAdder();
+
+        EndpointState(String name, ChatModel model) {
+            this.name = name;
+            this.model = model;
+        }
+
+        synchronized void recordSuccess(long latencyNanos) {
+            calls.increment();
+            ewmaLatencyNanos = ewmaLatencyNanos == 0 ? latencyNanos
+                    : ewmaAlpha * latencyNanos + (1 - ewmaAlpha) * ewmaLatencyNanos;
+            ewmaErrorRate = (1 - ewmaAlpha) * ewmaErrorRate;
+            samples[sampleIndex] = latencyNanos;
+            sampleIndex = (sampleIndex + 1) % SAMPLE_WINDOW;
+            sampleCount = Math.min(sampleCount + 1, SAMPLE_WINDOW);
+        }
+
+        synchronized void recordAtLeast(long elapsedNanos) {
+            if (elapsedNanos > ewmaLatencyNanos) {
+                ewmaLatencyNanos = ewmaLatencyNanos == 0 ? elapsedNanos
+                        : ewmaAlpha * elapsedNanos + (1 - ewmaAlpha) * ewmaLatencyNanos;
+            }
+        }
+
+        synchronized void recordFailure(long elapsedNanos) {
+            calls.increment();
+            errors.increment();
+            ewmaErrorRate = ewmaAlpha + (1 - ewmaAlpha) * ewmaErrorRate;
+            long penalty = Math.max(elapsedNanos, maxHedgeDelayNanos);
+            ewmaLatencyNanos = ewmaLatencyNanos == 0 ? penalty
+                    : ewmaAlpha * penalty + (1 - ewmaAlpha) * ewmaLatencyNanos;
+        }
+
+        boolean needsProbe(long now) {
+            return now - lastSelectedNanos > PROBE_INTERVAL_NANOS;
+        }
+
+        double score() {
+            return ewmaLatencyNanos * (1 + errorPenalty * ewmaErrorRate);
+        }
+
+        synchronized long hedgeDelayNanos() {
+            long delay;
+            if (sampleCount >= MIN_PERCENTILE_SAMPLES) {
+                long[] sorted = Arrays.copyOf(samples, sampleCount);
+                Arrays.sort(sorted);
+                int index = (int) Math.ceil(hedgePercentile * sampleCount) - 1;
+                delay = sorted[Math.max(0, Math.min(index, sampleCount - 1))];
+            } else if (ewmaLatencyNanos > 0) {
+                delay = (long) (ewmaLatencyNanos * 2);
+            } else {
+                delay = maxHedgeDelayNanos;
+            }
+            return Math.max(minHedgeDelayNanos, Math.min(delay, maxHedgeDelayNanos));
+        }
+    }
+}
@@ -1,8 +1,10 @@
 package com.example.quickplan_ai.mapper;
 
+import com.example.quickplan_ai.dto.ConversationCounterDrift;
 import com.example.quickplan_ai.entity.Conversation;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -24,6 +26,62 @@ public interface ConversationMapper {
     @Update("UPDATE conversation SET title=#{title}, updated_at=#{updatedAt} WHERE id=#{id}")
     int updateById(Conversation conversation);
 
+    /**
+     * 会话仍是默认标题时更新标题, 一条语句完成判断和更新
+     */
+    @Update("UPDATE conversation SET title=#{title}, updated_at=#{updatedAt} WHERE id=#{id} AND title='新对话'")
+    int updateTitleIfDefault(@Param("id") String id, @Param("title") String title,
+            @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 新消息写入后更新会话的摘要字段, 与消息写入在同一事务中执行
+     *
+     * @param count       本次写入的消息条数
+     * @param lastMessage 最后一条消息的摘要
+     * @param updatedAt   最后一条消息的时间
+     */
+    @Update("UPDATE conversation SET message_count = message_count + #{count}, last_message=#{lastMessage}, " +
+            "updated_at=#{updatedAt} WHERE id=#{id}")
+    int appendMessages(@Param("id") String id, @Param("count") int count,
+            @Param("lastMessage") String lastMessage, @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 会话的消息全部删除后清空摘要字段
+     * 显式写回 updated_at, 不让 ON UPDATE 改变会话在列表中的位置
+     */
+    @Update("UPDATE conversation SET message_count = 0, last_message = NULL, updated_at = updated_at WHERE id=#{id}")
+    int clearMessageSummary(String id);
+
+    /**
+     * 读取会话的消息计数
+     */
+    @Select("SELECT message_count FROM conversation WHERE id=#{id} AND is_deleted=0")
+    Integer selectMessageCount(String id);
+
+    /**
+     * 按ID顺序取一批会话ID, 计数校正任务分批扫描使用
+     */
+    @Select("SELECT id FROM conversation WHERE id > #{afterId} ORDER BY id LIMIT #{limit}")
+    List<String> selectIdsAfter(@Param("afterId") String afterId, @Param("limit") int limit);
+
+    /**
+     * 查找 (fromId, toId] 范围内消息计数与实际消息数不一致的会话
+     */
+    @Select("SELECT c.id, c.message_count AS stored_count, COUNT(m.id) AS actual_count " +
+            "FROM conversation c LEFT JOIN conversation_message m " +
+            "ON m.conversation_id = c.id AND m.is_deleted = 0 " +
+            "WHERE c.id > #{fromId} AND c.id <= #{toId} " +
+            "GROUP BY c.id, c.message_count HAVING COUNT(m.id) <> c.message_count")
+    List<ConversationCounterDrift> selectCounterDrift(@Param("fromId") String fromId, @Param("toId") String toId);
+
+    /**
+     * 校正消息计数
+     * 只在计数仍等于检查时的值才更新, 检查之后又写入了消息时跳过, 留给下一次校正
+     */
+    @Update("UPDATE conversation SET message_count = #{actualCount}, updated_at = updated_at " +
+            "WHERE id=#{id} AND message_count = #{storedCount}")
+    int repairMessageCount(ConversationCounterDrift drift);
+
     /**
      * 根据ID删除(逻辑删除)
      */
@@ -42,6 +100,26 @@ public interface ConversationMapper {
     @Select("SELECT * FROM conversation WHERE user_id = #{userId} AND is_deleted = 0 ORDER BY updated_at DESC")
     List<Conversation> selectByUserId(String userId);
 
+    /**
+     * 游标分页查询用户的会话列表(按更新时间倒序)
+     * 走 idx_user_deleted_updated_id 索引的范围扫描
+     *
+     * @param afterTime 上一页最后一个会话的更新时间, 查第一页时为 null
+     * @param afterId   上一页最后一个会话的ID
+     * @param limit     查询条数
+     */
+    @Select("<script>" +
+            "SELECT * FROM conversation WHERE user_id = #{userId} AND is_deleted = 0 " +
+            "<if test='afterTime != null'>" +
+            "AND (updated_at &lt; #{afterTime} OR (updated_at = #{afterTime} AND id &lt; #{afterId})) " +
+            "</if>" +
+            "ORDER BY updated_at DESC, id DESC LIMIT #{limit}" +
+            "</script>")
+    List<Conversation> selectPageByUserId(@Param("userId") String userId,
+            @Param("afterTime") LocalDateTime afterTime,
+            @Param("afterId") String afterId,
+            @Param("limit") int limit);
+
     /**
      * 查询最近的N个会话
      */
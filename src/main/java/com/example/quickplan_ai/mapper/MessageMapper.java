@@ -3,6 +3,7 @@ package com.example.quickplan_ai.mapper;
 import com.example.quickplan_ai.entity.Message;
 import org.apache.ibatis.annotations.*;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 /**
@@ -19,6 +20,17 @@ public interface MessageMapper {
     @Options(useGeneratedKeys = true, keyProperty = "id")
     int insert(Message message);
 
+    /**
+     * 批量插入消息(多行 INSERT), 供异步写入队列使用
+     */
+    @Insert("<script>" +
+            "INSERT INTO conversation_message(conversation_id, role, content, created_at, is_deleted) VALUES " +
+            "<foreach collection='messages' item='m' separator=','>" +
+            "(#{m.conversationId}, #{m.role}, #{m.content}, #{m.createdAt}, #{m.isDeleted})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("messages") List<Message> messages);
+
     /**
      * 根据ID删除(逻辑删除)
      */
@@ -37,6 +49,35 @@ public interface MessageMapper {
     @Select("SELECT * FROM conversation_message WHERE conversation_id = #{conversationId} AND is_deleted = 0 ORDER BY created_at ASC")
     List<Message> selectByConversationId(String conversationId);
 
+    /**
+     * 游标分页查询会话消息, 按 (created_at, id) 排序
+     * 走 idx_conv_deleted_created_id 索引的范围扫描, 翻到第几页耗时都一样
+     *
+     * @param afterTime 上一页最后一条的创建时间, 查第一页时为 null
+     * @param afterId   上一页最后一条的ID
+     * @param ascending true-从旧到新, false-从新到旧
+     * @param limit     查询条数
+     */
+    @Select("<script>" +
+            "SELECT * FROM conversation_message WHERE conversation_id = #{conversationId} AND is_deleted = 0 " +
+            "<if test='afterTime != null'>" +
+            "<choose>" +
+            "<when test='ascending'>AND (created_at &gt; #{afterTime} OR (created_at = #{afterTime} AND id &gt; #{afterId})) </when>" +
+            "<otherwise>AND (created_at &lt; #{afterTime} OR (created_at = #{afterTime} AND id &lt; #{afterId})) </otherwise>" +
+            "</choose>" +
+            "</if>" +
+            "<choose>" +
+            "<when test='ascending'>ORDER BY created_at ASC, id ASC </when>" +
+            "<otherwise>ORDER BY created_at DESC, id DESC </otherwise>" +
+            "</choose>" +
+            "LIMIT #{limit}" +
+            "</script>")
+    List<Message> selectPage(@Param("conversationId") String conversationId,
+                             @Param("afterTime") LocalDateTime afterTime,
+                             @Param("afterId") Long afterId,
+                             @Param("ascending") boolean ascending,
+                             @Param("limit") int limit);
+
     /**
      * 查询会话的最新N条消息
      */
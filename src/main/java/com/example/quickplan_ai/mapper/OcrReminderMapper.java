@@ -19,6 +19,17 @@ public interface OcrReminderMapper {
             "VALUES(#{id}, #{conversationId}, #{userId}, #{title}, #{description}, #{remindTime}, #{isCompleted}, #{isDeleted})")
     int insert(OcrReminder reminder);
 
+    /**
+     * 批量插入OCR提醒(多行 INSERT), 调用方负责控制每批的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO ocr_reminder(id, conversation_id, user_id, title, description, remind_time, is_completed, is_deleted) VALUES " +
+            "<foreach collection='reminders' item='r' separator=','>" +
+            "(#{r.id}, #{r.conversationId}, #{r.userId}, #{r.title}, #{r.description}, #{r.remindTime}, #{r.isCompleted}, #{r.isDeleted})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("reminders") List<OcrReminder> reminders);
+
     /**
      * 根据ID查询
      */
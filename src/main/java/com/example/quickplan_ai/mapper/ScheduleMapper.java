@@ -1,7 +1,9 @@
 package com.example.quickplan_ai.mapper;
 
+import com.example.quickplan_ai.dto.ScheduleFeedVersion;
 import com.example.quickplan_ai.entity.Schedule;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.cursor.Cursor;
 
 import java.time.LocalDate;
 import java.util.List;
@@ -15,10 +17,23 @@ public interface ScheduleMapper {
     /**
      * 插入日程
      */
-    @Insert("INSERT INTO schedule(id, user_id, title, location, date, time, description, is_deleted) " +
-            "VALUES(#{id}, #{userId}, #{title}, #{location}, #{date}, #{time}, #{description}, #{isDeleted})")
+    @Insert("INSERT INTO schedule(id, user_id, title, location, date, time, duration_minutes, description, is_deleted) " +
+            "VALUES(#{id}, #{userId}, #{title}, #{location}, #{date}, #{time}, #{durationMinutes}, #{description}, " +
+            "#{isDeleted})")
     int insert(Schedule schedule);
 
+    /**
+     * 批量插入日程(多行 INSERT), 调用方负责控制每批的行数
+     */
+    @Insert("<script>" +
+            "INSERT INTO schedule(id, user_id, title, location, date, time, duration_minutes, description, is_deleted) " +
+            "VALUES <foreach collection='schedules' item='s' separator=','>" +
+            "(#{s.id}, #{s.userId}, #{s.title}, #{s.location}, #{s.date}, #{s.time}, #{s.durationMinutes}, " +
+            "#{s.description}, #{s.isDeleted})" +
+            "</foreach>" +
+            "</script>")
+    int batchInsert(@Param("schedules") List<Schedule> schedules);
+
     /**
      * 根据ID查询
      */
@@ -31,6 +46,30 @@ public interface ScheduleMapper {
     @Select("SELECT * FROM schedule WHERE user_id = #{userId} AND is_deleted = 0 ORDER BY date ASC, time ASC")
     List<Schedule> selectByUserId(String userId);
 
+    /**
+     * 流式读取用户的所有日程, 用于导出
+     * fetchSize = Integer.MIN_VALUE 让 MySQL 驱动逐行返回结果而不是一次读入内存;
+     * 必须在事务中使用并在遍历完成后关闭, 遍历期间同一连接上不能执行其他语句
+     */
+    @Select("SELECT * FROM schedule WHERE user_id = #{userId} AND is_deleted = 0 ORDER BY date ASC, time ASC")
+    @Options(fetchSize = Integer.MIN_VALUE)
+    Cursor<Schedule> streamByUserId(String userId);
+
+    /**
+     * 用户日程(含重复日程)的版本, 用于导出的 ETag / Last-Modified
+     * 删除是把 is_deleted 置 1, 同样会刷新 updated_at, 因此最大更新时间统计时包含已删除的记录
+     */
+    @Select("SELECT " +
+            "(SELECT COUNT(*) FROM schedule WHERE user_id = #{userId} AND is_deleted = 0) AS schedule_count, " +
+            "(SELECT COUNT(*) FROM schedule_series WHERE user_id = #{userId} AND is_deleted = 0) AS series_count, " +
+            "GREATEST(" +
+            "COALESCE((SELECT MAX(updated_at) FROM schedule WHERE user_id = #{userId}), " +
+            "CAST('1970-01-01' AS DATETIME)), " +
+            "COALESCE((SELECT MAX(updated_at) FROM schedule_series WHERE user_id = #{userId}), " +
+            "CAST('1970-01-01' AS DATETIME))" +
+            ") AS last_modified")
+    ScheduleFeedVersion selectFeedVersion(String userId);
+
     /**
      * 查询用户指定日期范围内的日程
      */
@@ -52,7 +91,9 @@ public interface ScheduleMapper {
      * 更新日程
      */
     @Update("UPDATE schedule SET title = #{title}, location = #{location}, " +
-            "date = #{date}, time = #{time}, description = #{description} WHERE id = #{id}")
+            "date = #{date}, time = #{time}, duration_minutes = COALESCE(#{durationMinutes}, duration_minutes), " +
+            "description = #{description} " +
+            "WHERE id = #{id}")
     int updateById(Schedule schedule);
 
     /**
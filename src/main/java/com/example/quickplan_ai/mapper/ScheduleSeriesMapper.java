@@ -0,0 +1,48 @@
+package com.example.quickplan_ai.mapper;
+
+import com.example.quickplan_ai.entity.ScheduleSeries;
+import org.apache.ibatis.annotations.*;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 重复日程 Mapper接口
+ */
+@Mapper
+public interface ScheduleSeriesMapper {
+
+    /**
+     * 插入系列
+     */
+    @Insert("INSERT INTO schedule_series(id, user_id, title, location, start_date, end_date, time, duration_minutes, rrule, exdates, " +
+            "description, created_at, updated_at, is_deleted) " +
+            "VALUES(#{id}, #{userId}, #{title}, #{location}, #{startDate}, #{endDate}, #{time}, #{durationMinutes}, #{rrule}, #{exdates}, " +
+            "#{description}, #{createdAt}, #{updatedAt}, #{isDeleted})")
+    int insert(ScheduleSeries series);
+
+    /**
+     * 根据ID查询
+     */
+    @Select("SELECT * FROM schedule_series WHERE id = #{id} AND is_deleted = 0")
+    ScheduleSeries selectById(String id);
+
+    /**
+     * 查询用户的所有系列
+     */
+    @Select("SELECT * FROM schedule_series WHERE user_id = #{userId} AND is_deleted = 0 ORDER BY start_date ASC, time ASC")
+    List<ScheduleSeries> selectByUserId(String userId);
+
+    /**
+     * 更新取消的日期
+     */
+    @Update("UPDATE schedule_series SET exdates = #{exdates}, updated_at = #{updatedAt} WHERE id = #{id}")
+    int updateExdates(@Param("id") String id, @Param("exdates") String exdates,
+            @Param("updatedAt") LocalDateTime updatedAt);
+
+    /**
+     * 逻辑删除
+     */
+    @Update("UPDATE schedule_series SET is_deleted = 1 WHERE id = #{id}")
+    int deleteById(String id);
+}
@@ -0,0 +1,82 @@
+package com.example.quickplan_ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+
+import java.util.List;
+
+/**
+ * 对话摘要生成器
+ * 把滑出窗口的旧消息与上一版摘要合并成新的摘要
+ */
+public class ChatSummarizer {
+
+    private static final String INSTRUCTION = """
+            你是对话摘要助手。请把"已有摘要"和"新增对话"合并成一份新的摘要, 要求:
+            1. 使用中文, 不超过%d字
+            2. 保留用户提到的日程、时间、地点、偏好和尚未完成的事项
+            3. 删除寒暄和重复内容, 不要编造对话中没有的信息
+            4. 只输出摘要正文
+            """;
+
+    private final ChatModel chatModel;
+    private final int maxChars;
+
+    public ChatSummarizer(ChatModel chatModel, int maxChars) {
+        this.chatModel = chatModel;
+        this.maxChars = maxChars;
+    }
+
+    /**
+     * @param previousSummary 上一版摘要, 没有时为 null
+     * @param messages        需要并入摘要的消息
+     * @return 新的摘要
+     */
+    public String summarize(String previousSummary, List<ChatMessage> messages) {
+        StringBuilder input = new StringBuilder();
+        input.append("已有摘要:\n")
+                .append(previousSummary == null || previousSummary.isBlank() ? "(无)" : previousSummary)
+                .append("\n\n新增对话:\n");
+        for (ChatMessage message : messages) {
+            appendLine(input, message);
+        }
+
+        String summary = chatModel.chat(
+                        SystemMessage.from(INSTRUCTION.formatted(maxChars)),
+                        UserMessage.from(input.toString()))
+                .aiMessage()
+                .text();
+        if (summary == null) {
+            return previousSummary;
+        }
+        summary = summary.strip();
+        return summary.length() > maxChars ? summary.substring(0, maxChars) : summary;
+    }
+
+    private static void appendLine(StringBuilder input, ChatMessage message) {
+        if (message instanceof UserMessage userMessage) {
+            input.append("用户: ");
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    input.append(textContent.text());
+                }
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            if (aiMessage.text() == null || aiMessage.text().isBlank()) {
+                return;
+            }
+            input.append("AI: ").append(aiMessage.text());
+        } else if (message instanceof ToolExecutionResultMessage resultMessage) {
+            input.append("工具结果: ").append(resultMessage.text());
+        } else {
+            return;
+        }
+        input.append('\n');
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.quickplan_ai.memory;
+
+import dev.langchain4j.agent.tool.ToolExecutionRequest;
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.Content;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.TextContent;
+import dev.langchain4j.data.message.ToolExecutionResultMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.TokenCountEstimator;
+
+/**
+ * 启发式 token 估算
+ * 硅基流动没有提供 Qwen 的分词接口, 这里按字符类别估算, 宁多勿少:
+ * - 中日韩文字及全角标点: 每字 1 个 token
+ * - 其他字符: 每 4 个字符 1 个 token
+ * - 每条消息额外计 4 个 token(角色标记等)
+ */
+public class HeuristicTokenCountEstimator implements TokenCountEstimator {
+
+    private static final int MESSAGE_OVERHEAD = 4;
+
+    @Override
+    public int estimateTokenCountInText(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        int wide = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (isWide(c)) {
+                wide++;
+            } else {
+                other++;
+            }
+        }
+        return wide + (other + 3) / 4;
+    }
+
+    @Override
+    public int estimateTokenCountInMessage(ChatMessage message) {
+        int tokens = MESSAGE_OVERHEAD;
+        if (message instanceof SystemMessage systemMessage) {
+            tokens += estimateTokenCountInText(systemMessage.text());
+        } else if (message instanceof UserMessage userMessage) {
+            for (Content content : userMessage.contents()) {
+                if (content instanceof TextContent textContent) {
+                    tokens += estimateTokenCountInText(textContent.text());
+                }
+            }
+        } else if (message instanceof AiMessage aiMessage) {
+            tokens += estimateTokenCountInText(aiMessage.text());
+            if (aiMessage.hasToolExecutionRequests()) {
+                for (ToolExecutionRequest request : aiMessage.toolExecutionRequests()) {
+                    tokens += estimateTokenCountInText(request.name());
+                    tokens += estimateTokenCountInText(request.arguments());
+                }
+            }
+        } else if (message instanceof ToolExecutionResultMessage resultMessage) {
+            tokens += estimateTokenCountInText(resultMessage.text());
+        }
+        return tokens;
+    }
+
+    @Override
+    public int estimateTokenCountInMessages(Iterable<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            tokens += estimateTokenCountInMessage(message);
+        }
+        return tokens;
+    }
+
+    private static boolean isWide(char c) {
+        return (c >= 0x2E80 && c <= 0x9FFF)      // 中日韩部首、假名、统一汉字
+                || (c >= 0xAC00 && c <= 0xD7AF)  // 韩文音节
+                || (c >= 0xF900 && c <= 0xFAFF)  // 兼容汉字
+                || (c >= 0xFF00 && c <= 0xFFEF)  // 全角字符
+                || Character.isSurrogate(c);
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.quickplan_ai.memory;
+
+import dev.langchain4j.data.message.AiMessage;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.memory.ChatMemory;
+import dev.langchain4j.model.TokenCountEstimator;
+import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按 token 预算裁剪的聊天记忆
+ * 取代固定条数的 MessageWindowChatMemory, 无论对话多长, 发给模型的历史都不超过预算
+ *
+ * 存储结构: [系统消息] [摘要消息] [最近的消息...]
+ * - 系统消息不计入预算, 替换规则与 MessageWindowChatMemory 相同
+ * - 非系统消息超过 maxTokens 时, 从最早的完整一轮(以用户消息开头)开始折叠,
+ *   直到剩余部分不超过 compactTokens; 折叠的消息与旧摘要一起交给 {@link ChatSummarizer} 生成新摘要
+ * - 摘要以 {@link #SUMMARY_PREFIX} 开头的 AiMessage 存放在记忆中, 只有窗口滑动时才重新生成,
+ *   maxTokens 与 compactTokens 之间的差值保证不会每轮都触发摘要
+ * - 摘要生成失败时直接丢弃折叠的消息, 保证预算
+ *
+ * 摘要需要调用模型, 只在 {@link #messages()} 中进行: 该方法由 AiServices 在真正调用模型前取历史时调用,
+ * 运行在模型调用的线程上。{@link #add} 只写入消息, 快速通道和响应缓存补写记忆时不会被摘要阻塞;
+ * 连续多轮都没有调用模型、超出预算 {@link #OVERFLOW_FACTOR} 倍时, add 直接丢弃最早的轮次(不生成摘要)
+ */
+public class TokenBudgetChatMemory implements ChatMemory {
+
+    private static final Logger logger = LoggerFactory.getLogger(TokenBudgetChatMemory.class);
+
+    public static final String SUMMARY_PREFIX = "【历史对话摘要】";
+
+    /**
+     * add 时允许超出预算的倍数, 超过后不等模型调用, 直接丢弃最早的轮次
+     */
+    static final int OVERFLOW_FACTOR = 3;
+
+    private final Object id;
+    private final ChatMemoryStore store;
+    private final TokenCountEstimator estimator;
+    private final ChatSummarizer summarizer;
+    private final int maxTokens;
+    private final int compactTokens;
+
+    public TokenBudgetChatMemory(Object id, ChatMemoryStore store, TokenCountEstimator estimator,
+                                 ChatSummarizer summarizer, int maxTokens, int compactTokens) {
+        if (compactTokens <= 0 || compactTokens > maxTokens) {
+            throw new IllegalArgumentException("compactTokens 必须在 (0, maxTokens] 之间");
+        }
+        this.id = id;
+        this.store = store;
+        this.estimator = estimator;
+        this.summarizer = summarizer;
+        this.maxTokens = maxTokens;
+        this.compactTokens = compactTokens;
+    }
+
+    @Override
+    public Object id() {
+        return id;
+    }
+
+    @Override
+    public void add(ChatMessage message) {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+
+        if (message instanceof SystemMessage) {
+            SystemMessage existing = findSystemMessage(messages);
+            if (existing != null) {
+                if (existing.equals(message)) {
+                    return;
+                }
+                messages.remove(existing);
+            }
+        }
+        messages.add(message);
+
+        int tokens = countNonSystemTokens(messages);
+        if (tokens > maxTokens * OVERFLOW_FACTOR) {
+            messages = compact(messages, tokens, false);
+        }
+        store.updateMessages(id, messages);
+    }
+
+    /**
+     * 取出发给模型的历史, 超出预算时先折叠最早的对话并生成摘要
+     */
+    @Override
+    public List<ChatMessage> messages() {
+        List<ChatMessage> messages = new ArrayList<>(store.getMessages(id));
+        int tokens = countNonSystemTokens(messages);
+        if (tokens > maxTokens) {
+            List<ChatMessage> compacted = compact(messages, tokens, true);
+            if (compacted != messages) {
+                store.updateMessages(id, compacted);
+            }
+            return compacted;
+        }
+        return messages;
+    }
+
+    @Override
+    public void clear() {
+        store.deleteMessages(id);
+    }
+
+    /**
+     * 折叠最早的若干轮对话
+     *
+     * @param summarize 是否调用模型把折叠的消息并入摘要, 为 false 时直接丢弃, 保留旧摘要
+     * @return 折叠后的消息, 无法折叠时返回原列表
+     */
+    private List<ChatMessage> compact(List<ChatMessage> messages, int tokensBefore, boolean summarize) {
+        SystemMessage system = findSystemMessage(messages);
+        String previousSummary = null;
+        List<ChatMessage> rest = new ArrayList<>(messages.size());
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage) {
+                continue;
+            }
+            if (previousSummary == null && rest.isEmpty() && isSummary(message)) {
+                previousSummary = ((AiMessage) message).text().substring(SUMMARY_PREFIX.length());
+                continue;
+            }
+            rest.add(message);
+        }
+
+        // 摘要本身也占预算, 按旧摘要的长度预留
+        int summaryTokens = previousSummary == null ? 0
+                : estimator.estimateTokenCountInMessage(AiMessage.from(SUMMARY_PREFIX + previousSummary));
+        int target = Math.max(compactTokens - summaryTokens, 0);
+
+        // 从头累计, 找到第一个满足剩余预算的轮次起点; 最后一条消息始终保留
+        int[] suffixTokens = new int[rest.size() + 1];
+        for (int i = rest.size() - 1; i >= 0; i--) {
+            suffixTokens[i] = suffixTokens[i + 1] + estimator.estimateTokenCountInMessage(rest.get(i));
+        }
+        int fold = -1;
+        int lastTurnStart = -1;
+        for (int i = 1; i < rest.size(); i++) {
+            if (!(rest.get(i) instanceof UserMessage)) {
+                continue;
+            }
+            lastTurnStart = i;
+            if (suffixTokens[i] <= target) {
+                fold = i;
+                break;
+            }
+        }
+        if (fold < 0) {
+            // 最近一轮本身就超出预算, 只能保留这一轮
+            fold = lastTurnStart;
+        }
+        if (fold <= 0) {
+            return messages;
+        }
+
+        List<ChatMessage> folded = rest.subList(0, fold);
+        String summary = previousSummary;
+        long start = System.currentTimeMillis();
+        if (summarize) {
+            try {
+                summary = summarizer.summarize(previousSummary, folded);
+            } catch (Exception e) {
+                logger.warn("生成对话摘要失败, 直接丢弃最早的 {} 条消息, memoryId: {}, 原因: {}",
+                        folded.size(), id, e.getMessage());
+            }
+        } else {
+            logger.warn("多轮未调用模型, 聊天记忆超出预算 {} 倍, 直接丢弃最早的 {} 条消息, memoryId: {}",
+                    OVERFLOW_FACTOR, folded.size(), id);
+        }
+
+        List<ChatMessage> compacted = new ArrayList<>(rest.size() - fold + 2);
+        if (system != null) {
+            compacted.add(system);
+        }
+        if (summary != null && !summary.isBlank()) {
+            compacted.add(AiMessage.from(SUMMARY_PREFIX + summary));
+        }
+        compacted.addAll(rest.subList(fold, rest.size()));
+
+        logger.info("压缩聊天记忆, memoryId: {}, 折叠消息: {}, token: {} -> {}, 摘要耗时: {}ms",
+                id, folded.size(), tokensBefore, countNonSystemTokens(compacted),
+                System.currentTimeMillis() - start);
+        return compacted;
+    }
+
+    private int countNonSystemTokens(List<ChatMessage> messages) {
+        int tokens = 0;
+        for (ChatMessage message : messages) {
+            if (!(message instanceof SystemMessage)) {
+                tokens += estimator.estimateTokenCountInMessage(message);
+            }
+        }
+        return tokens;
+    }
+
+    private static boolean isSummary(ChatMessage message) {
+        return message instanceof AiMessage aiMessage
+                && aiMessage.text() != null
+                && aiMessage.text().startsWith(SUMMARY_PREFIX);
+    }
+
+    private static SystemMessage findSystemMessage(List<ChatMessage> messages) {
+        for (ChatMessage message : messages) {
+            if (message instanceof SystemMessage systemMessage) {
+                return systemMessage;
+            }
+        }
+        return null;
+    }
+}
@@ -1,26 +1,75 @@
 package com.example.quickplan_ai.repository;
 
+import com.example.quickplan_ai.entity.Message;
+import com.example.quickplan_ai.mapper.MessageMapper;
+import com.example.quickplan_ai.repository.codec.ChatMessageCodecs;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import dev.langchain4j.data.message.AiMessage;
 import dev.langchain4j.data.message.ChatMessage;
 import dev.langchain4j.data.message.ChatMessageDeserializer;
-import dev.langchain4j.data.message.ChatMessageSerializer;
+import dev.langchain4j.data.message.SystemMessage;
+import dev.langchain4j.data.message.UserMessage;
 import dev.langchain4j.store.memory.chat.ChatMemoryStore;
+import jakarta.annotation.PostConstruct;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.Cursor;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.ZSetOperations.TypedTuple;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Repository;
 
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Redis 聊天记忆存储实现
- * Key格式: quickplan:chat:memory:{conversationId}
- * 
+ * Key格式:
+ * - quickplan:chat:memory:list:{conversationId}   消息列表(List), 每个元素是一条单独编码的消息
+ * - quickplan:chat:memory:system:{conversationId} 系统消息(String)
+ * - quickplan:chat:memory:version:{conversationId} 版本号(String), 每次写入加 1
+ * - quickplan:chat:memory:{conversationId}        旧版整段 JSON, 读取时自动迁移
+ * - quickplan:chat:memory:index                   会话索引(ZSet), member 为 conversationId, score 为最后写入时间(毫秒)
+ *
  * 说明:
  * - conversationId 在数据库中已关联 userId,实现了间接的用户隔离
  * - Redis key 包含业务前缀 "quickplan:chat:memory:"
  * - 支持按 conversationId 维度的增删改查
+ * - 每轮对话只 RPUSH 新增的消息, 窗口溢出时 LTRIM 掉最早的消息, 不再整段重写
+ * - 系统消息单独存放, 读取时固定放在第一条
+ * - 单条消息的编码格式见 {@link ChatMessageCodecs}, 读到旧格式的消息时, 下次写入会整体按新格式重写
+ *
+ * 冷热分层:
+ * - Redis 只保存活跃会话: 每次读写都把会话的 key 续期为 quickplan.chat.memory.ttl, 闲置超时后自动过期
+ * - 消息同时保存在 conversation_message 表中, Redis 未命中时从表里取最近的消息重建记忆窗口
+ *
+ * 维护操作:
+ * - 统计直接 ZCARD 索引, 不再 KEYS 全库
+ * - 清空和闲置淘汰按批次 UNLINK, 批量命令走 pipeline; 需要遍历 key 时使用 SCAN 游标
+ *
+ * 近端缓存:
+ * - 本节点在堆内缓存最近访问的会话(大小和写入时间双重限制), 命中时 getMessages 不访问 Redis
+ * - 写入 Redis 的同一个脚本内向 quickplan:chat:memory:invalidate 频道发布失效消息,
+ *   其他节点收到后丢弃本地缓存
+ *
+ * 并发写入:
+ * - 读取时一并取回版本号, 增量写入时脚本比较版本号, 与读取时一致才写入并把版本号加 1
+ * - 版本号不一致说明读取之后有其他请求或节点写入过: 丢弃近端缓存, 从 Redis 重新读取,
+ *   只把本轮的变化(裁剪的条数和新追加的消息)应用到最新的内容上, 不会用旧内容覆盖别人写入的消息
  */
 @Repository
 public class RedisChatMemoryRepository implements ChatMemoryStore {
@@ -29,16 +78,161 @@ public class RedisChatMemoryRepository implements ChatMemoryStore {
 
     /**
      * Redis Key 前缀
-     * 格式: quickplan:chat:memory:{conversationId}
      */
     private static final String KEY_PREFIX = "quickplan:chat:memory:";
+    private static final String LIST_KEY_PREFIX = KEY_PREFIX + "list:";
+    private static final String SYSTEM_KEY_PREFIX = KEY_PREFIX + "system:";
+    private static final String VERSION_KEY_PREFIX = KEY_PREFIX + "version:";
+    private static final String INDEX_KEY = KEY_PREFIX + "index";
+
+    /**
+     * 批量删除、SCAN 每批处理的数量
+     */
+    private static final int BATCH_SIZE = 500;
+
+    /**
+     * 版本号冲突后基于最新内容重新写入的最多次数
+     */
+    private static final int MAX_APPEND_ATTEMPTS = 5;
+
+    private static final byte[] SYSTEM_KEEP = {'0'};
+    private static final byte[] SYSTEM_SET = {'1'};
+    private static final byte[] SYSTEM_DELETE = {'2'};
+    private static final byte[] EMPTY = new byte[0];
+
+    /**
+     * 近端缓存失效通知频道, 消息格式: {nodeId}\n{conversationId}\n{conversationId}...
+     */
+    private static final String INVALIDATE_CHANNEL = KEY_PREFIX + "invalidate";
+    private static final String INVALIDATE_ALL = "*";
+
+    /**
+     * 读取: 一次往返取回系统消息、消息列表和版本号, 新格式为空时顺带取回旧版 JSON; 命中时续期
+     * KEYS: list, system, legacy, version
+     * ARGV: 过期时间(毫秒, 0 表示不过期)
+     */
+    private static final RedisScript<List> READ_SCRIPT = new DefaultRedisScript<>("""
+            local system = redis.call('GET', KEYS[2])
+            local items = redis.call('LRANGE', KEYS[1], 0, -1)
+            local version = redis.call('GET', KEYS[4]) or '0'
+            local legacy = false
+            if #items == 0 and not system then
+                legacy = redis.call('GET', KEYS[3])
+            elseif tonumber(ARGV[1]) > 0 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[1])
+                redis.call('PEXPIRE', KEYS[2], ARGV[1])
+                redis.call('PEXPIRE', KEYS[4], ARGV[1])
+            end
+            return {system or '', legacy or '', items, version}
+            """, List.class);
+
+    /**
+     * 增量写入: 版本号与读取时一致才执行, 成功时返回加 1 后的版本号, 不一致时返回 0
+     * KEYS: list, system, index, version
+     * ARGV: 读取时的版本号(-1 表示不比较、整段重写), 头部裁剪条数, 系统消息操作, 系统消息, 失效通知频道,
+     * 失效通知内容, 当前时间(毫秒), conversationId, 过期时间(毫秒, 0 表示不过期), 追加的消息...
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            local expected = tonumber(ARGV[1])
+            if expected < 0 then
+                redis.call('DEL', KEYS[1])
+            elseif tonumber(redis.call('GET', KEYS[4]) or '0') ~= expected then
+                return 0
+            end
+            local trim = tonumber(ARGV[2])
+            if trim > 0 then
+                redis.call('LTRIM', KEYS[1], trim, -1)
+            end
+            if ARGV[3] == '1' then
+                redis.call('SET', KEYS[2], ARGV[4])
+            elseif ARGV[3] == '2' then
+                redis.call('DEL', KEYS[2])
+            end
+            if #ARGV > 9 then
+                redis.call('RPUSH', KEYS[1], unpack(ARGV, 10))
+            end
+            local version = redis.call('INCR', KEYS[4])
+            if tonumber(ARGV[9]) > 0 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[9])
+                redis.call('PEXPIRE', KEYS[2], ARGV[9])
+                redis.call('PEXPIRE', KEYS[4], ARGV[9])
+            end
+            redis.call('ZADD', KEYS[3], ARGV[7], ARGV[8])
+            if ARGV[5] ~= '' then
+                redis.call('PUBLISH', ARGV[5], ARGV[6])
+            end
+            return version
+            """, Long.class);
+
+    /**
+     * 最近一次 getMessages 读到的内容
+     * ChatMemory 每次 add 都是先 getMessages 再 updateMessages, 两次调用在同一线程内,
+     * 据此计算出本轮的增量, 不需要再读一次 Redis
+     */
+    private static final ThreadLocal<Snapshot> lastRead = new ThreadLocal<>();
+
+    @Autowired
+    private RedisTemplate<String, byte[]> chatMemoryRedisTemplate;
 
     @Autowired
-    private StringRedisTemplate stringRedisTemplate;
+    private ChatMessageCodecs codecs;
+
+    @Autowired
+    private RedisMessageListenerContainer redisMessageListenerContainer;
+
+    @Autowired
+    private MessageMapper messageMapper;
+
+    /**
+     * 会话在 Redis 中的闲置过期时间, 0 表示不过期
+     */
+    @Value("${quickplan.chat.memory.ttl:7d}")
+    private Duration ttl;
+
+    /**
+     * 从数据库重建记忆时最多取的消息数
+     */
+    @Value("${quickplan.chat.memory.max-messages:100}")
+    private int maxMessages;
+
+    @Value("${quickplan.chat.memory.near-cache.enabled:true}")
+    private boolean nearCacheEnabled;
+
+    @Value("${quickplan.chat.memory.near-cache.max-size:10000}")
+    private long nearCacheMaxSize;
+
+    @Value("${quickplan.chat.memory.near-cache.expire-after-write:10m}")
+    private Duration nearCacheExpireAfterWrite;
+
+    /**
+     * 本节点标识, 用于忽略自己发出的失效通知
+     */
+    private final String nodeId = UUID.randomUUID().toString();
+
+    /**
+     * 近端缓存: conversationId -> 最近一次读到或写入的内容, 未开启时为 null
+     */
+    private Cache<String, Snapshot> nearCache;
+
+    @PostConstruct
+    public void initNearCache() {
+        if (!nearCacheEnabled) {
+            logger.info("聊天记忆近端缓存未开启");
+            return;
+        }
+        nearCache = Caffeine.newBuilder()
+                .maximumSize(nearCacheMaxSize)
+                .expireAfterWrite(nearCacheExpireAfterWrite)
+                .build();
+        redisMessageListenerContainer.addMessageListener(
+                (message, pattern) -> onInvalidate(message), new ChannelTopic(INVALIDATE_CHANNEL));
+        logger.info("聊天记忆近端缓存已开启, nodeId: {}, 容量: {}, 写入后过期: {}",
+                nodeId, nearCacheMaxSize, nearCacheExpireAfterWrite);
+    }
 
     /**
      * 构建 Redis Key
-     * 
+     *
      * @param memoryId 会话ID (conversationId)
      * @return 完整的 Redis Key
      */
@@ -46,37 +240,325 @@ public class RedisChatMemoryRepository implements ChatMemoryStore {
         return KEY_PREFIX + memoryId.toString();
     }
 
+    private String buildListKey(Object memoryId) {
+        return LIST_KEY_PREFIX + memoryId.toString();
+    }
+
+    private String buildSystemKey(Object memoryId) {
+        return SYSTEM_KEY_PREFIX + memoryId.toString();
+    }
+
+    private String buildVersionKey(Object memoryId) {
+        return VERSION_KEY_PREFIX + memoryId.toString();
+    }
+
     @Override
     public List<ChatMessage> getMessages(Object memoryId) {
-        String key = buildKey(memoryId);
-        logger.debug("从 Redis 获取聊天记录, key: {}", key);
+        if (nearCache != null) {
+            Snapshot cached = nearCache.getIfPresent(memoryId.toString());
+            if (cached != null) {
+                lastRead.set(cached);
+                logger.debug("近端缓存命中, conversationId: {}, 消息数: {}", memoryId, cached.messages().size());
+                return cached.toList();
+            }
+        }
 
-        String json = stringRedisTemplate.opsForValue().get(key);
-        List<ChatMessage> list = ChatMessageDeserializer.messagesFromJson(json);
+        logger.debug("从 Redis 获取聊天记录, key: {}", buildListKey(memoryId));
+        List<?> result = read(memoryId);
 
-        logger.debug("获取到 {} 条消息", list != null ? list.size() : 0);
+        byte[] systemData = (byte[]) result.get(0);
+        byte[] legacyData = (byte[]) result.get(1);
+        List<?> items = (List<?>) result.get(2);
+
+        if (legacyData.length > 0) {
+            return migrateLegacy(memoryId, new String(legacyData, StandardCharsets.UTF_8));
+        }
+        if (systemData.length == 0 && items.isEmpty()) {
+            return loadFromDatabase(memoryId);
+        }
+
+        Snapshot snapshot = decode(memoryId, result);
+        if (isCurrent(systemData, items)) {
+            lastRead.set(snapshot);
+            if (nearCache != null) {
+                nearCache.put(snapshot.memoryId(), snapshot);
+            }
+        } else {
+            // 存在旧格式的消息, 不记录快照也不缓存, 下次写入时整体重写
+            lastRead.remove();
+        }
+
+        List<ChatMessage> list = snapshot.toList();
+        logger.debug("获取到 {} 条消息", list.size());
         return list;
     }
 
     @Override
     public void updateMessages(Object memoryId, List<ChatMessage> list) {
-        String key = buildKey(memoryId);
-        String json = ChatMessageSerializer.messagesToJson(list);
+        Snapshot snapshot = lastRead.get();
+        lastRead.remove();
+
+        SystemMessage system = null;
+        List<ChatMessage> messages = new ArrayList<>(list.size());
+        for (ChatMessage message : list) {
+            if (message instanceof SystemMessage systemMessage) {
+                system = systemMessage;
+            } else {
+                messages.add(message);
+            }
+        }
+
+        if (snapshot != null && snapshot.memoryId().equals(memoryId.toString())) {
+            int trim = findTrimCount(snapshot.messages(), messages);
+            if (trim >= 0) {
+                // 本轮的变化: 从头部裁掉 trim 条, 追加 appended
+                List<ChatMessage> appended = messages.subList(snapshot.messages().size() - trim, messages.size());
+                Snapshot base = snapshot;
+                for (int attempt = 0; attempt < MAX_APPEND_ATTEMPTS && base != null; attempt++) {
+                    int baseTrim = Math.min(trim, base.messages().size());
+                    byte[] systemMode = system == null
+                            ? (base.system() == null ? SYSTEM_KEEP : SYSTEM_DELETE)
+                            : (system.equals(base.system()) ? SYSTEM_KEEP : SYSTEM_SET);
+                    long version = write(memoryId, base.version(), baseTrim, systemMode, system, appended);
+                    if (version > 0) {
+                        List<ChatMessage> written = new ArrayList<>(base.messages().subList(baseTrim,
+                                base.messages().size()));
+                        written.addAll(appended);
+                        cacheWritten(memoryId, system, written, version);
+                        logger.debug("增量更新 Redis 聊天记录, key: {}, 裁剪: {}, 追加: {}",
+                                buildListKey(memoryId), baseTrim, appended.size());
+                        return;
+                    }
+                    // 读取之后有其他写入: 丢弃近端缓存, 在最新内容上重新应用本轮的变化
+                    logger.info("聊天记录已被并发修改, 基于最新内容重新追加, key: {}", buildListKey(memoryId));
+                    if (nearCache != null) {
+                        nearCache.invalidate(memoryId.toString());
+                    }
+                    base = reread(memoryId);
+                }
+                if (base != null) {
+                    // 多次冲突仍未写入: 以最后读到的内容为基础整段写入
+                    List<ChatMessage> merged = new ArrayList<>(base.messages().subList(
+                            Math.min(trim, base.messages().size()), base.messages().size()));
+                    merged.addAll(appended);
+                    messages = merged;
+                }
+                logger.warn("聊天记录增量写入未成功, 改为整段重写, key: {}", buildListKey(memoryId));
+            }
+        }
+
+        long version = write(memoryId, -1, 0, system == null ? SYSTEM_DELETE : SYSTEM_SET, system, messages);
+        cacheWritten(memoryId, system, messages, version);
+        logger.debug("更新 Redis 聊天记录, key: {}, 消息数: {}", buildListKey(memoryId), messages.size());
+    }
 
-        stringRedisTemplate.opsForValue().set(key, json);
-        logger.debug("更新 Redis 聊天记录, key: {}, 消息数: {}", key, list.size());
+    private List<?> read(Object memoryId) {
+        return chatMemoryRedisTemplate.execute(READ_SCRIPT,
+                List.of(buildListKey(memoryId), buildSystemKey(memoryId), buildKey(memoryId), buildVersionKey(memoryId)),
+                ttlArg());
+    }
+
+    /**
+     * 版本号冲突后绕过近端缓存重新读取, 只在 updateMessages 中使用, 不记录快照
+     *
+     * @return 最新内容, 存在旧版数据或旧格式的消息时返回 null, 由调用方整段重写
+     */
+    private Snapshot reread(Object memoryId) {
+        List<?> result = read(memoryId);
+        byte[] systemData = (byte[]) result.get(0);
+        byte[] legacyData = (byte[]) result.get(1);
+        List<?> items = (List<?>) result.get(2);
+        if (legacyData.length > 0 || !isCurrent(systemData, items)) {
+            return null;
+        }
+        return decode(memoryId, result);
+    }
+
+    /**
+     * 把 READ_SCRIPT 的结果解码为快照
+     */
+    private Snapshot decode(Object memoryId, List<?> result) {
+        byte[] systemData = (byte[]) result.get(0);
+        List<?> items = (List<?>) result.get(2);
+        long version = Long.parseLong(new String((byte[]) result.get(3), StandardCharsets.US_ASCII));
+
+        SystemMessage system = systemData.length > 0 ? (SystemMessage) codecs.decode(systemData) : null;
+        List<ChatMessage> messages = new ArrayList<>(items.size());
+        for (Object item : items) {
+            messages.add(codecs.decode((byte[]) item));
+        }
+        return new Snapshot(memoryId.toString(), system, List.copyOf(messages), version);
+    }
+
+    private boolean isCurrent(byte[] systemData, List<?> items) {
+        if (systemData.length > 0 && !codecs.isCurrent(systemData)) {
+            return false;
+        }
+        for (Object item : items) {
+            if (!codecs.isCurrent((byte[]) item)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void cacheWritten(Object memoryId, SystemMessage system, List<ChatMessage> messages, long version) {
+        if (nearCache != null) {
+            nearCache.put(memoryId.toString(),
+                    new Snapshot(memoryId.toString(), system, List.copyOf(messages), version));
+        }
+    }
+
+    /**
+     * 计算新列表相对于读取时的列表从头部裁掉了几条
+     * 新列表 = 旧列表去掉前 k 条 + 新追加的消息
+     *
+     * @return k, 新列表不是这种形式时返回 -1
+     */
+    private static int findTrimCount(List<ChatMessage> previous, List<ChatMessage> current) {
+        for (int trim = 0; trim <= previous.size(); trim++) {
+            int kept = previous.size() - trim;
+            if (kept > current.size()) {
+                continue;
+            }
+            boolean matches = true;
+            for (int i = 0; i < kept; i++) {
+                ChatMessage before = previous.get(trim + i);
+                ChatMessage after = current.get(i);
+                if (before != after && !before.equals(after)) {
+                    matches = false;
+                    break;
+                }
+            }
+            if (matches) {
+                return trim;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param expectedVersion 读取时的版本号, -1 表示不比较、整段重写
+     * @return 写入后的版本号, 版本号不一致未写入时返回 0
+     */
+    private long write(Object memoryId, long expectedVersion, int trim, byte[] systemMode,
+                       SystemMessage system, List<ChatMessage> appended) {
+        Object[] args = new Object[9 + appended.size()];
+        args[0] = String.valueOf(expectedVersion).getBytes(StandardCharsets.US_ASCII);
+        args[1] = String.valueOf(trim).getBytes(StandardCharsets.US_ASCII);
+        args[2] = systemMode;
+        args[3] = systemMode == SYSTEM_SET ? codecs.encode(system) : EMPTY;
+        args[4] = nearCache != null ? INVALIDATE_CHANNEL.getBytes(StandardCharsets.UTF_8) : EMPTY;
+        args[5] = nearCache != null ? invalidateMessage(List.of(memoryId.toString())) : EMPTY;
+        args[6] = String.valueOf(System.currentTimeMillis()).getBytes(StandardCharsets.US_ASCII);
+        args[7] = memoryId.toString().getBytes(StandardCharsets.UTF_8);
+        args[8] = ttlArg();
+        for (int i = 0; i < appended.size(); i++) {
+            args[9 + i] = codecs.encode(appended.get(i));
+        }
+
+        Long result = chatMemoryRedisTemplate.execute(APPEND_SCRIPT,
+                List.of(buildListKey(memoryId), buildSystemKey(memoryId), INDEX_KEY, buildVersionKey(memoryId)), args);
+        return result != null ? result : 0;
+    }
+
+    private byte[] ttlArg() {
+        return String.valueOf(ttl.toMillis()).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    /**
+     * Redis 未命中时从数据库重建记忆窗口
+     * - 取最近 maxMessages 条消息, 按时间正序还原为 UserMessage / AiMessage
+     * - 末尾没有回复的用户消息丢弃: 当前这轮的用户消息在调用模型前已经入库, ChatMemory 会再添加一次
+     * - 重建结果不写回 Redis 也不记录快照, 随后的 updateMessages 会整段写入
+     */
+    private List<ChatMessage> loadFromDatabase(Object memoryId) {
+        lastRead.remove();
+
+        List<Message> recent = new ArrayList<>(messageMapper.selectRecentMessages(memoryId.toString(), maxMessages));
+        Collections.reverse(recent);
+        int end = recent.size();
+        while (end > 0 && !"assistant".equals(recent.get(end - 1).getRole())) {
+            end--;
+        }
+
+        List<ChatMessage> list = new ArrayList<>(end);
+        for (Message message : recent.subList(0, end)) {
+            if (message.getContent() == null || message.getContent().isBlank()) {
+                continue;
+            }
+            if ("user".equals(message.getRole())) {
+                list.add(UserMessage.from(message.getContent()));
+            } else if ("assistant".equals(message.getRole())) {
+                list.add(AiMessage.from(message.getContent()));
+            }
+        }
+
+        if (!list.isEmpty()) {
+            logger.info("Redis 未命中, 从数据库重建聊天记录, conversationId: {}, 消息数: {}", memoryId, list.size());
+        }
+        return list;
+    }
+
+    private byte[] invalidateMessage(List<String> conversationIds) {
+        return (nodeId + "\n" + String.join("\n", conversationIds)).getBytes(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 删除或清空后通知其他节点丢弃近端缓存
+     */
+    private void invalidate(List<String> conversationIds) {
+        if (nearCache == null) {
+            return;
+        }
+        if (conversationIds.contains(INVALIDATE_ALL)) {
+            nearCache.invalidateAll();
+        } else {
+            nearCache.invalidateAll(conversationIds);
+        }
+        chatMemoryRedisTemplate.convertAndSend(INVALIDATE_CHANNEL, invalidateMessage(conversationIds));
+    }
+
+    /**
+     * 收到其他节点的失效通知
+     */
+    private void onInvalidate(org.springframework.data.redis.connection.Message message) {
+        String[] parts = new String(message.getBody(), StandardCharsets.UTF_8).split("\n");
+        if (parts.length < 2 || nodeId.equals(parts[0])) {
+            return;
+        }
+        for (int i = 1; i < parts.length; i++) {
+            if (INVALIDATE_ALL.equals(parts[i])) {
+                nearCache.invalidateAll();
+                return;
+            }
+            nearCache.invalidate(parts[i]);
+        }
+    }
+
+    /**
+     * 把旧版整段 JSON 转存为消息列表
+     */
+    private List<ChatMessage> migrateLegacy(Object memoryId, String legacyJson) {
+        lastRead.remove();
+        List<ChatMessage> list = ChatMessageDeserializer.messagesFromJson(legacyJson);
+        updateMessages(memoryId, list);
+        chatMemoryRedisTemplate.delete(buildKey(memoryId));
+        logger.info("旧版聊天记录已迁移, conversationId: {}, 消息数: {}", memoryId, list.size());
+        return list;
     }
 
     @Override
     public void deleteMessages(Object memoryId) {
-        String key = buildKey(memoryId);
-        stringRedisTemplate.delete(key);
-        logger.debug("删除 Redis 聊天记录, key: {}", key);
+        lastRead.remove();
+        deleteConversations(List.of(memoryId.toString()));
+        invalidate(List.of(memoryId.toString()));
+        logger.debug("删除 Redis 聊天记录, conversationId: {}", memoryId);
     }
 
     /**
      * 批量删除指定会话的聊天记录
-     * 
+     *
      * @param conversationIds 会话ID列表
      */
     public void deleteMessagesByConversationIds(List<String> conversationIds) {
@@ -84,31 +566,183 @@ public class RedisChatMemoryRepository implements ChatMemoryStore {
             return;
         }
 
-        List<String> keys = conversationIds.stream()
-                .map(this::buildKey)
-                .toList();
-
-        Long deleted = stringRedisTemplate.delete(keys);
+        long deleted = deleteConversations(conversationIds);
+        invalidate(conversationIds);
         logger.info("批量删除 Redis 聊天记录, 删除数量: {}", deleted);
     }
 
+    /**
+     * 删除会话的全部 key 并移出索引, 按批次在 pipeline 中执行
+     *
+     * @return 删除的 key 数量
+     */
+    private long deleteConversations(List<String> conversationIds) {
+        List<Object> results = chatMemoryRedisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            byte[] indexKey = INDEX_KEY.getBytes(StandardCharsets.UTF_8);
+            for (int from = 0; from < conversationIds.size(); from += BATCH_SIZE) {
+                List<String> batch = conversationIds.subList(from, Math.min(from + BATCH_SIZE, conversationIds.size()));
+                byte[][] keys = new byte[batch.size() * 4][];
+                byte[][] members = new byte[batch.size()][];
+                for (int i = 0; i < batch.size(); i++) {
+                    String conversationId = batch.get(i);
+                    keys[i * 4] = buildListKey(conversationId).getBytes(StandardCharsets.UTF_8);
+                    keys[i * 4 + 1] = buildSystemKey(conversationId).getBytes(StandardCharsets.UTF_8);
+                    keys[i * 4 + 2] = buildKey(conversationId).getBytes(StandardCharsets.UTF_8);
+                    keys[i * 4 + 3] = buildVersionKey(conversationId).getBytes(StandardCharsets.UTF_8);
+                    members[i] = conversationId.getBytes(StandardCharsets.UTF_8);
+                }
+                connection.keyCommands().unlink(keys);
+                connection.zSetCommands().zRem(indexKey, members);
+            }
+            return null;
+        });
+
+        // 结果依次为 UNLINK、ZREM 的返回值, 只统计 UNLINK
+        long deleted = 0;
+        for (int i = 0; i < results.size(); i += 2) {
+            if (results.get(i) instanceof Long count) {
+                deleted += count;
+            }
+        }
+        return deleted;
+    }
+
+    /**
+     * 淘汰长时间没有写入的会话记忆
+     * 按最后写入时间从索引中分批取出, 数据库中的消息记录不受影响
+     *
+     * @param idleTimeout 闲置时长
+     * @return 淘汰的会话数量
+     */
+    public long evictIdle(Duration idleTimeout) {
+        long cutoff = System.currentTimeMillis() - idleTimeout.toMillis();
+        long evicted = 0;
+        while (true) {
+            Set<byte[]> members = chatMemoryRedisTemplate.opsForZSet()
+                    .rangeByScore(INDEX_KEY, 0, cutoff, 0, BATCH_SIZE);
+            if (members == null || members.isEmpty()) {
+                break;
+            }
+            List<String> conversationIds = members.stream()
+                    .map(member -> new String(member, StandardCharsets.UTF_8))
+                    .toList();
+            deleteConversations(conversationIds);
+            invalidate(conversationIds);
+            evicted += conversationIds.size();
+            if (members.size() < BATCH_SIZE) {
+                break;
+            }
+        }
+        if (evicted > 0) {
+            logger.info("淘汰闲置聊天记录, 闲置时长: {}, 数量: {}", idleTimeout, evicted);
+        }
+        return evicted;
+    }
+
     /**
      * 清理所有聊天记录 (慎用)
-     * 仅用于维护或测试
+     * 仅用于维护或测试; SCAN 游标遍历, 每批 UNLINK 一次, 不会长时间阻塞 Redis
      */
     public void clearAll() {
-        Set<String> keys = stringRedisTemplate.keys(KEY_PREFIX + "*");
-        if (keys != null && !keys.isEmpty()) {
-            Long deleted = stringRedisTemplate.delete(keys);
-            logger.warn("清空所有 Redis 聊天记录, 删除数量: {}", deleted);
+        long deleted = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Cursor<String> cursor = scan(KEY_PREFIX + "*")) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next());
+                if (batch.size() >= BATCH_SIZE) {
+                    deleted += unlink(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            deleted += unlink(batch);
         }
+        invalidate(List.of(INVALIDATE_ALL));
+        logger.warn("清空所有 Redis 聊天记录, 删除数量: {}", deleted);
     }
 
     /**
      * 获取 Redis 中存储的聊天记录总数
+     * 直接读取索引: 不过期时为 ZCARD, 否则统计 TTL 内写入过的会话(ZCOUNT, O(log n))
      */
     public long countAll() {
-        Set<String> keys = stringRedisTemplate.keys(KEY_PREFIX + "*");
-        return keys != null ? keys.size() : 0;
+        Long count = ttl.isZero()
+                ? chatMemoryRedisTemplate.opsForZSet().zCard(INDEX_KEY)
+                : chatMemoryRedisTemplate.opsForZSet().count(INDEX_KEY,
+                        System.currentTimeMillis() - ttl.toMillis(), Double.POSITIVE_INFINITY);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * 会话在 Redis 中的闲置过期时间, 0 表示不过期
+     */
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    /**
+     * 索引为空时用 SCAN 补建索引
+     * 用于索引上线前已经存在的会话, score 取当前时间
+     *
+     * @return 补建的会话数量
+     */
+    public long rebuildIndexIfEmpty() {
+        if (countAll() > 0) {
+            return 0;
+        }
+        long indexed = 0;
+        List<String> batch = new ArrayList<>(BATCH_SIZE);
+        try (Cursor<String> cursor = scan(LIST_KEY_PREFIX + "*")) {
+            while (cursor.hasNext()) {
+                batch.add(cursor.next().substring(LIST_KEY_PREFIX.length()));
+                if (batch.size() >= BATCH_SIZE) {
+                    indexed += addToIndex(batch);
+                    batch.clear();
+                }
+            }
+        }
+        if (!batch.isEmpty()) {
+            indexed += addToIndex(batch);
+        }
+        if (indexed > 0) {
+            logger.info("补建聊天记录索引, 数量: {}", indexed);
+        }
+        return indexed;
+    }
+
+    private Cursor<String> scan(String pattern) {
+        return chatMemoryRedisTemplate.scan(ScanOptions.scanOptions().match(pattern).count(BATCH_SIZE).build());
+    }
+
+    private long unlink(List<String> keys) {
+        Long deleted = chatMemoryRedisTemplate.unlink(keys);
+        return deleted != null ? deleted : 0;
+    }
+
+    private long addToIndex(List<String> conversationIds) {
+        double now = System.currentTimeMillis();
+        Set<TypedTuple<byte[]>> tuples = new HashSet<>();
+        for (String conversationId : conversationIds) {
+            tuples.add(TypedTuple.of(conversationId.getBytes(StandardCharsets.UTF_8), now));
+        }
+        Long added = chatMemoryRedisTemplate.opsForZSet().addIfAbsent(INDEX_KEY, tuples);
+        return added != null ? added : 0;
+    }
+
+    /**
+     * 某个会话的完整内容(不含系统消息的列表单独保存, 与 Redis List 一一对应)及其版本号, 不可变
+     * 既作为 getMessages 与 updateMessages 之间的快照, 也作为近端缓存的值
+     */
+    private record Snapshot(String memoryId, SystemMessage system, List<ChatMessage> messages, long version) {
+
+        List<ChatMessage> toList() {
+            List<ChatMessage> list = new ArrayList<>(messages.size() + 1);
+            if (system != null) {
+                list.add(system);
+            }
+            list.addAll(messages);
+            return list;
+        }
     }
 }
@@ -0,0 +1,25 @@
+package com.example.quickplan_ai.repository.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+
+/**
+ * 单条聊天消息的序列化格式
+ * 实现类注册为 Spring Bean 后即可通过 quickplan.chat.memory.codec 选用
+ * 已写入 Redis 的数据按头部中的 id 解码, 所以 id 一经使用不能修改
+ */
+public interface ChatMessageCodec {
+
+    /**
+     * 格式名称, 对应配置项 quickplan.chat.memory.codec
+     */
+    String name();
+
+    /**
+     * 写入数据头部的格式标识
+     */
+    byte id();
+
+    byte[] encode(ChatMessage message);
+
+    ChatMessage decode(byte[] data, int offset, int length);
+}
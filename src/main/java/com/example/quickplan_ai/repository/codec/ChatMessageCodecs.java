@@ -0,0 +1,150 @@
+package com.example.quickplan_ai.repository.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.ByteArrayOutputStream;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 聊天消息编解码入口
+ * 写入格式: [0xFE 魔数][格式版本][codec id][标志位][消息体]
+ * - 标志位 FLAG_DEFLATE: 消息体经过 Deflate 压缩
+ * - 不以魔数开头的数据视为旧版 JSON 字符串(首字节为 '{'), 直接按 JSON 解码
+ *
+ * 写入时使用 quickplan.chat.memory.codec 指定的格式, 读取时按头部自动识别
+ */
+@Component
+public class ChatMessageCodecs {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMessageCodecs.class);
+
+    private static final byte MAGIC = (byte) 0xFE;
+    private static final byte FORMAT_VERSION = 1;
+    private static final int HEADER_LENGTH = 4;
+
+    private static final byte FLAG_DEFLATE = 1;
+
+    private final ChatMessageCodec[] codecsById = new ChatMessageCodec[128];
+    private final ChatMessageCodec writer;
+    private final ChatMessageCodec legacy;
+    private final int compressThreshold;
+
+    public ChatMessageCodecs(List<ChatMessageCodec> codecs,
+                             @Value("${quickplan.chat.memory.codec:smile}") String codecName,
+                             @Value("${quickplan.chat.memory.compress-threshold:512}") int compressThreshold) {
+        ChatMessageCodec selected = null;
+        ChatMessageCodec json = null;
+        for (ChatMessageCodec codec : codecs) {
+            if (codec.id() <= 0 || codecsById[codec.id()] != null) {
+                throw new IllegalStateException("聊天消息 codec id 无效或重复: " + codec.id());
+            }
+            codecsById[codec.id()] = codec;
+            if (codec.name().equalsIgnoreCase(codecName)) {
+                selected = codec;
+            }
+            if (codec.id() == JsonChatMessageCodec.ID) {
+                json = codec;
+            }
+        }
+        if (selected == null) {
+            throw new IllegalStateException("未知的聊天消息序列化格式: " + codecName);
+        }
+        this.writer = selected;
+        this.legacy = json;
+        this.compressThreshold = compressThreshold;
+        logger.info("聊天记忆序列化格式: {}, 压缩阈值: {} 字节", selected.name(), compressThreshold);
+    }
+
+    public byte[] encode(ChatMessage message) {
+        byte[] body = writer.encode(message);
+        byte flags = 0;
+        if (compressThreshold > 0 && body.length > compressThreshold) {
+            byte[] compressed = deflate(body);
+            if (compressed.length < body.length) {
+                body = compressed;
+                flags |= FLAG_DEFLATE;
+            }
+        }
+
+        byte[] data = new byte[HEADER_LENGTH + body.length];
+        data[0] = MAGIC;
+        data[1] = FORMAT_VERSION;
+        data[2] = writer.id();
+        data[3] = flags;
+        System.arraycopy(body, 0, data, HEADER_LENGTH, body.length);
+        return data;
+    }
+
+    public ChatMessage decode(byte[] data) {
+        if (data.length == 0 || data[0] != MAGIC) {
+            return legacy.decode(data, 0, data.length);
+        }
+        if (data.length < HEADER_LENGTH || data[1] != FORMAT_VERSION) {
+            throw new IllegalStateException("不支持的聊天消息格式版本: " + (data.length > 1 ? data[1] : -1));
+        }
+        ChatMessageCodec codec = data[2] > 0 ? codecsById[data[2]] : null;
+        if (codec == null) {
+            throw new IllegalStateException("未知的聊天消息 codec id: " + data[2]);
+        }
+        if ((data[3] & FLAG_DEFLATE) != 0) {
+            byte[] body = inflate(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+            return codec.decode(body, 0, body.length);
+        }
+        return codec.decode(data, HEADER_LENGTH, data.length - HEADER_LENGTH);
+    }
+
+    /**
+     * 数据是否已经是当前写入格式, 否则应在下次写入时整体重写
+     */
+    public boolean isCurrent(byte[] data) {
+        return data.length >= HEADER_LENGTH
+                && data[0] == MAGIC
+                && data[1] == FORMAT_VERSION
+                && data[2] == writer.id();
+    }
+
+    private static byte[] deflate(byte[] input) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try {
+            deflater.setInput(input);
+            deflater.finish();
+            ByteArrayOutputStream out = new ByteArrayOutputStream(input.length);
+            byte[] buffer = new byte[Math.max(64, input.length)];
+            while (!deflater.finished()) {
+                int n = deflater.deflate(buffer);
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] inflate(byte[] input, int offset, int length) {
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(input, offset, length);
+            ByteArrayOutputStream out = new ByteArrayOutputStream(length * 3);
+            byte[] buffer = new byte[Math.max(256, length * 3)];
+            while (!inflater.finished()) {
+                int n = inflater.inflate(buffer);
+                if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new IllegalStateException("压缩数据不完整");
+                }
+                out.write(buffer, 0, n);
+            }
+            return out.toByteArray();
+        } catch (DataFormatException e) {
+            throw new IllegalStateException("解压聊天消息失败", e);
+        } finally {
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.example.quickplan_ai.repository.codec;
+
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * LangChain4j 原生 JSON 格式(UTF-8)
+ */
+@Component
+public class JsonChatMessageCodec implements ChatMessageCodec {
+
+    public static final byte ID = 1;
+
+    @Override
+    public String name() {
+        return "json";
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(ChatMessage message) {
+        return ChatMessageSerializer.messageToJson(message).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public ChatMessage decode(byte[] data, int offset, int length) {
+        return ChatMessageDeserializer.messageFromJson(new String(data, offset, length, StandardCharsets.UTF_8));
+    }
+}
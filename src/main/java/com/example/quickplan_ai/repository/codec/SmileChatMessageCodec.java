@@ -0,0 +1,77 @@
+package com.example.quickplan_ai.repository.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileGenerator;
+import com.fasterxml.jackson.dataformat.smile.SmileParser;
+import dev.langchain4j.data.message.ChatMessage;
+import dev.langchain4j.data.message.ChatMessageDeserializer;
+import dev.langchain4j.data.message.ChatMessageSerializer;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+
+/**
+ * Jackson Smile 二进制格式
+ * LangChain4j 的消息序列化只提供 JSON 接口, 这里在 JSON 与 Smile 之间做流式转码, 不构建中间树
+ * 字段名、类型标记、数字改为二进制表示, 文本内容保持 UTF-8
+ */
+@Component
+public class SmileChatMessageCodec implements ChatMessageCodec {
+
+    public static final byte ID = 2;
+
+    private static final JsonFactory jsonFactory = new JsonFactory();
+
+    /**
+     * 外层已有格式头, 不再写 Smile 自带的 4 字节头
+     */
+    private static final SmileFactory smileFactory = SmileFactory.builder()
+            .disable(SmileGenerator.Feature.WRITE_HEADER)
+            .disable(SmileParser.Feature.REQUIRE_HEADER)
+            .build();
+
+    @Override
+    public String name() {
+        return "smile";
+    }
+
+    @Override
+    public byte id() {
+        return ID;
+    }
+
+    @Override
+    public byte[] encode(ChatMessage message) {
+        String json = ChatMessageSerializer.messageToJson(message);
+        try (ByteArrayBuilder out = new ByteArrayBuilder(json.length());
+             JsonParser parser = jsonFactory.createParser(json)) {
+            try (JsonGenerator generator = smileFactory.createGenerator(out)) {
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+            return out.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Smile 编码失败", e);
+        }
+    }
+
+    @Override
+    public ChatMessage decode(byte[] data, int offset, int length) {
+        StringWriter out = new StringWriter(length * 2);
+        try (JsonParser parser = smileFactory.createParser(data, offset, length)) {
+            try (JsonGenerator generator = jsonFactory.createGenerator(out)) {
+                parser.nextToken();
+                generator.copyCurrentStructure(parser);
+            }
+            return ChatMessageDeserializer.messageFromJson(out.toString());
+        } catch (IOException e) {
+            throw new UncheckedIOException("Smile 解码失败", e);
+        }
+    }
+}
@@ -0,0 +1,61 @@
+package com.example.quickplan_ai.task;
+
+import com.example.quickplan_ai.repository.RedisChatMemoryRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 聊天记忆维护任务
+ * - 启动后检查会话索引, 为索引上线前的存量会话补建索引
+ * - 定时淘汰长时间未写入的会话记忆(消息记录仍保存在数据库中)
+ *   开启 TTL 时, 已经过期的会话也在这里移出索引
+ * 多节点同时执行是幂等的
+ */
+@Component
+public class ChatMemoryMaintenanceTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatMemoryMaintenanceTask.class);
+
+    @Autowired
+    private RedisChatMemoryRepository redisChatMemoryRepository;
+
+    @Value("${quickplan.chat.memory.idle-eviction.enabled:true}")
+    private boolean idleEvictionEnabled;
+
+    @Value("${quickplan.chat.memory.idle-eviction.idle-timeout:30d}")
+    private Duration idleTimeout;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void rebuildIndex() {
+        try {
+            redisChatMemoryRepository.rebuildIndexIfEmpty();
+        } catch (Exception e) {
+            logger.error("补建聊天记录索引失败: {}", e.getMessage(), e);
+        }
+    }
+
+    @Scheduled(cron = "${quickplan.chat.memory.idle-eviction.cron:0 30 3 * * *}")
+    public void evictIdleConversations() {
+        if (!idleEvictionEnabled) {
+            return;
+        }
+        Duration timeout = idleTimeout;
+        Duration ttl = redisChatMemoryRepository.getTtl();
+        if (!ttl.isZero() && ttl.compareTo(timeout) < 0) {
+            timeout = ttl;
+        }
+        try {
+            redisChatMemoryRepository.evictIdle(timeout);
+        } catch (Exception e) {
+            logger.error("淘汰闲置聊天记录失败: {}", e.getMessage(), e);
+        }
+    }
+}
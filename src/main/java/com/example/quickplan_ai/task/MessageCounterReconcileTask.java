@@ -0,0 +1,91 @@
+package com.example.quickplan_ai.task;
+
+import com.example.quickplan_ai.dto.ConversationCounterDrift;
+import com.example.quickplan_ai.mapper.ConversationMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * 会话消息计数校正任务
+ * conversation.message_count 在写入和删除消息时同步维护, 直接改库、逐条删除消息等绕过服务层的操作会让计数偏离,
+ * 这里定期按会话ID分批扫描, 与 conversation_message 的实际数量比对并修正
+ * - 每批只对比一小段ID范围, 不做全表 COUNT
+ * - 修正时比较并设置, 检查之后计数又变化的会话留给下一次
+ * 多节点同时执行是幂等的
+ */
+@Component
+public class MessageCounterReconcileTask {
+
+    private static final Logger logger = LoggerFactory.getLogger(MessageCounterReconcileTask.class);
+
+    @Autowired
+    private ConversationMapper conversationMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${quickplan.message.counter-reconcile.enabled:true}")
+    private boolean enabled;
+
+    @Value("${quickplan.message.counter-reconcile.batch-size:500}")
+    private int batchSize;
+
+    private Counter repaired;
+
+    @PostConstruct
+    public void init() {
+        repaired = Counter.builder("quickplan.message.counter.repaired")
+                .description("校正过消息计数的会话数").register(meterRegistry);
+    }
+
+    @Scheduled(cron = "${quickplan.message.counter-reconcile.cron:0 0 4 * * *}")
+    public void reconcile() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            reconcileAll();
+        } catch (Exception e) {
+            logger.error("校正会话消息计数失败: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 扫描全部会话, 返回修正的会话数
+     */
+    public int reconcileAll() {
+        long start = System.currentTimeMillis();
+        String afterId = "";
+        int scanned = 0;
+        int fixed = 0;
+        while (true) {
+            List<String> ids = conversationMapper.selectIdsAfter(afterId, batchSize);
+            if (ids.isEmpty()) {
+                break;
+            }
+            String toId = ids.get(ids.size() - 1);
+            for (ConversationCounterDrift drift : conversationMapper.selectCounterDrift(afterId, toId)) {
+                if (conversationMapper.repairMessageCount(drift) > 0) {
+                    fixed++;
+                    logger.info("校正会话消息计数, conversationId: {}, {} -> {}",
+                            drift.getId(), drift.getStoredCount(), drift.getActualCount());
+                }
+            }
+            scanned += ids.size();
+            afterId = toId;
+        }
+        repaired.increment(fixed);
+        logger.info("会话消息计数校正完成, 扫描 {} 个会话, 修正 {} 个, 耗时 {} ms",
+                scanned, fixed, System.currentTimeMillis() - start);
+        return fixed;
+    }
+}
@@ -0,0 +1,101 @@
+package com.example.quickplan_ai.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToLongFunction;
+
+/**
+ * 不可变的区间树, 用于查找与给定时间段重叠的元素
+ * 元素按开始时间排序存放在数组中, 数组本身即一棵隐式的平衡二叉树(区间 [lo, hi) 的根为中点),
+ * 每个节点额外记录子树中最大的结束时间:
+ * - 子树最大结束时间不晚于查询开始时, 整棵子树都不可能重叠, 直接跳过
+ * - 节点开始时间不早于查询结束时, 其右子树开始时间更晚, 直接跳过
+ * 日程之间很少大面积重叠, 查询访问的节点数接近 O(log n + k)(k 为命中数), 构建为 O(n log n)
+ *
+ * 区间为左闭右开 [start, end), 首尾相接(一个结束时另一个开始)不算重叠
+ *
+ * @param <T> 元素类型
+ */
+public final class IntervalTree<T> {
+
+    private final Object[] items;
+    private final long[] starts;
+    private final long[] ends;
+    private final long[] maxEnds;
+
+    private IntervalTree(Object[] items, long[] starts, long[] ends) {
+        this.items = items;
+        this.starts = starts;
+        this.ends = ends;
+        this.maxEnds = new long[items.length];
+        buildMaxEnds(0, items.length);
+    }
+
+    /**
+     * 构建区间树
+     *
+     * @param elements 元素, 不要求有序
+     * @param start    元素的开始位置
+     * @param end      元素的结束位置(不含), 应不小于开始位置
+     */
+    public static <T> IntervalTree<T> of(List<T> elements, ToLongFunction<? super T> start,
+                                         ToLongFunction<? super T> end) {
+        Object[] sorted = elements.stream()
+                .sorted(Comparator.comparingLong(start))
+                .toArray();
+        long[] starts = new long[sorted.length];
+        long[] ends = new long[sorted.length];
+        for (int i = 0; i < sorted.length; i++) {
+            @SuppressWarnings("unchecked")
+            T element = (T) sorted[i];
+            starts[i] = start.applyAsLong(element);
+            ends[i] = end.applyAsLong(element);
+        }
+        return new IntervalTree<>(sorted, starts, ends);
+    }
+
+    public int size() {
+        return items.length;
+    }
+
+    /**
+     * 查找与 [from, to) 重叠的元素, 按开始位置排序
+     */
+    public List<T> overlapping(long from, long to) {
+        List<T> result = new ArrayList<>();
+        if (from < to) {
+            collect(0, items.length, from, to, result);
+        }
+        return result;
+    }
+
+    private long buildMaxEnds(int lo, int hi) {
+        if (lo >= hi) {
+            return Long.MIN_VALUE;
+        }
+        int mid = (lo + hi) >>> 1;
+        long max = Math.max(ends[mid], Math.max(buildMaxEnds(lo, mid), buildMaxEnds(mid + 1, hi)));
+        maxEnds[mid] = max;
+        return max;
+    }
+
+    @SuppressWarnings("unchecked")
+    private void collect(int lo, int hi, long from, long to, List<T> result) {
+        if (lo >= hi) {
+            return;
+        }
+        int mid = (lo + hi) >>> 1;
+        if (maxEnds[mid] <= from) {
+            return;
+        }
+        collect(lo, mid, from, to, result);
+        if (starts[mid] >= to) {
+            return;
+        }
+        if (ends[mid] > from) {
+            result.add((T) items[mid]);
+        }
+        collect(mid + 1, hi, from, to, result);
+    }
+}
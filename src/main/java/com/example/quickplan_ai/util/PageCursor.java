@@ -0,0 +1,53 @@
+package com.example.quickplan_ai.util;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * 游标分页的位置: 上一页最后一行的 (时间, id)
+ * 对前端是不透明的字符串(Base64URL 编码的 "时间|id"), 原样传回即可
+ *
+ * 时间相同的行靠 id 区分先后, 所以同一秒内写入的多条消息翻页时不会重复或遗漏
+ */
+public record PageCursor(LocalDateTime time, String id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = time + String.valueOf(SEPARATOR) + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解析前端传回的游标
+     *
+     * @throws IllegalArgumentException 游标格式不正确
+     */
+    public static PageCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int index = raw.indexOf(SEPARATOR);
+            if (index <= 0 || index == raw.length() - 1) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+            return new PageCursor(LocalDateTime.parse(raw.substring(0, index)), raw.substring(index + 1));
+        } catch (DateTimeParseException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+
+    /**
+     * id 为数字主键时使用
+     *
+     * @throws IllegalArgumentException id 不是数字
+     */
+    public long numericId() {
+        try {
+            return Long.parseLong(id);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("无效的分页游标", e);
+        }
+    }
+}
@@ -0,0 +1,297 @@
+package com.example.quickplan_ai.util;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * 重复规则, 支持 RFC 5545 RRULE 的一个子集:
+ * - FREQ=DAILY|WEEKLY|MONTHLY (必填)
+ * - INTERVAL=n, 默认 1
+ * - BYDAY=MO,WE,FR, 仅 WEEKLY 使用, 默认为开始日期的星期
+ * - BYMONTHDAY=1,15, 仅 MONTHLY 使用, 默认为开始日期的日; 当月没有的日期(如 2 月 30 日)跳过
+ * - UNTIL=yyyyMMdd(含当天) 或 COUNT=n, 二者最多一个, 都没有时无限重复
+ * 例如: FREQ=WEEKLY;INTERVAL=2;BYDAY=TU,TH;COUNT=10
+ *
+ * 展开是惰性的: {@link #between} 直接跳到查询窗口所在的周期, 不从开始日期逐个生成;
+ * 只有带 COUNT 的规则需要从头计数, 其次数本身有上限
+ */
+public final class RecurrenceRule {
+
+    public enum Frequency {
+        DAILY, WEEKLY, MONTHLY
+    }
+
+    /**
+     * COUNT 的上限, 防止一条规则展开出过多实例
+     */
+    public static final int MAX_COUNT = 1000;
+
+    private static final DateTimeFormatter UNTIL_FORMAT = DateTimeFormatter.BASIC_ISO_DATE;
+
+    private static final String[] DAY_CODES = {"MO", "TU", "WE", "TH", "FR", "SA", "SU"};
+
+    private final Frequency frequency;
+    private final int interval;
+    private final Set<DayOfWeek> byDay;
+    private final Set<Integer> byMonthDay;
+    private final LocalDate until;
+    private final Integer count;
+
+    private RecurrenceRule(Frequency frequency, int interval, Set<DayOfWeek> byDay, Set<Integer> byMonthDay,
+                           LocalDate until, Integer count) {
+        this.frequency = frequency;
+        this.interval = interval;
+        this.byDay = byDay;
+        this.byMonthDay = byMonthDay;
+        this.until = until;
+        this.count = count;
+    }
+
+    /**
+     * 解析规则文本, 可以带 "RRULE:" 前缀
+     *
+     * @throws IllegalArgumentException 格式不正确或使用了不支持的部分
+     */
+    public static RecurrenceRule parse(String text) {
+        if (text == null || text.isBlank()) {
+            throw new IllegalArgumentException("重复规则不能为空");
+        }
+        String rule = text.strip().toUpperCase(Locale.ROOT);
+        if (rule.startsWith("RRULE:")) {
+            rule = rule.substring("RRULE:".length());
+        }
+
+        Frequency frequency = null;
+        int interval = 1;
+        Set<DayOfWeek> byDay = new TreeSet<>();
+        Set<Integer> byMonthDay = new TreeSet<>();
+        LocalDate until = null;
+        Integer count = null;
+
+        for (String part : rule.split(";")) {
+            if (part.isBlank()) {
+                continue;
+            }
+            int eq = part.indexOf('=');
+            if (eq <= 0) {
+                throw new IllegalArgumentException("无法识别的重复规则: " + part);
+            }
+            String key = part.substring(0, eq);
+            String value = part.substring(eq + 1);
+            try {
+                switch (key) {
+                    case "FREQ" -> frequency = frequencyOf(value);
+                    case "INTERVAL" -> interval = Integer.parseInt(value);
+                    case "BYDAY" -> {
+                        for (String code : value.split(",")) {
+                            byDay.add(dayOf(code));
+                        }
+                    }
+                    case "BYMONTHDAY" -> {
+                        for (String day : value.split(",")) {
+                            int d = Integer.parseInt(day);
+                            if (d < 1 || d > 31) {
+                                throw new IllegalArgumentException("BYMONTHDAY 只支持 1-31: " + day);
+                            }
+                            byMonthDay.add(d);
+                        }
+                    }
+                    case "UNTIL" -> until = LocalDate.parse(value.length() > 8 ? value.substring(0, 8) : value,
+                            UNTIL_FORMAT);
+                    case "COUNT" -> count = Integer.parseInt(value);
+                    default -> throw new IllegalArgumentException("不支持的重复规则: " + key);
+                }
+            } catch (NumberFormatException | DateTimeParseException e) {
+                throw new IllegalArgumentException("重复规则格式错误: " + part, e);
+            }
+        }
+
+        if (frequency == null) {
+            throw new IllegalArgumentException("重复规则缺少 FREQ");
+        }
+        if (interval < 1) {
+            throw new IllegalArgumentException("INTERVAL 必须大于 0");
+        }
+        if (until != null && count != null) {
+            throw new IllegalArgumentException("UNTIL 和 COUNT 不能同时使用");
+        }
+        if (count != null && (count < 1 || count > MAX_COUNT)) {
+            throw new IllegalArgumentException("COUNT 必须在 1-" + MAX_COUNT + " 之间");
+        }
+        if (!byDay.isEmpty() && frequency != Frequency.WEEKLY) {
+            throw new IllegalArgumentException("BYDAY 只能用于 FREQ=WEEKLY");
+        }
+        if (!byMonthDay.isEmpty() && frequency != Frequency.MONTHLY) {
+            throw new IllegalArgumentException("BYMONTHDAY 只能用于 FREQ=MONTHLY");
+        }
+        return new RecurrenceRule(frequency, interval, byDay, byMonthDay, until, count);
+    }
+
+    /**
+     * 规范化后的规则文本, 用于入库
+     */
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder("FREQ=").append(frequency);
+        if (interval != 1) {
+            sb.append(";INTERVAL=").append(interval);
+        }
+        if (!byDay.isEmpty()) {
+            sb.append(";BYDAY=").append(String.join(",", byDay.stream()
+                    .map(d -> DAY_CODES[d.getValue() - 1]).toList()));
+        }
+        if (!byMonthDay.isEmpty()) {
+            sb.append(";BYMONTHDAY=").append(String.join(",", byMonthDay.stream().map(String::valueOf).toList()));
+        }
+        if (until != null) {
+            sb.append(";UNTIL=").append(until.format(UNTIL_FORMAT));
+        }
+        if (count != null) {
+            sb.append(";COUNT=").append(count);
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 最后一次重复的日期, 无限重复时返回 null
+     * 入库时保存为 end_date, 查询时据此过滤掉已经结束的系列
+     */
+    public LocalDate lastDate(LocalDate start) {
+        if (until != null) {
+            return until;
+        }
+        if (count == null) {
+            return null;
+        }
+        List<LocalDate> all = expand(start, start, LocalDate.MAX, Set.of());
+        return all.isEmpty() ? start : all.get(all.size() - 1);
+    }
+
+    /**
+     * 展开 [from, to] 范围内的重复日期(含首尾), 按日期排序
+     *
+     * @param start     系列的开始日期, 也是第一次重复的最早日期
+     * @param exdates   被单独取消的日期
+     */
+    public List<LocalDate> between(LocalDate start, LocalDate from, LocalDate to, Set<LocalDate> exdates) {
+        LocalDate windowStart = from.isBefore(start) ? start : from;
+        LocalDate windowEnd = until != null && until.isBefore(to) ? until : to;
+        if (windowEnd.isBefore(windowStart)) {
+            return List.of();
+        }
+        return expand(start, windowStart, windowEnd, exdates);
+    }
+
+    private List<LocalDate> expand(LocalDate start, LocalDate from, LocalDate to, Set<LocalDate> exdates) {
+        List<LocalDate> dates = new ArrayList<>();
+        LocalDate periodStart = periodStart(start);
+        // 没有 COUNT 时直接跳到 from 所在的周期; 有 COUNT 时需要从第一个周期开始计数
+        long period = 0;
+        if (count == null) {
+            long periodsToFrom = periodsBetween(periodStart, periodStart(from));
+            period = Math.max(0, periodsToFrom / interval * interval);
+        }
+        int produced = 0;
+        while (true) {
+            LocalDate currentPeriod = addPeriods(periodStart, period);
+            if (currentPeriod.isAfter(to)) {
+                break;
+            }
+            for (LocalDate date : candidates(currentPeriod, start)) {
+                if (date.isBefore(start)) {
+                    continue;
+                }
+                if (date.isAfter(to) || (count != null && produced >= count)) {
+                    return dates;
+                }
+                produced++;
+                // COUNT 按 RFC 5545 包含被取消的日期
+                if (!date.isBefore(from) && !exdates.contains(date)) {
+                    dates.add(date);
+                }
+            }
+            period += interval;
+        }
+        return dates;
+    }
+
+    /**
+     * 一个周期内的候选日期, 按日期排序
+     */
+    private List<LocalDate> candidates(LocalDate periodStart, LocalDate start) {
+        return switch (frequency) {
+            case DAILY -> List.of(periodStart);
+            case WEEKLY -> {
+                Set<DayOfWeek> days = byDay.isEmpty() ? Set.of(start.getDayOfWeek()) : byDay;
+                List<LocalDate> result = new ArrayList<>(days.size());
+                for (DayOfWeek day : new TreeSet<>(days)) {
+                    result.add(periodStart.plusDays(day.getValue() - 1));
+                }
+                yield result;
+            }
+            case MONTHLY -> {
+                Set<Integer> days = byMonthDay.isEmpty() ? Set.of(start.getDayOfMonth()) : byMonthDay;
+                YearMonth month = YearMonth.from(periodStart);
+                List<LocalDate> result = new ArrayList<>(days.size());
+                for (int day : new TreeSet<>(days)) {
+                    if (month.isValidDay(day)) {
+                        result.add(month.atDay(day));
+                    }
+                }
+                yield result;
+            }
+        };
+    }
+
+    private LocalDate periodStart(LocalDate date) {
+        return switch (frequency) {
+            case DAILY -> date;
+            case WEEKLY -> date.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            case MONTHLY -> date.withDayOfMonth(1);
+        };
+    }
+
+    private long periodsBetween(LocalDate from, LocalDate to) {
+        return switch (frequency) {
+            case DAILY -> ChronoUnit.DAYS.between(from, to);
+            case WEEKLY -> ChronoUnit.WEEKS.between(from, to);
+            case MONTHLY -> ChronoUnit.MONTHS.between(from, to);
+        };
+    }
+
+    private LocalDate addPeriods(LocalDate periodStart, long periods) {
+        return switch (frequency) {
+            case DAILY -> periodStart.plusDays(periods);
+            case WEEKLY -> periodStart.plusWeeks(periods);
+            case MONTHLY -> periodStart.plusMonths(periods);
+        };
+    }
+
+    private static Frequency frequencyOf(String value) {
+        for (Frequency frequency : Frequency.values()) {
+            if (frequency.name().equals(value)) {
+                return frequency;
+            }
+        }
+        throw new IllegalArgumentException("FREQ 只支持 DAILY,WEEKLY,MONTHLY: " + value);
+    }
+
+    private static DayOfWeek dayOf(String code) {
+        for (int i = 0; i < DAY_CODES.length; i++) {
+            if (DAY_CODES[i].equals(code.strip())) {
+                return DayOfWeek.of(i + 1);
+            }
+        }
+        throw new IllegalArgumentException("BYDAY 只支持 MO,TU,WE,TH,FR,SA,SU: " + code);
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.quickplan_ai.util;
+
+import java.time.DateTimeException;
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.temporal.TemporalAdjusters;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 中文日期词解析工具
+ * OCR 识别和对话意图识别共用同一套词表:
+ * - 相对日期: 今天/明天/后天/大后天/昨天/前天, 以及 明早/明晚/今早/今晚
+ * - 星期: 周三、星期五、下周一、这礼拜天
+ * - 具体日期: 2025-10-27、2025/10/27、2025年10月27日、10月27号
+ */
+public final class RelativeDateParser {
+
+    /**
+     * 日期表达式, 长词在前, 保证"大后天"不会被识别成"后天"
+     */
+    public static final Pattern DATE_EXPRESSION = Pattern.compile(
+            "大后天|后天|明天|今天|昨天|前天|明早|明晚|今早|今晚|"
+                    + "(?:本|这|下|上)?(?:周|星期|礼拜)[一二三四五六日天末]|"
+                    + "\\d{4}[-/年.]\\d{1,2}[-/月.]\\d{1,2}[日号]?|\\d{1,2}月\\d{1,2}[日号]");
+
+    private static final Pattern WEEKDAY = Pattern.compile("(本|这|下|上)?(?:周|星期|礼拜)([一二三四五六日天末])");
+    private static final Pattern FULL_DATE = Pattern.compile("(\\d{4})[-/年.](\\d{1,2})[-/月.](\\d{1,2})[日号]?");
+    private static final Pattern MONTH_DAY = Pattern.compile("(\\d{1,2})月(\\d{1,2})[日号]");
+
+    private static final String WEEKDAY_CHARS = "一二三四五六日";
+
+    private RelativeDateParser() {
+    }
+
+    /**
+     * 相对日期词对应的天数偏移, 不是相对日期词(如"下午")时返回 0
+     */
+    public static int dayOffset(String word) {
+        if (word == null) {
+            return 0;
+        }
+        return switch (word) {
+            case "明天", "明早", "明晚" -> 1;
+            case "后天" -> 2;
+            case "大后天" -> 3;
+            case "昨天" -> -1;
+            case "前天" -> -2;
+            default -> 0;
+        };
+    }
+
+    /**
+     * 找出文本中的全部日期表达式并换算成日期, 无法换算的表达式(如"2025-13-40")跳过
+     *
+     * @param today 换算相对日期的基准日期
+     * @return 按出现顺序排列的日期, 可能包含重复
+     */
+    public static List<LocalDate> findDates(String text, LocalDate today) {
+        List<LocalDate> dates = new ArrayList<>();
+        if (text == null || text.isEmpty()) {
+            return dates;
+        }
+        Matcher matcher = DATE_EXPRESSION.matcher(text);
+        while (matcher.find()) {
+            LocalDate date = resolve(matcher.group(), today);
+            if (date != null) {
+                dates.add(date);
+            }
+        }
+        return dates;
+    }
+
+    /**
+     * 换算单个日期表达式
+     *
+     * @return 对应的日期, 无法换算时返回 null
+     */
+    public static LocalDate resolve(String expression, LocalDate today) {
+        if (expression == null || expression.isEmpty()) {
+            return null;
+        }
+        try {
+            Matcher full = FULL_DATE.matcher(expression);
+            if (full.matches()) {
+                return LocalDate.of(Integer.parseInt(full.group(1)),
+                        Integer.parseInt(full.group(2)), Integer.parseInt(full.group(3)));
+            }
+            Matcher monthDay = MONTH_DAY.matcher(expression);
+            if (monthDay.matches()) {
+                return LocalDate.of(today.getYear(),
+                        Integer.parseInt(monthDay.group(1)), Integer.parseInt(monthDay.group(2)));
+            }
+        } catch (DateTimeException e) {
+            return null;
+        }
+
+        Matcher weekday = WEEKDAY.matcher(expression);
+        if (weekday.matches()) {
+            // "周末"按周六处理
+            String day = weekday.group(2);
+            int index = "末".equals(day) ? 5 : "天".equals(day) ? 6 : WEEKDAY_CHARS.indexOf(day);
+            LocalDate monday = today.with(TemporalAdjusters.previousOrSame(DayOfWeek.MONDAY));
+            if ("下".equals(weekday.group(1))) {
+                monday = monday.plusWeeks(1);
+            } else if ("上".equals(weekday.group(1))) {
+                monday = monday.minusWeeks(1);
+            }
+            return monday.plusDays(index);
+        }
+
+        if ("今天".equals(expression) || "今早".equals(expression) || "今晚".equals(expression)) {
+            return today;
+        }
+        int offset = dayOffset(expression);
+        return offset == 0 ? null : today.plusDays(offset);
+    }
+}
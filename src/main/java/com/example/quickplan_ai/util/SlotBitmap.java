@@ -0,0 +1,103 @@
+package com.example.quickplan_ai.util;
+
+import java.time.LocalTime;
+
+/**
+ * 按 15 分钟划分的时间槽位图
+ * 一天 96 个槽, 用 2 个 long 表示, 第 i 位表示第 i 个槽(00:00 起第 i 个 15 分钟), 第 2 个 long 的高 32 位不用;
+ * 多天连续排列, 第 d 天占用第 2d、2d+1 个 long, 第 d 天第 i 个槽的位序号为 d * 128 + i。
+ * 多个用户的位图按 long 逐字做 AND/OR 合并
+ */
+public final class SlotBitmap {
+
+    public static final int SLOT_MINUTES = 15;
+
+    public static final int SLOTS_PER_DAY = 24 * 60 / SLOT_MINUTES;
+
+    public static final int WORDS_PER_DAY = (SLOTS_PER_DAY + Long.SIZE - 1) / Long.SIZE;
+
+    public static final int BITS_PER_DAY = WORDS_PER_DAY * Long.SIZE;
+
+    private SlotBitmap() {
+    }
+
+    /**
+     * 把位 [fromSlot, toSlot) 置为 1, 按字批量设置
+     */
+    public static void mark(long[] words, int fromSlot, int toSlot) {
+        int limit = words.length * Long.SIZE;
+        int from = Math.max(fromSlot, 0);
+        int to = Math.min(toSlot, limit);
+        if (from >= to) {
+            return;
+        }
+        for (int w = from >>> 6; w <= (to - 1) >>> 6; w++) {
+            int base = w << 6;
+            int lo = Math.max(from, base) - base;
+            int hi = Math.min(to, base + Long.SIZE) - base;
+            long upper = hi == Long.SIZE ? -1L : (1L << hi) - 1;
+            words[w] |= upper & (-1L << lo);
+        }
+    }
+
+    /**
+     * target |= other
+     */
+    public static void or(long[] target, long[] other) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] |= other[i];
+        }
+    }
+
+    /**
+     * target &= other
+     */
+    public static void and(long[] target, long[] other) {
+        for (int i = 0; i < target.length; i++) {
+            target[i] &= other[i];
+        }
+    }
+
+    /**
+     * target &= ~other, other 与 target 的第 targetOffset 个 long 对齐, 用于从空闲时间中去掉占用时间
+     */
+    public static void andNot(long[] target, int targetOffset, long[] other) {
+        for (int i = 0; i < other.length; i++) {
+            target[targetOffset + i] &= ~other[i];
+        }
+    }
+
+    /**
+     * 时间所在的槽, 向下取整
+     */
+    public static int slotOf(LocalTime time) {
+        return (time.getHour() * 60 + time.getMinute()) / SLOT_MINUTES;
+    }
+
+    /**
+     * 分钟数对应的槽, 向上取整, 用于占用时间的结束位置
+     */
+    public static int slotCeil(int minutes) {
+        return (minutes + SLOT_MINUTES - 1) / SLOT_MINUTES;
+    }
+
+    /**
+     * 槽的开始时间, SLOTS_PER_DAY 对应当天结束, 返回 LocalTime.MAX
+     */
+    public static LocalTime timeOf(int slot) {
+        return slot >= SLOTS_PER_DAY ? LocalTime.MAX : LocalTime.ofSecondOfDay((long) slot * SLOT_MINUTES * 60);
+    }
+
+    /**
+     * 一天的位图编码为 24 位十六进制, 高位在前(第一个字符对应一天中最后 4 个槽)
+     */
+    public static String toHex(long[] words, int offset) {
+        StringBuilder sb = new StringBuilder(WORDS_PER_DAY * 16);
+        for (int i = offset + WORDS_PER_DAY - 1; i >= offset; i--) {
+            int digits = i == offset + WORDS_PER_DAY - 1 ? (SLOTS_PER_DAY - Long.SIZE) / 4 : 16;
+            String hex = Long.toHexString(words[i]);
+            sb.append("0".repeat(Math.max(0, digits - hex.length()))).append(hex);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,271 @@
+package com.example.quickplan_ai.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * 文本工具调用解析器
+ * Qwen2.5 会把工具调用以 JSON 文本的形式写在回复里, 例如:
+ * {"name": "addSchedule", "arguments": {"title": "开会", ...}}
+ *
+ * 解析方式:
+ * - 单遍扫描文本, 记录大括号深度和字符串状态, 每闭合一个顶层 {...} 就得到一个候选对象
+ * - 只有同时包含 "name" 和 "arguments" 的候选才交给 Jackson 解析, 没有正则回溯
+ * - 兼容模型漏掉外层大括号的写法: "name": "xxx", "arguments": {...}
+ * - 一条回复中可以包含多个工具调用
+ * - 通过 {@link Scanner} 可以边接收 token 边扫描, 流式结束时工具调用已经解析完成
+ */
+@Component
+public class ToolCallParser {
+
+    private static final ObjectMapper objectMapper = new ObjectMapper();
+
+    private static final String NAME_KEY = "\"name\"";
+    private static final String ARGUMENTS_KEY = "\"arguments\"";
+
+    /**
+     * 缺少外层大括号时, "name" 到 arguments 的 '{' 之间最多允许的字符数;
+     * 超过后不再把它当作工具调用的开头, 避免正文里出现 "name" 后缓冲区一直保留到流结束
+     */
+    static final int MAX_LOOSE_PREFIX = 256;
+
+    /**
+     * 解析出的工具调用
+     *
+     * @param name      工具名称
+     * @param arguments 工具参数(JSON对象)
+     */
+    public record ToolCall(String name, JsonNode arguments) {
+    }
+
+    /**
+     * 解析完整文本中的所有工具调用
+     */
+    public List<ToolCall> parse(CharSequence text) {
+        if (text == null || text.isEmpty()) {
+            return List.of();
+        }
+        Scanner scanner = newScanner();
+        scanner.feed(text);
+        return scanner.finish();
+    }
+
+    /**
+     * 创建增量扫描器, 用于流式输出
+     */
+    public Scanner newScanner() {
+        return new Scanner();
+    }
+
+    /**
+     * 增量扫描器(非线程安全, 每个流单独创建)
+     */
+    public static class Scanner {
+
+        private final StringBuilder buffer = new StringBuilder();
+        private final List<ToolCall> toolCalls = new ArrayList<>();
+
+        /** 下一个待扫描字符的位置 */
+        private int pos;
+        /** 当前大括号深度 */
+        private int depth;
+        private boolean inString;
+        private boolean escaped;
+        /** 当前顶层对象的起始位置 */
+        private int objectStart = -1;
+        /** 顶层出现的 "name" 的位置, 用于兼容缺少外层大括号的写法 */
+        private int looseNameStart = -1;
+        private boolean finished;
+
+        /**
+         * 追加一段文本并继续扫描
+         *
+         * @return 本次新解析出的工具调用
+         */
+        public List<ToolCall> feed(CharSequence chunk) {
+            if (finished) {
+                throw new IllegalStateException("扫描已结束");
+            }
+            int before = toolCalls.size();
+            if (chunk != null) {
+                buffer.append(chunk);
+                scan();
+            }
+            return List.copyOf(toolCalls.subList(before, toolCalls.size()));
+        }
+
+        /**
+         * 结束扫描, 返回全部工具调用
+         */
+        public List<ToolCall> finish() {
+            if (!finished) {
+                finished = true;
+                scan();
+            }
+            return List.copyOf(toolCalls);
+        }
+
+        /**
+         * 缓冲区中尚未丢弃的字符数
+         */
+        int bufferedLength() {
+            return buffer.length();
+        }
+
+        /**
+         * 当前是否处于未闭合的 JSON 对象中
+         */
+        public boolean isInsideObject() {
+            return depth > 0;
+        }
+
+        private void scan() {
+            int length = buffer.length();
+            for (; pos < length; pos++) {
+                char c = buffer.charAt(pos);
+
+                if (inString) {
+                    if (escaped) {
+                        escaped = false;
+                    } else if (c == '\\') {
+                        escaped = true;
+                    } else if (c == '"') {
+                        inString = false;
+                    }
+                    continue;
+                }
+
+                if (c == '"') {
+                    if (depth > 0) {
+                        inString = true;
+                    } else if (length - pos < NAME_KEY.length() && !finished) {
+                        // "name" 可能被拆在两个 token 中, 等待更多内容
+                        break;
+                    } else if (startsWith(pos, NAME_KEY)) {
+                        // 顶层引号只用来识别 "name", 不进入字符串状态, 避免正文里不成对的引号影响扫描
+                        looseNameStart = pos;
+                    }
+                } else if (c == '{') {
+                    if (depth == 0) {
+                        dropStaleLooseName();
+                        objectStart = pos;
+                    }
+                    depth++;
+                } else if (c == '}' && depth > 0) {
+                    depth--;
+                    if (depth == 0) {
+                        onObjectClosed(pos);
+                    }
+                }
+            }
+            compact();
+        }
+
+        private void onObjectClosed(int end) {
+            if (looseNameStart >= 0 && looseNameStart < objectStart) {
+                // "name": "xxx", "arguments": {...} 缺少外层大括号, 补齐后解析
+                String loose = "{" + buffer.substring(looseNameStart, end + 1) + "}";
+                looseNameStart = -1;
+                if (collect(loose)) {
+                    return;
+                }
+            }
+            collect(buffer.substring(objectStart, end + 1));
+        }
+
+        private boolean collect(String candidate) {
+            if (!candidate.contains(NAME_KEY) || !candidate.contains(ARGUMENTS_KEY)) {
+                return false;
+            }
+            try {
+                return collect(objectMapper.readTree(candidate));
+            } catch (Exception e) {
+                // 不是合法JSON, 忽略该候选
+                return false;
+            }
+        }
+
+        /**
+         * 递归查找 name/arguments 结构, 兼容 {"tool_calls": [{...}]} 等包装形式
+         */
+        private boolean collect(JsonNode node) {
+            if (node == null) {
+                return false;
+            }
+            if (node.isObject() && node.path("name").isTextual() && node.has("arguments")) {
+                JsonNode arguments = node.get("arguments");
+                if (arguments.isTextual()) {
+                    // OpenAI 格式中 arguments 可能是字符串形式的JSON
+                    try {
+                        arguments = objectMapper.readTree(arguments.asText());
+                    } catch (Exception e) {
+                        return false;
+                    }
+                }
+                if (arguments.isObject()) {
+                    toolCalls.add(new ToolCall(node.get("name").asText(), arguments));
+                    return true;
+                }
+                return false;
+            }
+            boolean found = false;
+            if (node.isContainerNode()) {
+                Iterator<JsonNode> children = node.elements();
+                while (children.hasNext()) {
+                    found |= collect(children.next());
+                }
+            }
+            return found;
+        }
+
+        /**
+         * 顶层的 "name" 离当前位置太远时丢弃, 它后面跟的不是工具调用
+         */
+        private void dropStaleLooseName() {
+            if (looseNameStart >= 0 && pos - looseNameStart > MAX_LOOSE_PREFIX) {
+                looseNameStart = -1;
+            }
+        }
+
+        private boolean startsWith(int offset, String token) {
+            if (buffer.length() - offset < token.length()) {
+                return false;
+            }
+            for (int i = 0; i < token.length(); i++) {
+                if (buffer.charAt(offset + i) != token.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 丢弃已扫描完毕的顶层文本, 流式场景下缓冲区只保留未闭合的部分
+         */
+        private void compact() {
+            if (depth > 0) {
+                if (objectStart > 0 && looseNameStart < 0) {
+                    shift(objectStart);
+                }
+                return;
+            }
+            dropStaleLooseName();
+            int keepFrom = looseNameStart >= 0 ? looseNameStart : pos;
+            if (keepFrom > 0) {
+                shift(keepFrom);
+            }
+        }
+
+        private void shift(int offset) {
+            buffer.delete(0, offset);
+            pos -= offset;
+            objectStart = objectStart >= offset ? objectStart - offset : -1;
+            looseNameStart = looseNameStart >= offset ? looseNameStart - offset : -1;
+        }
+    }
+}
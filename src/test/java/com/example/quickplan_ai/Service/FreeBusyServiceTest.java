@@ -0,0 +1,180 @@
+package com.example.quickplan_ai.Service;
+
+import com.example.quickplan_ai.dto.FreeSlot;
+import com.example.quickplan_ai.entity.Schedule;
+import com.example.quickplan_ai.event.ScheduleChangedEvent;
+import com.example.quickplan_ai.util.SlotBitmap;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class FreeBusyServiceTest {
+
+    /**
+     * 远离今天的日期, 不受"已经过去的时间"影响
+     */
+    private static final LocalDate DAY = LocalDate.now().plusDays(30);
+
+    private final ScheduleService scheduleService = mock(ScheduleService.class);
+    private final FreeBusyService freeBusyService = new FreeBusyService();
+
+    @BeforeEach
+    void setUp() {
+        ScheduleCalendarIndex calendarIndex = new ScheduleCalendarIndex();
+        ReflectionTestUtils.setField(calendarIndex, "defaultDurationMinutes", 60);
+
+        ReflectionTestUtils.setField(freeBusyService, "scheduleService", scheduleService);
+        ReflectionTestUtils.setField(freeBusyService, "scheduleCalendarIndex", calendarIndex);
+        ReflectionTestUtils.setField(freeBusyService, "maxDays", 1000L);
+        ReflectionTestUtils.setField(freeBusyService, "ttl", Duration.ofMinutes(10));
+        ReflectionTestUtils.setField(freeBusyService, "defaultDayStart", LocalTime.of(8, 0));
+        ReflectionTestUtils.setField(freeBusyService, "defaultDayEnd", LocalTime.of(22, 0));
+        freeBusyService.init();
+        when(scheduleService.getSchedulesByDateRange(any(), any(), any())).thenReturn(List.of());
+    }
+
+    @Test
+    void freeSlotsAroundBusyTime() {
+        schedules("a", schedule(DAY, "10:00", 60), schedule(DAY, "11:20", 10));
+
+        List<FreeSlot> slots = freeBusyService.findFreeSlots(List.of("a"), DAY, DAY,
+                LocalTime.of(8, 0), LocalTime.of(12, 0), 30, FreeBusyService.Match.ALL);
+
+        // 11:20-11:30 按槽向外取整, 占用 11:15-11:30
+        assertThat(slots).containsExactly(
+                slot(DAY, "08:00", "10:00", 120),
+                slot(DAY, "11:30", "12:00", 30));
+    }
+
+    @Test
+    void shortGapsAreFilteredByMinMinutes() {
+        schedules("a", schedule(DAY, "09:00", 60), schedule(DAY, "10:15", 60));
+
+        List<FreeSlot> slots = freeBusyService.findFreeSlots(List.of("a"), DAY, DAY,
+                LocalTime.of(9, 0), LocalTime.of(12, 0), 30, FreeBusyService.Match.ALL);
+
+        assertThat(slots).containsExactly(slot(DAY, "11:15", "12:00", 45));
+    }
+
+    @Test
+    void overnightScheduleSpillsIntoNextDay() {
+        LocalDate next = DAY.plusDays(1);
+        schedules("a", schedule(DAY, "23:00", 120));
+
+        assertThat(freeBusyService.findFreeSlots(List.of("a"), next, next,
+                LocalTime.of(0, 0), LocalTime.of(3, 0), 15, FreeBusyService.Match.ALL))
+                .containsExactly(slot(next, "01:00", "03:00", 120));
+
+        long[] busy = freeBusyService.getBusyBitmap("a", DAY, next);
+        // 第一天 23:00-24:00(第 92~95 槽), 第二天 00:00-01:00(第 0~3 槽)
+        assertThat(SlotBitmap.toHex(busy, 0)).isEqualTo("f" + "0".repeat(23));
+        assertThat(SlotBitmap.toHex(busy, SlotBitmap.WORDS_PER_DAY)).isEqualTo("0".repeat(23) + "f");
+    }
+
+    @Test
+    void allAndAnyMergeUsers() {
+        schedules("a", schedule(DAY, "09:00", 60));
+        schedules("b", schedule(DAY, "09:30", 60));
+
+        assertThat(freeBusyService.findFreeSlots(List.of("a", "b"), DAY, DAY,
+                LocalTime.of(9, 0), LocalTime.of(12, 0), 15, FreeBusyService.Match.ALL))
+                .containsExactly(slot(DAY, "10:30", "12:00", 90));
+
+        assertThat(freeBusyService.findFreeSlots(List.of("a", "b"), DAY, DAY,
+                LocalTime.of(9, 0), LocalTime.of(12, 0), 15, FreeBusyService.Match.ANY))
+                .containsExactly(
+                        slot(DAY, "09:00", "09:30", 30),
+                        slot(DAY, "10:00", "12:00", 120));
+    }
+
+    @Test
+    void slotsDoNotSpanDays() {
+        List<FreeSlot> slots = freeBusyService.findFreeSlots(List.of("a"), DAY, DAY.plusDays(1),
+                LocalTime.of(0, 0), LocalTime.of(23, 45), 15, FreeBusyService.Match.ALL);
+
+        assertThat(slots).containsExactly(
+                slot(DAY, "00:00", "23:45", 23 * 60 + 45),
+                slot(DAY.plusDays(1), "00:00", "23:45", 23 * 60 + 45));
+    }
+
+    @Test
+    void pastTimeIsMasked() {
+        LocalDate today = LocalDate.now();
+        LocalDate yesterday = today.minusDays(1);
+        LocalDate tomorrow = today.plusDays(1);
+        LocalDateTime before = LocalDateTime.now();
+
+        List<FreeSlot> slots = freeBusyService.findFreeSlots(List.of("a"), yesterday, tomorrow,
+                LocalTime.of(0, 0), LocalTime.of(23, 45), 15, FreeBusyService.Match.ALL);
+
+        assertThat(slots).noneMatch(slot -> slot.getDate().equals(yesterday));
+        assertThat(slots).contains(slot(tomorrow, "00:00", "23:45", 23 * 60 + 45));
+        if (before.toLocalDate().equals(today)) {
+            int nowSlot = SlotBitmap.slotCeil(before.getHour() * 60 + before.getMinute());
+            assertThat(slots).filteredOn(slot -> slot.getDate().equals(today))
+                    .allMatch(slot -> SlotBitmap.slotOf(slot.getStartTime()) >= nowSlot);
+        }
+    }
+
+    @Test
+    void bitmapsAreCachedAndInvalidatedByChangeEvents() {
+        schedules("a", schedule(DAY, "10:00", 60));
+
+        freeBusyService.getBusyBitmap("a", DAY, DAY.plusDays(2));
+        freeBusyService.getBusyBitmap("a", DAY, DAY.plusDays(2));
+        verify(scheduleService, times(1)).getSchedulesByDateRange(eq("a"), any(), any());
+
+        freeBusyService.onScheduleChanged(ScheduleChangedEvent.local("a", Set.of(DAY)));
+        freeBusyService.getBusyBitmap("a", DAY, DAY.plusDays(2));
+        // 只重新加载失效的 DAY 和 DAY+1
+        verify(scheduleService).getSchedulesByDateRange("a", DAY.minusDays(1), DAY.plusDays(1));
+    }
+
+    @Test
+    void rejectsInvalidArguments() {
+        assertThatThrownBy(() -> freeBusyService.findFreeSlots(List.of(), DAY, DAY,
+                null, null, 30, FreeBusyService.Match.ALL)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> freeBusyService.findFreeSlots(List.of("a"), DAY, DAY,
+                LocalTime.of(12, 0), LocalTime.of(9, 0), 30, FreeBusyService.Match.ALL))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> freeBusyService.getBusyBitmap("a", DAY, DAY.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> freeBusyService.getBusyBitmap("a", DAY,
+                DAY.plusDays(FreeBusyService.MAX_RANGE_DAYS))).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private void schedules(String userId, Schedule... schedules) {
+        for (Schedule schedule : schedules) {
+            schedule.setUserId(userId);
+        }
+        when(scheduleService.getSchedulesByDateRange(eq(userId), any(), any())).thenReturn(List.of(schedules));
+    }
+
+    private static Schedule schedule(LocalDate date, String time, int durationMinutes) {
+        Schedule schedule = new Schedule();
+        schedule.setDate(date);
+        schedule.setTime(LocalTime.parse(time));
+        schedule.setDurationMinutes(durationMinutes);
+        return schedule;
+    }
+
+    private static FreeSlot slot(LocalDate date, String start, String end, int minutes) {
+        return new FreeSlot(date, LocalTime.parse(start), LocalTime.parse(end), minutes);
+    }
+}
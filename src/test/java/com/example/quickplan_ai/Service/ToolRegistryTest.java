@@ -0,0 +1,73 @@
+package com.example.quickplan_ai.Service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import dev.langchain4j.agent.tool.P;
+import dev.langchain4j.agent.tool.Tool;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ToolRegistryTest {
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    public static class SampleTools {
+
+        @Tool("添加")
+        public String add(@P("用户ID") String userId,
+                          @P("日期, 格式 yyyy-MM-dd") String date,
+                          @P(value = "地点", required = false) String location,
+                          Integer durationMinutes) {
+            return userId + "|" + date + "|" + location + "|" + durationMinutes;
+        }
+    }
+
+    public static class PrimitiveTools {
+
+        @Tool("计数")
+        public String count(int times) {
+            return String.valueOf(times);
+        }
+    }
+
+    @Test
+    void bindsArgumentsByName() throws Exception {
+        ToolRegistry registry = registry(SampleTools.class);
+
+        assertThat(registry.invoke("add",
+                objectMapper.readTree("{\"date\": \"2025-11-03\", \"durationMinutes\": 30}"), "u1"))
+                .isEqualTo("u1|2025-11-03|null|30");
+        assertThat(registry.invoke("unknown", objectMapper.createObjectNode(), "u1")).isNull();
+    }
+
+    @Test
+    void reportsMissingRequiredArgumentsWithoutCallingTool() throws Exception {
+        ToolRegistry registry = registry(SampleTools.class);
+
+        assertThat(registry.invoke("add", objectMapper.readTree("{\"location\": \"会议室\"}"), "u1"))
+                .isEqualTo("❌ 缺少必需参数: date(日期, 格式 yyyy-MM-dd)");
+        assertThat(registry.invoke("add", objectMapper.readTree("{\"date\": \" \"}"), "u1"))
+                .startsWith("❌ 缺少必需参数: date");
+        assertThat(registry.getStats().get("add")).containsEntry("errors", 2L);
+    }
+
+    @Test
+    void rejectsPrimitiveParameters() {
+        assertThatThrownBy(() -> registry(PrimitiveTools.class))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("times");
+    }
+
+    private static ToolRegistry registry(Class<?> toolsClass) {
+        GenericApplicationContext context = new GenericApplicationContext();
+        context.registerBean(toolsClass);
+        context.refresh();
+        ToolRegistry registry = new ToolRegistry();
+        ReflectionTestUtils.setField(registry, "applicationContext", context);
+        registry.afterSingletonsInstantiated();
+        return registry;
+    }
+}
@@ -0,0 +1,202 @@
+package com.example.quickplan_ai.llm;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import dev.langchain4j.data.message.UserMessage;
+import dev.langchain4j.model.chat.ChatModel;
+import dev.langchain4j.model.chat.request.ChatRequest;
+import dev.langchain4j.model.openai.OpenAiChatModel;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * 用本地 HTTP 服务模拟 OpenAI 兼容端点, 端点的延迟和状态码可分别设置
+ */
+class RoutingChatModelTest {
+
+    private static final ChatRequest REQUEST = ChatRequest.builder()
+            .messages(UserMessage.from("你好"))
+            .build();
+
+    private HttpServer server;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+        executor = Executors.newThreadPerTaskExecutor(Thread.ofVirtual().factory());
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    void routesToEndpointWithLowerLatency() {
+        Stub slow = stub("slow", 150, 200);
+        Stub fast = stub("fast", 10, 200);
+        RoutingChatModel router = router(false, null, "slow", "fast");
+
+        for (int i = 0; i < 10; i++) {
+            router.chat(REQUEST);
+        }
+
+        // 两个端点各试探一次, 之后都选延迟低的端点
+        assertThat(slow.hits.get()).isEqualTo(1);
+        assertThat(fast.hits.get()).isEqualTo(9);
+        assertThat(router.getEwmaLatencyMillis("slow")).isGreaterThan(router.getEwmaLatencyMillis("fast"));
+    }
+
+    @Test
+    void failsOverAndAvoidsFailingEndpoint() {
+        Stub broken = stub("broken", 0, 500);
+        Stub healthy = stub("healthy", 20, 200);
+        RoutingChatModel router = router(false, null, "broken", "healthy");
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(router.chat(REQUEST).aiMessage().text()).isEqualTo("healthy");
+        }
+
+        // 快速返回错误的端点不能因为延迟低而一直被首选
+        assertThat(broken.hits.get()).isEqualTo(1);
+        assertThat(healthy.hits.get()).isEqualTo(5);
+        assertThat(router.getErrorRate("broken")).isPositive();
+        assertThat(router.getErrorRate("healthy")).isZero();
+    }
+
+    @Test
+    void hedgesSlowPrimary() {
+        stub("primary", 1500, 200);
+        Stub secondary = stub("secondary", 20, 200);
+        RoutingChatModel router = router(true, null, "primary", "secondary");
+
+        long start = System.nanoTime();
+        String text = router.chat(REQUEST).aiMessage().text();
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+        assertThat(text).isEqualTo("secondary");
+        assertThat(elapsedMillis).isLessThan(1000);
+        assertThat(secondary.hits.get()).isEqualTo(1);
+        assertThat(router.getHedgeCount()).isEqualTo(1);
+        // 首选端点按已等待的时间计入延迟, 被取消不算错误
+        assertThat(router.getEwmaLatencyMillis("primary")).isGreaterThanOrEqualTo(100);
+        assertThat(router.getErrorRate("primary")).isZero();
+    }
+
+    @Test
+    void hedgeTakesPermitAndReleasesIt() {
+        stub("primary", 1500, 200);
+        stub("secondary", 20, 200);
+        AdaptiveConcurrencyLimiter limiter = limiter(2);
+        RoutingChatModel router = router(true, limiter, "primary", "secondary");
+
+        // 模拟外层 LimitedChatModel 为这次对话占用的许可
+        AdaptiveConcurrencyLimiter.Permit outer = limiter.acquire();
+        assertThat(router.chat(REQUEST).aiMessage().text()).isEqualTo("secondary");
+
+        assertThat(router.getHedgeCount()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isEqualTo(1);
+        outer.release(true);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void skipsHedgeWhenLimiterIsSaturated() {
+        stub("primary", 300, 200);
+        Stub secondary = stub("secondary", 20, 200);
+        AdaptiveConcurrencyLimiter limiter = limiter(1);
+        RoutingChatModel router = router(true, limiter, "primary", "secondary");
+
+        AdaptiveConcurrencyLimiter.Permit outer = limiter.acquire();
+        assertThat(router.chat(REQUEST).aiMessage().text()).isEqualTo("primary");
+        outer.release(true);
+
+        assertThat(secondary.hits.get()).isZero();
+        assertThat(router.getHedgeCount()).isZero();
+        assertThat(router.getSkippedHedgeCount()).isEqualTo(1);
+    }
+
+    private RoutingChatModel router(boolean hedge, AdaptiveConcurrencyLimiter limiter, String... names) {
+        Map<String, ChatModel> endpoints = new LinkedHashMap<>();
+        for (String name : names) {
+            endpoints.put(name, OpenAiChatModel.builder()
+                    .baseUrl("http://127.0.0.1:" + server.getAddress().getPort() + "/" + name + "/v1")
+                    .apiKey("test")
+                    .modelName(name)
+                    .timeout(Duration.ofSeconds(5))
+                    .maxRetries(0)
+                    .build());
+        }
+        return new RoutingChatModel(endpoints, 0.3, 4.0, hedge, 0.95,
+                Duration.ofMillis(50), Duration.ofMillis(100), executor, limiter);
+    }
+
+    private static AdaptiveConcurrencyLimiter limiter(int limit) {
+        return new AdaptiveConcurrencyLimiter("test", limit, limit, limit, 0,
+                Duration.ZERO, Duration.ofSeconds(20), 0.9);
+    }
+
+    private Stub stub(String name, long delayMillis, int status) {
+        Stub stub = new Stub(name, delayMillis, status);
+        server.createContext("/" + name + "/v1/chat/completions", stub::handle);
+        return stub;
+    }
+
+    private static final class Stub {
+
+        private final String name;
+        private final long delayMillis;
+        private final int status;
+        private final AtomicInteger hits = new AtomicInteger();
+
+        Stub(String name, long delayMillis, int status) {
+            this.name = name;
+            this.delayMillis = delayMillis;
+            this.status = status;
+        }
+
+        void handle(HttpExchange exchange) throws IOException {
+            hits.incrementAndGet();
+            try (exchange) {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(delayMillis);
+                String body = status == 200
+                        ? """
+                        {"id": "chatcmpl-1", "object": "chat.completion", "created": 1, "model": "%s",
+                         "choices": [{"index": 0, "message": {"role": "assistant", "content": "%s"},
+                                      "finish_reason": "stop"}],
+                         "usage": {"prompt_tokens": 1, "completion_tokens": 1, "total_tokens": 2}}
+                        """.formatted(name, name)
+                        : "{\"error\": {\"message\": \"upstream error\", \"type\": \"server_error\"}}";
+                byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "application/json");
+                exchange.sendResponseHeaders(status, bytes.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(bytes);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (IOException e) {
+                // 被对冲取消的请求, 客户端已断开
+            }
+        }
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.quickplan_ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class IntervalTreeTest {
+
+    private record Span(int id, long start, long end) {
+    }
+
+    @Test
+    void matchesBruteForce() {
+        Random random = new Random(42);
+        for (int round = 0; round < 200; round++) {
+            int size = random.nextInt(60);
+            List<Span> spans = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                long start = random.nextInt(1000);
+                // 包含长度为 0 的区间和跨越大半范围的长区间
+                long length = random.nextInt(10) == 0 ? random.nextInt(600) : random.nextInt(40);
+                spans.add(new Span(i, start, start + length));
+            }
+            IntervalTree<Span> tree = IntervalTree.of(spans, Span::start, Span::end);
+            assertThat(tree.size()).isEqualTo(size);
+
+            for (int query = 0; query < 50; query++) {
+                long from = random.nextInt(1100) - 50;
+                long to = from + 1 + random.nextInt(120);
+                assertThat(ids(tree.overlapping(from, to)))
+                        .as("round %d, [%d, %d)", round, from, to)
+                        .isEqualTo(ids(bruteForce(spans, from, to)));
+            }
+        }
+    }
+
+    @Test
+    void touchingIntervalsDoNotOverlap() {
+        IntervalTree<Span> tree = IntervalTree.of(List.of(
+                new Span(1, 0, 10),
+                new Span(2, 10, 20),
+                new Span(3, 20, 30)), Span::start, Span::end);
+
+        assertThat(ids(tree.overlapping(10, 20))).containsExactly(2);
+        assertThat(ids(tree.overlapping(9, 21))).containsExactly(1, 2, 3);
+        assertThat(tree.overlapping(30, 40)).isEmpty();
+    }
+
+    @Test
+    void resultIsSortedByStart() {
+        IntervalTree<Span> tree = IntervalTree.of(List.of(
+                new Span(1, 50, 60),
+                new Span(2, 0, 100),
+                new Span(3, 20, 55),
+                new Span(4, 40, 45)), Span::start, Span::end);
+
+        assertThat(tree.overlapping(42, 52)).extracting(Span::id).containsExactly(2, 3, 4, 1);
+    }
+
+    @Test
+    void emptyTreeAndEmptyWindow() {
+        IntervalTree<Span> empty = IntervalTree.of(List.of(), Span::start, Span::end);
+        assertThat(empty.size()).isZero();
+        assertThat(empty.overlapping(0, 100)).isEmpty();
+
+        IntervalTree<Span> tree = IntervalTree.of(List.of(new Span(1, 0, 100)), Span::start, Span::end);
+        assertThat(tree.overlapping(50, 50)).isEmpty();
+        assertThat(tree.overlapping(60, 40)).isEmpty();
+    }
+
+    private static List<Span> bruteForce(List<Span> spans, long from, long to) {
+        return spans.stream()
+                .filter(span -> span.start() < to && span.end() > from)
+                .sorted(Comparator.comparingLong(Span::start))
+                .toList();
+    }
+
+    /**
+     * 开始位置相同的元素顺序不固定, 比较时按开始位置和 ID 排序
+     */
+    private static List<Integer> ids(List<Span> spans) {
+        return spans.stream()
+                .sorted(Comparator.comparingLong(Span::start).thenComparingInt(Span::id))
+                .map(Span::id)
+                .toList();
+    }
+}
@@ -0,0 +1,141 @@
+package com.example.quickplan_ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RecurrenceRuleTest {
+
+    private static final LocalDate MONDAY = LocalDate.of(2025, 11, 3);
+    private static final LocalDate TUESDAY = LocalDate.of(2025, 11, 4);
+
+    @Test
+    void intervalStaysAlignedAfterJumpingToWindow() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;INTERVAL=2;BYDAY=TU");
+
+        assertThat(rule.between(TUESDAY, LocalDate.of(2026, 3, 1), LocalDate.of(2026, 3, 31), Set.of()))
+                .containsExactly(LocalDate.of(2026, 3, 10), LocalDate.of(2026, 3, 24));
+        // 窗口落在不重复的那一周
+        assertThat(rule.between(TUESDAY, LocalDate.of(2026, 3, 2), LocalDate.of(2026, 3, 8), Set.of()))
+                .isEmpty();
+    }
+
+    @Test
+    void windowJumpMatchesExpansionFromStart() {
+        List<String> rules = List.of(
+                "FREQ=DAILY;INTERVAL=3",
+                "FREQ=WEEKLY;INTERVAL=3;BYDAY=MO,FR",
+                "FREQ=MONTHLY;INTERVAL=2;BYMONTHDAY=1,15,31");
+        LocalDate start = LocalDate.of(2025, 1, 17);
+        for (String text : rules) {
+            RecurrenceRule rule = RecurrenceRule.parse(text);
+            for (int offset = 0; offset < 400; offset += 7) {
+                LocalDate from = start.plusDays(offset);
+                LocalDate to = from.plusDays(45);
+                List<LocalDate> expected = rule.between(start, start, to, Set.of()).stream()
+                        .filter(date -> !date.isBefore(from))
+                        .toList();
+                assertThat(rule.between(start, from, to, Set.of()))
+                        .as("%s, %s ~ %s", text, from, to)
+                        .isEqualTo(expected);
+            }
+        }
+    }
+
+    @Test
+    void countIncludesExcludedDates() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=DAILY;COUNT=5");
+        Set<LocalDate> exdates = Set.of(LocalDate.of(2025, 11, 4));
+
+        assertThat(rule.between(MONDAY, MONDAY, LocalDate.of(2025, 12, 31), exdates))
+                .containsExactly(
+                        LocalDate.of(2025, 11, 3),
+                        LocalDate.of(2025, 11, 5),
+                        LocalDate.of(2025, 11, 6),
+                        LocalDate.of(2025, 11, 7));
+        assertThat(rule.lastDate(MONDAY)).isEqualTo(LocalDate.of(2025, 11, 7));
+    }
+
+    @Test
+    void countIsAppliedFromSeriesStartWhenWindowStartsLater() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,WE;COUNT=4");
+
+        assertThat(rule.between(MONDAY, LocalDate.of(2025, 11, 6), LocalDate.of(2025, 12, 31), Set.of()))
+                .containsExactly(LocalDate.of(2025, 11, 10), LocalDate.of(2025, 11, 12));
+    }
+
+    @Test
+    void monthDayMissingFromMonthIsSkipped() {
+        LocalDate start = LocalDate.of(2025, 1, 31);
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY;BYMONTHDAY=31");
+
+        assertThat(rule.between(start, start, LocalDate.of(2025, 12, 31), Set.of()))
+                .containsExactly(
+                        LocalDate.of(2025, 1, 31),
+                        LocalDate.of(2025, 3, 31),
+                        LocalDate.of(2025, 5, 31),
+                        LocalDate.of(2025, 7, 31),
+                        LocalDate.of(2025, 8, 31),
+                        LocalDate.of(2025, 10, 31),
+                        LocalDate.of(2025, 12, 31));
+        assertThat(RecurrenceRule.parse("FREQ=MONTHLY;BYMONTHDAY=31;COUNT=3").lastDate(start))
+                .isEqualTo(LocalDate.of(2025, 5, 31));
+    }
+
+    @Test
+    void monthDayWithIntervalSkipsShortMonthsInActivePeriods() {
+        LocalDate start = LocalDate.of(2025, 1, 31);
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=MONTHLY;INTERVAL=2;BYMONTHDAY=31");
+
+        // 周期为 1、3、5、7、9、11 月, 9 月和 11 月没有 31 号
+        assertThat(rule.between(start, LocalDate.of(2025, 8, 1), LocalDate.of(2026, 2, 28), Set.of()))
+                .containsExactly(LocalDate.of(2026, 1, 31));
+    }
+
+    @Test
+    void untilIsInclusive() {
+        RecurrenceRule rule = RecurrenceRule.parse("RRULE:FREQ=WEEKLY;BYDAY=MO,WE;UNTIL=20251112T235959Z");
+
+        assertThat(rule.between(MONDAY, MONDAY, LocalDate.of(2025, 12, 31), Set.of()))
+                .containsExactly(
+                        LocalDate.of(2025, 11, 3),
+                        LocalDate.of(2025, 11, 5),
+                        LocalDate.of(2025, 11, 10),
+                        LocalDate.of(2025, 11, 12));
+        assertThat(rule.between(MONDAY, LocalDate.of(2025, 11, 13), LocalDate.of(2025, 12, 31), Set.of()))
+                .isEmpty();
+        assertThat(rule.lastDate(MONDAY)).isEqualTo(LocalDate.of(2025, 11, 12));
+        assertThat(rule.toString()).isEqualTo("FREQ=WEEKLY;BYDAY=MO,WE;UNTIL=20251112");
+    }
+
+    @Test
+    void weeklyDaysBeforeStartAreSkipped() {
+        RecurrenceRule rule = RecurrenceRule.parse("FREQ=WEEKLY;BYDAY=MO,TU,WE");
+        LocalDate wednesday = LocalDate.of(2025, 11, 5);
+
+        assertThat(rule.between(wednesday, MONDAY, LocalDate.of(2025, 11, 11), Set.of()))
+                .containsExactly(
+                        LocalDate.of(2025, 11, 5),
+                        LocalDate.of(2025, 11, 10),
+                        LocalDate.of(2025, 11, 11));
+    }
+
+    @Test
+    void rejectsInvalidRules() {
+        assertThatThrownBy(() -> RecurrenceRule.parse("FREQ=DAILY;COUNT=3;UNTIL=20251231"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecurrenceRule.parse("FREQ=YEARLY"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecurrenceRule.parse("FREQ=DAILY;BYDAY=MO"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecurrenceRule.parse("FREQ=MONTHLY;BYMONTHDAY=32"))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> RecurrenceRule.parse("FREQ=DAILY;COUNT=" + (RecurrenceRule.MAX_COUNT + 1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
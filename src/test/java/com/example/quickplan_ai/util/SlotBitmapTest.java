@@ -0,0 +1,104 @@
+package com.example.quickplan_ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalTime;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SlotBitmapTest {
+
+    @Test
+    void layoutConstants() {
+        assertThat(SlotBitmap.SLOTS_PER_DAY).isEqualTo(96);
+        assertThat(SlotBitmap.WORDS_PER_DAY).isEqualTo(2);
+        assertThat(SlotBitmap.BITS_PER_DAY).isEqualTo(128);
+    }
+
+    @Test
+    void markAcrossWordBoundary() {
+        long[] words = new long[4];
+        SlotBitmap.mark(words, 60, 70);
+
+        assertThat(words[0]).isEqualTo(0xFL << 60);
+        assertThat(words[1]).isEqualTo(0x3FL);
+        assertThat(words[2]).isZero();
+    }
+
+    @Test
+    void markMatchesBitByBit() {
+        for (int from = 0; from <= 256; from += 7) {
+            for (int to = from; to <= 256; to += 11) {
+                long[] words = new long[4];
+                SlotBitmap.mark(words, from, to);
+                for (int bit = 0; bit < 256; bit++) {
+                    boolean set = (words[bit >>> 6] & (1L << bit)) != 0;
+                    assertThat(set).as("[%d, %d) bit %d", from, to, bit).isEqualTo(bit >= from && bit < to);
+                }
+            }
+        }
+    }
+
+    @Test
+    void markClampsToArrayAndIgnoresEmptyRange() {
+        long[] words = new long[2];
+        SlotBitmap.mark(words, -5, 3);
+        SlotBitmap.mark(words, 120, 500);
+        SlotBitmap.mark(words, 50, 50);
+        SlotBitmap.mark(words, 40, 30);
+
+        assertThat(words[0]).isEqualTo(0b111L);
+        assertThat(words[1]).isEqualTo(-1L << 56);
+    }
+
+    @Test
+    void wordwiseMerging() {
+        long[] a = {0b1100L, 0b1L, 0b1111L};
+        long[] b = {0b1010L, 0b0L};
+
+        long[] and = a.clone();
+        SlotBitmap.and(and, new long[]{0b1010L, 0b0L, -1L});
+        assertThat(and).containsExactly(0b1000L, 0L, 0b1111L);
+
+        long[] or = a.clone();
+        SlotBitmap.or(or, new long[]{0b1010L, 0b10L, 0L});
+        assertThat(or).containsExactly(0b1110L, 0b11L, 0b1111L);
+
+        // other 从 target 的第 1 个 long 开始对齐
+        long[] andNot = a.clone();
+        SlotBitmap.andNot(andNot, 1, b);
+        assertThat(andNot).containsExactly(0b1100L, 0b1L, 0b1111L);
+        SlotBitmap.andNot(andNot, 1, new long[]{0b1L, 0b0101L});
+        assertThat(andNot).containsExactly(0b1100L, 0L, 0b1010L);
+    }
+
+    @Test
+    void toHexPutsLastSlotFirst() {
+        long[] words = new long[SlotBitmap.WORDS_PER_DAY * 2];
+        assertThat(SlotBitmap.toHex(words, 0)).isEqualTo("0".repeat(24));
+
+        SlotBitmap.mark(words, 0, 1);
+        assertThat(SlotBitmap.toHex(words, 0)).isEqualTo("0".repeat(23) + "1");
+
+        SlotBitmap.mark(words, 95, 96);
+        assertThat(SlotBitmap.toHex(words, 0)).isEqualTo("8" + "0".repeat(22) + "1");
+
+        // 第二天 00:00-24:00 全部占用, 第一天不受影响
+        SlotBitmap.mark(words, SlotBitmap.BITS_PER_DAY, SlotBitmap.BITS_PER_DAY + SlotBitmap.SLOTS_PER_DAY);
+        assertThat(SlotBitmap.toHex(words, SlotBitmap.WORDS_PER_DAY)).isEqualTo("f".repeat(24));
+        assertThat(SlotBitmap.toHex(words, 0)).isEqualTo("8" + "0".repeat(22) + "1");
+    }
+
+    @Test
+    void slotConversions() {
+        assertThat(SlotBitmap.slotOf(LocalTime.of(0, 0))).isZero();
+        assertThat(SlotBitmap.slotOf(LocalTime.of(9, 14))).isEqualTo(36);
+        assertThat(SlotBitmap.slotOf(LocalTime.of(9, 15))).isEqualTo(37);
+        assertThat(SlotBitmap.slotCeil(0)).isZero();
+        assertThat(SlotBitmap.slotCeil(1)).isEqualTo(1);
+        assertThat(SlotBitmap.slotCeil(15)).isEqualTo(1);
+        assertThat(SlotBitmap.slotCeil(16)).isEqualTo(2);
+        assertThat(SlotBitmap.timeOf(37)).isEqualTo(LocalTime.of(9, 15));
+        assertThat(SlotBitmap.timeOf(SlotBitmap.SLOTS_PER_DAY)).isEqualTo(LocalTime.MAX);
+    }
+}
@@ -0,0 +1,160 @@
+package com.example.quickplan_ai.util;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 工具调用解析的微基准
+ * 运行: mvn test-compile 后执行 main 方法(IDE 中直接运行, 或 exec:java -Dexec.classpathScope=test)
+ *
+ * - parseWholeReply: 回复接收完后一次性解析
+ * - scanStreamedReply: 按 token 大小的片段逐段喂给 Scanner, 模拟流式输出
+ * - regexCascade: 对照组, 原 Aicontroller.executeToolCallManually 的三级正则提取 + Jackson 解析(只取第一个调用)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ToolCallParserBenchmark {
+
+    private static final String CALL = "{\"name\": \"addSchedule\", \"arguments\": {\"userId\": \"u1\", "
+            + "\"title\": \"项目 \\\"周会\\\" {第3期}\", \"date\": \"2025-11-03\", \"time\": \"14:00\", "
+            + "\"meta\": {\"tags\": [\"work\", {\"level\": 2}]}}}";
+
+    private static final String LOOSE_CALL = "\"name\": \"deleteSchedule\", \"arguments\": {\"scheduleId\": \"42\"}";
+
+    private static final String PROSE = "好的, 我已经帮你查看了这周的安排, 周三下午比较空, 建议把会议放在那个时间。";
+
+    /**
+     * 提到 "name" 但后面没有 "arguments", 正则需要扫到回复末尾才能确定不匹配
+     */
+    private static final String DANGLING_NAME = "项目的 \"name\": \"alpha\" 保持不变, 见纪要 {\"name\": \"周会纪要\"}。";
+
+    /**
+     * 回复中工具调用的个数, 0 表示纯文本回复
+     */
+    @Param({"0", "1", "4"})
+    public int calls;
+
+    /**
+     * 每个流式片段的字符数, 大致对应一个 token
+     */
+    @Param({"4"})
+    public int tokenSize;
+
+    /**
+     * short: 8 段文本; danglingName: 开头带未配对的 "name", 共 200 段文本的长回复
+     */
+    @Param({"short", "danglingName"})
+    public String shape;
+
+    private final ToolCallParser parser = new ToolCallParser();
+
+    private final ObjectMapper objectMapper = new ObjectMapper();
+
+    private String reply;
+
+    private List<String> tokens;
+
+    @Setup
+    public void setup() {
+        boolean dangling = "danglingName".equals(shape);
+        StringBuilder sb = new StringBuilder(dangling ? DANGLING_NAME : "");
+        for (int i = 0; i < (dangling ? 200 : 8); i++) {
+            sb.append(PROSE);
+            if (i < calls) {
+                sb.append(i % 2 == 0 ? CALL : LOOSE_CALL);
+            }
+        }
+        reply = sb.toString();
+        tokens = new ArrayList<>();
+        for (int i = 0; i < reply.length(); i += tokenSize) {
+            tokens.add(reply.substring(i, Math.min(reply.length(), i + tokenSize)));
+        }
+        if (parser.parse(reply).size() != calls) {
+            throw new IllegalStateException("基准数据的工具调用个数不正确");
+        }
+    }
+
+    @Benchmark
+    public List<ToolCallParser.ToolCall> parseWholeReply() {
+        return parser.parse(reply);
+    }
+
+    @Benchmark
+    public List<ToolCallParser.ToolCall> scanStreamedReply() {
+        ToolCallParser.Scanner scanner = parser.newScanner();
+        for (String token : tokens) {
+            scanner.feed(token);
+        }
+        return scanner.finish();
+    }
+
+    /**
+     * 和原实现一样每次调用都编译正则
+     */
+    @Benchmark
+    public JsonNode regexCascade() {
+        String jsonStr = null;
+
+        Matcher matcher1 = Pattern.compile("\\{[\\s\\S]*?\"name\"[\\s\\S]*?\"arguments\"[\\s\\S]*?\\}\\s*\\}",
+                Pattern.DOTALL).matcher(reply);
+        if (matcher1.find()) {
+            jsonStr = matcher1.group();
+        }
+
+        if (jsonStr == null) {
+            Matcher matcher2 = Pattern.compile(
+                    "\"name\"\\s*:\\s*\"(\\w+)\"[\\s\\S]*?\"arguments\"\\s*:\\s*\\{[\\s\\S]*?\\}", Pattern.DOTALL)
+                    .matcher(reply);
+            if (matcher2.find()) {
+                jsonStr = "{" + matcher2.group() + "}";
+            }
+        }
+
+        if (jsonStr == null) {
+            Matcher matcher3 = Pattern.compile("\\{[^}]*\"name\"[^}]*\\{[^}]*\\}[^}]*\\}", Pattern.DOTALL)
+                    .matcher(reply);
+            if (matcher3.find()) {
+                jsonStr = matcher3.group();
+            }
+        }
+
+        if (jsonStr == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readTree(jsonStr);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ToolCallParserBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
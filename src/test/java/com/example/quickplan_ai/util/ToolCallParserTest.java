@@ -0,0 +1,115 @@
+package com.example.quickplan_ai.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class ToolCallParserTest {
+
+    private final ToolCallParser parser = new ToolCallParser();
+
+    @Test
+    void parsesNestedArguments() {
+        List<ToolCallParser.ToolCall> calls = parser.parse(
+                "好的 {\"name\": \"addSchedule\", \"arguments\": {\"title\": \"开会\", \"meta\": {\"a\": {\"b\": [1, {\"c\": 2}]}}}}");
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0).name()).isEqualTo("addSchedule");
+        assertThat(calls.get(0).arguments().at("/meta/a/b/1/c").asInt()).isEqualTo(2);
+    }
+
+    @Test
+    void ignoresBracesAndEscapedQuotesInsideStrings() {
+        List<ToolCallParser.ToolCall> calls = parser.parse(
+                "{\"name\": \"addSchedule\", \"arguments\": {\"title\": \"说 \\\"}{\\\" 再 }} 走 \\\\\", \"location\": \"{\"}}");
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0).arguments().get("title").asText()).isEqualTo("说 \"}{\" 再 }} 走 \\");
+        assertThat(calls.get(0).arguments().get("location").asText()).isEqualTo("{");
+    }
+
+    @Test
+    void parsesMultipleCallsAndSkipsOtherObjects() {
+        List<ToolCallParser.ToolCall> calls = parser.parse("""
+                先查询 {"name": "getSchedulesByDate", "arguments": {"date": "2025-11-03"}}
+                示例 {"foo": 1} 然后
+                {"name": "deleteSchedule", "arguments": {"scheduleId": "42"}}
+                {"tool_calls": [{"name": "addSchedule", "arguments": "{\\"title\\": \\"跑步\\"}"}]}
+                """);
+
+        assertThat(calls).extracting(ToolCallParser.ToolCall::name)
+                .containsExactly("getSchedulesByDate", "deleteSchedule", "addSchedule");
+        assertThat(calls.get(2).arguments().get("title").asText()).isEqualTo("跑步");
+    }
+
+    @Test
+    void parsesCallMissingOuterBraces() {
+        List<ToolCallParser.ToolCall> calls = parser.parse(
+                "调用工具: \"name\": \"addSchedule\", \"arguments\": {\"title\": \"开会\"} 完成");
+
+        assertThat(calls).hasSize(1);
+        assertThat(calls.get(0).name()).isEqualTo("addSchedule");
+        assertThat(calls.get(0).arguments().get("title").asText()).isEqualTo("开会");
+    }
+
+    @Test
+    void tokenSplitInputMatchesWholeInput() {
+        String text = "回复 \"name\": \"addSchedule\", \"arguments\": {\"title\": \"a \\\"}\\\" b\"}"
+                + " 以及 {\"name\": \"deleteSchedule\", \"arguments\": {\"scheduleId\": \"7\"}} 结束";
+        List<ToolCallParser.ToolCall> expected = parser.parse(text);
+        assertThat(expected).hasSize(2);
+
+        for (int size = 1; size <= 7; size++) {
+            ToolCallParser.Scanner scanner = parser.newScanner();
+            List<ToolCallParser.ToolCall> streamed = new ArrayList<>();
+            for (int i = 0; i < text.length(); i += size) {
+                streamed.addAll(scanner.feed(text.substring(i, Math.min(text.length(), i + size))));
+            }
+            assertThat(streamed).as("token size %d", size).isEqualTo(expected);
+            assertThat(scanner.finish()).isEqualTo(expected);
+        }
+    }
+
+    @Test
+    void callIsReturnedAsSoonAsItsObjectCloses() {
+        ToolCallParser.Scanner scanner = parser.newScanner();
+
+        assertThat(scanner.feed("{\"name\": \"addSchedule\", \"arguments\": {\"title\"")).isEmpty();
+        assertThat(scanner.isInsideObject()).isTrue();
+        assertThat(scanner.feed(": \"开会\"}}")).hasSize(1);
+        assertThat(scanner.isInsideObject()).isFalse();
+        assertThat(scanner.feed(" 已添加")).isEmpty();
+        assertThat(scanner.finish()).hasSize(1);
+        assertThatThrownBy(() -> scanner.feed("x")).isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void bufferIsBoundedWhenNameIsNotFollowedByArguments() {
+        ToolCallParser.Scanner scanner = parser.newScanner();
+        scanner.feed("字段 \"name\" 表示名称, ");
+        for (int i = 0; i < 1000; i++) {
+            scanner.feed("后面是普通的正文内容, ");
+        }
+
+        assertThat(scanner.bufferedLength()).isLessThanOrEqualTo(ToolCallParser.MAX_LOOSE_PREFIX + 32);
+
+        // 很远之后出现的对象不会和前面的 "name" 拼在一起
+        assertThat(scanner.feed("{\"name\": \"addSchedule\", \"arguments\": {\"title\": \"开会\"}}"))
+                .extracting(ToolCallParser.ToolCall::name)
+                .containsExactly("addSchedule");
+        assertThat(scanner.bufferedLength()).isZero();
+    }
+
+    @Test
+    void ignoresInvalidCandidates() {
+        assertThat(parser.parse("{\"name\": \"addSchedule\", \"arguments\": [1, 2]}")).isEmpty();
+        assertThat(parser.parse("{\"name\": \"addSchedule\", \"arguments\": {\"title\": }}")).isEmpty();
+        assertThat(parser.parse("没有闭合 {\"name\": \"addSchedule\", \"arguments\": {")).isEmpty();
+        assertThat(parser.parse("")).isEmpty();
+        assertThat(parser.parse(null)).isEmpty();
+    }
+}